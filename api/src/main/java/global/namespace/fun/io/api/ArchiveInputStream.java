@@ -15,6 +15,15 @@ import java.util.Optional;
  */
 public interface ArchiveInputStream extends Iterable<ArchiveEntrySource>, Closeable {
 
+    /**
+     * Returns {@code true} if and only if the sources returned by this archive input may be read concurrently by
+     * multiple threads, e.g. because the archive file supports random access.
+     * This enables {@code Copy} to read archive entries in parallel.
+     */
+    default boolean isConcurrent() {
+        return false;
+    }
+
     /**
      * Returns a source for reading the archive entry with the given name, if it exists (optional operation).
      *
@@ -21,6 +21,15 @@ public interface ArchiveOutputStream extends Closeable {
         return false;
     }
 
+    /**
+     * Returns {@code true} if and only if the sinks returned by this archive output may be written concurrently by
+     * multiple threads, e.g. because each archive entry is a separate file or object.
+     * This enables {@code Copy} to write archive entries in parallel.
+     */
+    default boolean isConcurrent() {
+        return false;
+    }
+
     /**
      * Returns a sink for writing the archive entry with the given name.
      *
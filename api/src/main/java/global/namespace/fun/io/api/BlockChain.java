@@ -0,0 +1,92 @@
+/*
+ * Copyright © 2017 - 2020 Schlichtherle IT Services
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package global.namespace.fun.io.api;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A transformation which chains two transformations over a shared intermediate buffer.
+ *
+ * @author Christian Schlichtherle
+ */
+final class BlockChain implements BlockTransform {
+
+    private final ByteBuffer buffer = ByteBuffer.allocate(Store.BUFSIZE);
+
+    private final BlockTransform first, second;
+
+    private boolean firstFinished;
+
+    BlockChain(final BlockTransform first, final BlockTransform second) {
+        this.first = first;
+        this.second = second;
+    }
+
+    @Override
+    public void update(final ByteBuffer input, final ByteBuffer output) throws IOException {
+        while (true) {
+            if (input.hasRemaining()) {
+                first.update(input, buffer);
+            }
+            if (!pass(output) || !input.hasRemaining()) {
+                return;
+            }
+        }
+    }
+
+    @Override
+    public boolean finish(final ByteBuffer output) throws IOException {
+        while (true) {
+            if (!firstFinished) {
+                firstFinished = first.finish(buffer);
+            }
+            if (!pass(output)) {
+                return false;
+            } else if (firstFinished) {
+                return second.finish(output);
+            }
+        }
+    }
+
+    /**
+     * Passes the intermediate buffer to the second transformation.
+     * Returns {@code true} if and only if the second transformation has consumed all of it.
+     */
+    private boolean pass(final ByteBuffer output) throws IOException {
+        buffer.flip();
+        try {
+            if (buffer.hasRemaining()) {
+                second.update(buffer, output);
+            }
+            return !buffer.hasRemaining();
+        } finally {
+            buffer.compact();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            first.close();
+        } finally {
+            second.close();
+        }
+    }
+
+    @Override
+    public String toString() { return String.format("%s(first=%s, second=%s)", getClass().getName(), first, second); }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright © 2017 - 2020 Schlichtherle IT Services
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package global.namespace.fun.io.api;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A filter which transforms buffers instead of decorating streams.
+ * Unlike the stream decorators of other filters, adjacent block filters get fused when {@linkplain #compose(Filter)
+ * composing} them:
+ * The composite filter is a block filter again, which chains the transformations of its parts over shared buffers, so
+ * that the data passes all of them in a single pass without any intermediate stream layers.
+ * If a block filter gets composed with any other filter, then it falls back to decorating streams.
+ * <p>
+ * Implementations only need to provide the transformations for the output and the input.
+ * For example, a compression filter would compress the data in its {@linkplain #outputTransform() output
+ * transformation} and decompress it in its {@linkplain #inputTransform() input transformation}.
+ *
+ * @author Christian Schlichtherle
+ */
+public interface BlockFilter extends Filter {
+
+    /** Returns a new transformation for the data which gets written to an output stream. */
+    BlockTransform outputTransform() throws Exception;
+
+    /** Returns a new transformation for the data which gets read from an input stream. */
+    BlockTransform inputTransform() throws Exception;
+
+    @Override
+    default Socket<OutputStream> output(Socket<OutputStream> output) {
+        return output.map(out -> new BlockOutputStream(out, outputTransform()));
+    }
+
+    @Override
+    default Socket<InputStream> input(Socket<InputStream> input) {
+        return input.map(in -> new BlockInputStream(in, inputTransform()));
+    }
+}
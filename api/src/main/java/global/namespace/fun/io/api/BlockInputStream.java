@@ -0,0 +1,136 @@
+/*
+ * Copyright © 2017 - 2020 Schlichtherle IT Services
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package global.namespace.fun.io.api;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * An input stream which transforms the data with a {@link BlockTransform} after reading it from the underlying input
+ * stream.
+ *
+ * @author Christian Schlichtherle
+ */
+final class BlockInputStream extends FilterInputStream {
+
+    private final ByteBuffer input = ByteBuffer.allocate(Store.BUFSIZE), output = ByteBuffer.allocate(Store.BUFSIZE);
+
+    private final BlockTransform transform;
+
+    private boolean eof, finished, closed;
+
+    BlockInputStream(final InputStream in, final BlockTransform transform) {
+        super(in);
+        this.transform = transform;
+        input.flip();
+        output.flip();
+    }
+
+    @Override
+    public int read() throws IOException {
+        final byte[] b = new byte[1];
+        return 1 == read(b, 0, 1) ? b[0] & 0xff : -1;
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed.");
+        }
+        if (0 == len) {
+            return 0;
+        }
+        while (!output.hasRemaining()) {
+            if (finished) {
+                return -1;
+            }
+            fill();
+        }
+        final int n = Math.min(len, output.remaining());
+        output.get(b, off, n);
+        return n;
+    }
+
+    /** Transforms some more input into the empty output buffer. */
+    private void fill() throws IOException {
+        output.clear();
+        try {
+            while (0 == output.position() && !finished) {
+                if (!input.hasRemaining() && !eof) {
+                    input.clear();
+                    final int read = in.read(input.array(), input.arrayOffset(), input.capacity());
+                    input.limit(Math.max(read, 0));
+                    eof = 0 > read;
+                }
+                if (input.hasRemaining()) {
+                    final int position = input.position();
+                    transform.update(input, output);
+                    if (0 == output.position() && position == input.position()) {
+                        throw new IllegalStateException(transform + " makes no progress.");
+                    }
+                } else if (eof) {
+                    finished = transform.finish(output);
+                    if (!finished && 0 == output.position()) {
+                        throw new IllegalStateException(transform + " makes no progress.");
+                    }
+                }
+            }
+        } finally {
+            output.flip();
+        }
+    }
+
+    @Override
+    public long skip(final long n) throws IOException {
+        final byte[] b = new byte[(int) Math.min(Math.max(n, 0), Store.BUFSIZE)];
+        long total = 0;
+        for (int read; total < n && 0 < (read = read(b, 0, (int) Math.min(b.length, n - total))); ) {
+            total += read;
+        }
+        return total;
+    }
+
+    @Override
+    public int available() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed.");
+        }
+        return output.remaining();
+    }
+
+    @Override
+    public boolean markSupported() { return false; }
+
+    @Override
+    public synchronized void mark(int readlimit) { }
+
+    @Override
+    public synchronized void reset() throws IOException { throw new IOException("Mark/reset not supported."); }
+
+    @Override
+    public void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            try {
+                transform.close();
+            } finally {
+                in.close();
+            }
+        }
+    }
+}
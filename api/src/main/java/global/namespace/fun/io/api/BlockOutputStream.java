@@ -0,0 +1,97 @@
+/*
+ * Copyright © 2017 - 2020 Schlichtherle IT Services
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package global.namespace.fun.io.api;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * An output stream which transforms the data with a {@link BlockTransform} before writing it to the underlying output
+ * stream.
+ *
+ * @author Christian Schlichtherle
+ */
+final class BlockOutputStream extends FilterOutputStream {
+
+    private final ByteBuffer buffer = ByteBuffer.allocate(Store.BUFSIZE);
+
+    private final BlockTransform transform;
+
+    private boolean closed;
+
+    BlockOutputStream(final OutputStream out, final BlockTransform transform) {
+        super(out);
+        this.transform = transform;
+    }
+
+    @Override
+    public void write(int b) throws IOException { write(new byte[]{(byte) b}, 0, 1); }
+
+    @Override
+    public void write(final byte[] b, final int off, final int len) throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed.");
+        }
+        final ByteBuffer input = ByteBuffer.wrap(b, off, len);
+        while (input.hasRemaining()) {
+            final int position = input.position();
+            transform.update(input, buffer);
+            if (input.hasRemaining()) {
+                if (0 == buffer.position() && position == input.position()) {
+                    throw new IllegalStateException(transform + " makes no progress.");
+                }
+                drain();
+            }
+        }
+    }
+
+    private void drain() throws IOException {
+        out.write(buffer.array(), buffer.arrayOffset(), buffer.position());
+        buffer.clear();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (!closed) {
+            drain();
+        }
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            try {
+                try {
+                    while (!transform.finish(buffer)) {
+                        if (0 == buffer.position()) {
+                            throw new IllegalStateException(transform + " makes no progress.");
+                        }
+                        drain();
+                    }
+                    drain();
+                } finally {
+                    transform.close();
+                }
+            } finally {
+                out.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright © 2017 - 2020 Schlichtherle IT Services
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package global.namespace.fun.io.api;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A stateful transformation of a sequence of bytes, e.g. compressing or encrypting it, which works on buffers instead
+ * of streams.
+ * A transformation gets fed with consecutive input buffers by {@link #update(ByteBuffer, ByteBuffer)} and then
+ * completed by {@link #finish(ByteBuffer)}.
+ * <p>
+ * All buffers passed to a transformation are backed by an accessible array and have a capacity of at least
+ * {@link Store#BUFSIZE} bytes.
+ * Whenever a method is called with an empty output buffer, it must either consume some input or produce some output or
+ * complete, or otherwise the caller fails with an {@link IllegalStateException}.
+ *
+ * @see BlockFilter
+ * @author Christian Schlichtherle
+ */
+public interface BlockTransform extends Closeable {
+
+    /**
+     * Transforms the remaining bytes of the given input buffer into the given output buffer.
+     * This method consumes all of the input, keeping any bytes which cannot get transformed yet in its internal state,
+     * unless the output buffer is full, in which case the caller drains the output buffer and calls again with the rest
+     * of the input.
+     */
+    void update(ByteBuffer input, ByteBuffer output) throws IOException;
+
+    /**
+     * Signals the end of the input and writes the remaining output into the given output buffer.
+     *
+     * @return {@code true} if and only if the transformation is complete, or {@code false} if the output buffer is
+     *         full, in which case the caller drains the output buffer and calls again.
+     */
+    boolean finish(ByteBuffer output) throws IOException;
+
+    /**
+     * Releases any resources held by this transformation, e.g. the native memory of a {@link java.util.zip.Deflater}.
+     * This method gets called exactly once, regardless of whether the transformation has completed or not.
+     * The default implementation does nothing.
+     */
+    @Override
+    default void close() throws IOException { }
+}
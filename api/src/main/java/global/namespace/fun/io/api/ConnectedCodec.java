@@ -36,6 +36,18 @@ public interface ConnectedCodec extends Encoder, Decoder {
     @Override
     default <T> T decode(Type expected) throws Exception { return codec().decoder(store()).decode(expected); }
 
+    /**
+     * Returns a connected codec which caches the last decoded object and returns it again as long as the
+     * {@linkplain Store#changeToken() change token} of the underlying store has not changed and the expected type is
+     * the same.
+     * This avoids re-reading and re-parsing the content of the store, e.g. for configuration files which get decoded
+     * for each request.
+     * If the underlying store does not support change tokens, then each call to {@link #decode(Type)} decodes the
+     * content again.
+     * Note that the cached object gets shared by all callers, so it should be immutable or at least not get modified.
+     */
+    default ConnectedCodec cached() { return Internal.cached(this); }
+
     /** Returns a deep clone of the given object by encoding it to the underlying store and decoding it again. */
     default <T> T clone(T t) throws Exception {
         encode(t);
@@ -29,7 +29,9 @@ public class ContentTooLargeException extends IOException {
 
     public ContentTooLargeException() { }
 
-    public ContentTooLargeException(long length, int max) {
+    public ContentTooLargeException(long length, int max) { this(length, (long) max); }
+
+    public ContentTooLargeException(long length, long max) {
         this(String.format(Locale.ENGLISH, "Content size %,d exceeds %,d bytes.", length, max));
     }
 
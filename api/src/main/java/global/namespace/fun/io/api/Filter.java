@@ -15,10 +15,11 @@
  */
 package global.namespace.fun.io.api;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Optional;
 import java.util.OptionalLong;
 
 import static java.util.Objects.requireNonNull;
@@ -125,6 +126,9 @@ public interface Filter extends InputFilter, OutputFilter {
      * }</pre>
      * On input, the filter would first decrypt the data and then decompress it.
      * <p>
+     * If both filters are {@link BlockFilter}s, then the returned filter fuses them into a single block filter, which
+     * transforms the data in a single pass over shared buffers instead of stacking their streams.
+     * <p>
      * Note that before version 2.3.0, this method was erroneously documented to compose the filters in the opposite
      * order.
      */
@@ -172,13 +176,27 @@ public interface Filter extends InputFilter, OutputFilter {
             }
 
             @Override
-            public byte[] content(final int max) throws IOException {
+            public Optional<?> changeToken() throws IOException {
+                return store.changeToken();
+            }
+
+            @Override
+            public byte[] content(int max) throws IOException {
+                return read(max).toByteArray();
+            }
+
+            @Override
+            public ByteBuffer contentBuffer(int max) throws IOException {
+                return read(max).buffer();
+            }
+
+            private Internal.ContentOutputStream read(final int max) throws IOException {
                 if (max < 0) {
                     throw new IllegalArgumentException(max + " < 0");
                 }
                 try {
                     return applyReader(in -> {
-                        final ByteArrayOutputStream out = new ByteArrayOutputStream(BUFSIZE);
+                        final Internal.ContentOutputStream out = new Internal.ContentOutputStream();
                         final byte[] b = new byte[BUFSIZE];
                         for (int total = 0, n; 0 <= (n = in.read(b)); ) {
                             if (max < (total += n)) {
@@ -186,7 +204,7 @@ public interface Filter extends InputFilter, OutputFilter {
                             }
                             out.write(b, 0, n);
                         }
-                        return out.toByteArray();
+                        return out;
                     });
                 } catch (IOException | RuntimeException e) {
                     throw e;
@@ -15,8 +15,14 @@
  */
 package global.namespace.fun.io.api;
 
+import global.namespace.fun.io.api.function.XSupplier;
+
+import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.util.Optional;
 
 /**
  * @author Christian Schlichtherle
@@ -27,6 +33,9 @@ final class Internal {
     }
 
     static Filter compose(Filter first, Filter second) {
+        if (first instanceof BlockFilter && second instanceof BlockFilter) {
+            return fuse((BlockFilter) first, (BlockFilter) second);
+        }
         return new Filter() {
 
             @Override
@@ -41,6 +50,99 @@ final class Internal {
         };
     }
 
+    /**
+     * Fuses the given block filters into a single block filter which chains their transformations.
+     * On output, the data gets transformed by the first filter and then by the second filter.
+     * On input, the data gets transformed by the second filter and then by the first filter.
+     */
+    private static BlockFilter fuse(BlockFilter first, BlockFilter second) {
+        return new BlockFilter() {
+
+            @Override
+            public BlockTransform outputTransform() throws Exception {
+                return chain(first::outputTransform, second::outputTransform);
+            }
+
+            @Override
+            public BlockTransform inputTransform() throws Exception {
+                return chain(second::inputTransform, first::inputTransform);
+            }
+        };
+    }
+
+    private static BlockTransform chain(final XSupplier<BlockTransform> first,
+                                        final XSupplier<BlockTransform> second) throws Exception {
+        final BlockTransform t1 = first.get();
+        try {
+            return new BlockChain(t1, second.get());
+        } catch (Exception e) {
+            t1.close();
+            throw e;
+        }
+    }
+
+    /** A byte array output stream which can provide a read-only view of its content without copying it. */
+    static final class ContentOutputStream extends ByteArrayOutputStream {
+
+        ContentOutputStream() { super(Store.BUFSIZE); }
+
+        ByteBuffer buffer() { return ByteBuffer.wrap(buf, 0, count).slice().asReadOnlyBuffer(); }
+    }
+
+    static ConnectedCodec cached(final ConnectedCodec connected) {
+        return new ConnectedCodec() {
+
+            volatile Memo memo;
+
+            @Override
+            public Codec codec() {
+                return connected.codec();
+            }
+
+            @Override
+            public Store store() {
+                return connected.store();
+            }
+
+            @Override
+            public void encode(Object o) throws Exception {
+                memo = null;
+                connected.encode(o);
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public <T> T decode(final Type expected) throws Exception {
+                final Optional<?> token = store().changeToken();
+                if (!token.isPresent()) {
+                    return connected.decode(expected);
+                }
+                final Memo memo = this.memo;
+                if (null != memo && memo.token.equals(token.get()) && memo.expected.equals(expected)) {
+                    return (T) memo.value;
+                }
+                // The token gets obtained before decoding, so a concurrent change gets noticed on the next call:
+                final T value = connected.decode(expected);
+                this.memo = new Memo(token.get(), expected, value);
+                return value;
+            }
+        };
+    }
+
+    /** An immutable record of the last decoded object. */
+    private static final class Memo {
+
+        final Object token;
+        final Type expected;
+        final Object value;
+
+        Memo(final Object token, final Type expected, final Object value) {
+            this.token = token;
+            this.expected = expected;
+            this.value = value;
+        }
+    }
+
     static ConnectedCodec connect(Codec c, Store s) {
         return new ConnectedCodec() {
 
@@ -19,6 +19,8 @@ import java.io.DataInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Optional;
 import java.util.OptionalLong;
 
 import static java.util.Objects.requireNonNull;
@@ -59,6 +61,16 @@ public interface Store extends Source, Sink {
      */
     OptionalLong size() throws IOException;
 
+    /**
+     * Returns a token which changes whenever the content of this store changes, if this store supports it.
+     * Two tokens obtained from this store are {@linkplain Object#equals(Object) equal} if and only if the content has
+     * not changed in between, e.g. the last modified time and the size of a file or an identifier of an in-memory
+     * snapshot.
+     * This enables clients to skip re-reading the content if it has not changed, e.g. {@link ConnectedCodec#cached()}.
+     * The default implementation returns an empty optional, which means that any change goes unnoticed.
+     */
+    default Optional<?> changeToken() throws IOException { return Optional.empty(); }
+
     /**
      * Connects this store to the given codec.
      */
@@ -108,6 +120,34 @@ public interface Store extends Source, Sink {
         }
     }
 
+    /**
+     * Returns a read-only view of the content of this store.
+     * Other than {@link #content()}, this method does not need to make a defensive copy of the content, so it should be
+     * preferred if the content is only read, e.g. for decoding it.
+     * Depending on the implementation, the view may be backed by an array, by a memory mapped file or by some other
+     * memory.
+     * If the content of this store gets changed, then the content of the view is undefined.
+     *
+     * @throws ContentTooLargeException if the content exceeds {@link Integer#MAX_VALUE} bytes.
+     * @throws IOException              if there is no content or if the content cannot be read for some reason.
+     */
+    default ByteBuffer contentBuffer() throws IOException {
+        return contentBuffer(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns a read-only view of the content of this store.
+     * The default implementation wraps the array returned by {@link #content(int)}.
+     *
+     * @throws IllegalArgumentException if {@code max} is less than zero.
+     * @throws ContentTooLargeException if the content exceeds {@code max } bytes.
+     * @throws IOException              if there is no content or if the content cannot be read for some reason.
+     * @see #contentBuffer()
+     */
+    default ByteBuffer contentBuffer(int max) throws IOException {
+        return ByteBuffer.wrap(content(max)).asReadOnlyBuffer();
+    }
+
     /**
      * Sets the content of this store from the given byte array.
      */
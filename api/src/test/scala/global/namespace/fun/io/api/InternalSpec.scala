@@ -16,6 +16,7 @@
 package global.namespace.fun.io.api
 
 import java.io._
+import java.nio.ByteBuffer
 
 import org.mockito.ArgumentMatchers._
 import org.mockito.Mockito._
@@ -48,4 +49,53 @@ class InternalSpec extends AnyWordSpec {
       }
     }
   }
+
+  "The filter returned by the `compose` method for two block filters" should {
+    val ab = Internal.compose(new AddFilter(1), new MultiplyFilter(3))
+
+    "fuse them into a block filter" in {
+      ab shouldBe a[BlockFilter]
+      Internal.compose(ab, new AddFilter(2)) shouldBe a[BlockFilter]
+    }
+
+    "apply its parameter filters in order" when {
+      "being applied" in {
+        val out = new ByteArrayOutputStream
+        ab.output(() => out).accept(_.write(Array[Byte](1, 2, 3)))
+        out.toByteArray shouldBe Array[Byte](6, 9, 12)
+      }
+
+      "being unapplied" in {
+        val data = new Array[Byte](100000)
+        ab.input(() => new ByteArrayInputStream(data map (b => (3 * (b + 1)).toByte))).accept { in =>
+          new DataInputStream(in) readFully data
+          in.read shouldBe -1
+        }
+        data forall (_ == 0) shouldBe true
+      }
+    }
+  }
 }
+
+/** Transforms each byte with the given function. */
+private abstract class ByteFilter(out: Int => Int, in: Int => Int) extends BlockFilter {
+
+  override def outputTransform: BlockTransform = transform(out)
+
+  override def inputTransform: BlockTransform = transform(in)
+
+  private def transform(f: Int => Int): BlockTransform = new BlockTransform {
+
+    override def update(input: ByteBuffer, output: ByteBuffer): Unit = {
+      while (input.hasRemaining && output.hasRemaining) {
+        output put f(input.get).toByte
+      }
+    }
+
+    override def finish(output: ByteBuffer): Boolean = true
+  }
+}
+
+private class AddFilter(n: Int) extends ByteFilter(_ + n, _ - n)
+
+private class MultiplyFilter(n: Int) extends ByteFilter(_ * n, _ / n)
@@ -125,6 +125,11 @@ public final class AWS {
                         };
                     }
 
+                    @Override
+                    public boolean isConcurrent() {
+                        return true;
+                    }
+
                     @Override
                     public void close() {
                         objects = null;
@@ -171,6 +176,11 @@ public final class AWS {
                         };
                     }
 
+                    @Override
+                    public boolean isConcurrent() {
+                        return true;
+                    }
+
                     @Override
                     public void close() {
                     }
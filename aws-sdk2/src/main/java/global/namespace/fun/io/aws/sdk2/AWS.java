@@ -117,6 +117,11 @@ public final class AWS {
                         };
                     }
 
+                    @Override
+                    public boolean isConcurrent() {
+                        return true;
+                    }
+
                     @Override
                     public void close() {
                         objects = null;
@@ -166,6 +171,11 @@ public final class AWS {
                         };
                     }
 
+                    @Override
+                    public boolean isConcurrent() {
+                        return true;
+                    }
+
                     @Override
                     public void close() {
                     }
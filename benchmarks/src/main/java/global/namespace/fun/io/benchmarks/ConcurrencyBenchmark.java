@@ -0,0 +1,125 @@
+/*
+ * Copyright © 2017 - 2020 Schlichtherle IT Services
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package global.namespace.fun.io.benchmarks;
+
+import global.namespace.fun.io.api.Store;
+import global.namespace.fun.io.spi.Copy;
+import global.namespace.fun.io.spi.CopyOptions;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Measures the time it takes to copy thousands of streams concurrently, where reading each stream blocks like reading
+ * from a remote server, e.g. S3.
+ * Compares copying on platform threads to copying on virtual threads.
+ * The latter requires JDK 21+, e.g. {@code sbt -java-home /path/to/jdk21 "benchmarks/run ConcurrencyBenchmark"}.
+ *
+ * @author Christian Schlichtherle
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Measurement(iterations = 5)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3)
+public class ConcurrencyBenchmark {
+
+    /** The number of chunks per stream. */
+    private static final int CHUNKS = 8;
+
+    /** The time it takes to read each chunk. */
+    private static final long LATENCY = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Param({"1000", "10000"})
+    public int streams;
+
+    @Param({"platform", "virtual"})
+    public String threads;
+
+    private ExecutorService executor;
+
+    private CopyOptions options;
+
+    @Setup
+    public void setUp() throws Exception {
+        switch (threads) {
+            case "platform":
+                executor = Executors.newCachedThreadPool();
+                break;
+            case "virtual":
+                try {
+                    executor = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+                } catch (NoSuchMethodException e) {
+                    throw new UnsupportedOperationException("Virtual threads require JDK 21+.", e);
+                }
+                break;
+            default:
+                throw new IllegalArgumentException(threads);
+        }
+        options = CopyOptions.builder().executor(executor).build();
+    }
+
+    @TearDown
+    public void tearDown() { executor.shutdown(); }
+
+    @Benchmark
+    public void copy() throws Exception {
+        final List<Future<?>> results = new ArrayList<>(streams);
+        for (int i = 0; i < streams; i++) {
+            results.add(executor.submit(() -> {
+                Copy.copy(RemoteInputStream::new, DiscardingOutputStream::new, options);
+                return null;
+            }));
+        }
+        for (final Future<?> result : results) {
+            result.get();
+        }
+    }
+
+    /** An input stream which blocks for a while before returning each chunk of data. */
+    private static final class RemoteInputStream extends InputStream {
+
+        int chunks = CHUNKS;
+
+        @Override
+        public int read() { throw new UnsupportedOperationException(); }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (0 >= chunks) {
+                return -1;
+            }
+            chunks--;
+            LockSupport.parkNanos(LATENCY);
+            return Math.min(len, Store.BUFSIZE);
+        }
+    }
+
+    private static final class DiscardingOutputStream extends OutputStream {
+
+        @Override
+        public void write(int b) { }
+
+        @Override
+        public void write(byte[] b, int off, int len) { }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright © 2017 - 2020 Schlichtherle IT Services
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package global.namespace.fun.io.benchmarks;
+
+import global.namespace.fun.io.api.Socket;
+import global.namespace.fun.io.spi.Copy;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the lock-free implementation of {@link Copy} to the {@linkplain LockingCopy previous implementation} for
+ * in-memory and file sources.
+ * Run it with {@code sbt "benchmarks/run CopyBenchmark"}.
+ *
+ * @author Christian Schlichtherle
+ */
+@BenchmarkMode(Mode.Throughput)
+@Fork(1)
+@Measurement(iterations = 5)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3)
+public class CopyBenchmark {
+
+    @Param({"memory", "file"})
+    public String source;
+
+    @Param({"1024", "65536", "16777216"})
+    public int size;
+
+    private byte[] data;
+
+    private Path file;
+
+    private final DiscardingOutputStream out = new DiscardingOutputStream();
+
+    @Setup
+    public void setUp() throws Exception {
+        data = new byte[size];
+        new Random(0).nextBytes(data);
+        file = Files.createTempFile("copy", null);
+        Files.write(file, data);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception { Files.delete(file); }
+
+    private Socket<InputStream> input() {
+        switch (source) {
+            case "memory":
+                // Wrapped because Copy would copy a plain ByteArrayInputStream synchronously, bypassing the FIFO:
+                return () -> new FilterInputStream(new ByteArrayInputStream(data)) {
+                };
+            case "file":
+                return () -> new FileInputStream(file.toFile()); // not backed by a file channel on output, so no transfer
+            default:
+                throw new IllegalArgumentException(source);
+        }
+    }
+
+    @Benchmark
+    public long lockFree() throws Exception {
+        Copy.copy(input(), () -> out);
+        return out.count;
+    }
+
+    @Benchmark
+    public long locking() throws Exception {
+        input().accept(in -> LockingCopy.cat(in, out));
+        return out.count;
+    }
+
+    private static final class DiscardingOutputStream extends OutputStream {
+
+        long count;
+
+        @Override
+        public void write(int b) { count++; }
+
+        @Override
+        public void write(byte[] b, int off, int len) { count += len; }
+    }
+}
@@ -18,7 +18,9 @@ package global.namespace.fun.io.bios;
 import global.namespace.fun.io.api.*;
 import global.namespace.fun.io.api.function.XFunction;
 import global.namespace.fun.io.api.function.XSupplier;
+import global.namespace.fun.io.spi.BufferArena;
 import global.namespace.fun.io.spi.Copy;
+import global.namespace.fun.io.spi.CopyOptions;
 import global.namespace.fun.io.spi.UncloseableInputStream;
 import global.namespace.fun.io.spi.UncloseableOutputStream;
 
@@ -140,6 +142,7 @@ public final class BIOS {
     /**
      * Returns a filter which compresses/decompresses data using a ZIP deflater/inflater with the given compression
      * level.
+     * The deflaters and inflaters get obtained from the {@linkplain ZlibPool#shared() shared ZLIB pool}.
      *
      * @see Deflater
      */
@@ -147,11 +150,14 @@ public final class BIOS {
         if (level < Deflater.DEFAULT_COMPRESSION || Deflater.BEST_COMPRESSION < level) {
             throw new IllegalArgumentException(level + " is not in the range from " + Deflater.DEFAULT_COMPRESSION + " to " + Deflater.BEST_COMPRESSION + ".");
         }
-        return deflate(() -> new Deflater(level), Inflater::new);
+        final ZlibPool pool = ZlibPool.shared();
+        return deflate(() -> pool.deflater(level), pool::inflater);
     }
 
     /**
      * Returns a filter which compresses/decompresses data using a ZIP deflater/inflater.
+     * When a stream gets closed, its deflater or inflater gets {@linkplain ZlibPool#release(Deflater) released} to the
+     * {@linkplain ZlibPool#shared() shared ZLIB pool}, which ends it unless it has been obtained from this pool.
      */
     public static Filter deflate(XSupplier<Deflater> deflaterSupplier, XSupplier<Inflater> inflaterSupplier) {
         return new DeflateFilter(requireNonNull(deflaterSupplier), requireNonNull(inflaterSupplier));
@@ -159,6 +165,7 @@ public final class BIOS {
 
     /**
      * Returns a filter which compresses/decompresses data using the GZIP format.
+     * The deflaters and inflaters get obtained from the {@linkplain ZlibPool#shared() shared ZLIB pool}.
      */
     public static Filter gzip() {
         return new GZIPFilter();
@@ -182,21 +189,55 @@ public final class BIOS {
     /**
      * Returns a filter which decompresses/compresses data using a ZIP inflater/deflater with the given compression
      * level.
+     * The inflaters and deflaters get obtained from the {@linkplain ZlibPool#shared() shared ZLIB pool}.
      */
     public static Filter inflate(int level) {
         if (level < Deflater.DEFAULT_COMPRESSION || Deflater.BEST_COMPRESSION < level) {
             throw new IllegalArgumentException(level + " is not in the range from " + Deflater.DEFAULT_COMPRESSION + " to " + Deflater.BEST_COMPRESSION + ".");
         }
-        return inflate(Inflater::new, () -> new Deflater(level));
+        final ZlibPool pool = ZlibPool.shared();
+        return inflate(pool::inflater, () -> pool.deflater(level));
     }
 
     /**
      * Returns a filter which decompresses/compresses data using a ZIP inflater/deflater.
+     * When a stream gets closed, its inflater or deflater gets {@linkplain ZlibPool#release(Inflater) released} to the
+     * {@linkplain ZlibPool#shared() shared ZLIB pool}, which ends it unless it has been obtained from this pool.
      */
     public static Filter inflate(XSupplier<Inflater> inflaterSupplier, XSupplier<Deflater> deflaterSupplier) {
         return new InflateFilter(requireNonNull(inflaterSupplier), requireNonNull(deflaterSupplier));
     }
 
+    /**
+     * Returns a filter which compresses/decompresses data using the GZIP format, where the output gets compressed in
+     * parallel.
+     * Like pigz, the output stream splits the data into blocks of the given size and compresses each block on a
+     * fork-join pool with the given number of threads, using the last 32 KiB of the previous block as the dictionary.
+     * The compressed blocks get concatenated into a single standard GZIP member, so the output can be read by
+     * {@link #gzip()} or any other GZIP decompressor.
+     * The input stream decompresses the data sequentially, like {@link #gzip()}.
+     * <p>
+     * The returned filter owns its fork-join pool, so you should reuse it rather than creating a new one for each
+     * stream.
+     * The threads of the pool terminate when they are idle for some time.
+     *
+     * @param level     the compression level.
+     * @param blockSize the size of each block in bytes.
+     * @param threads   the number of threads for compressing the blocks.
+     */
+    public static Filter parallelGzip(int level, int blockSize, int threads) {
+        if (level < Deflater.DEFAULT_COMPRESSION || Deflater.BEST_COMPRESSION < level) {
+            throw new IllegalArgumentException(level + " is not in the range from " + Deflater.DEFAULT_COMPRESSION + " to " + Deflater.BEST_COMPRESSION + ".");
+        }
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("Block size " + blockSize + " is <= 0.");
+        }
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Number of threads " + threads + " is <= 0.");
+        }
+        return new ParallelGZIPFilter(level, blockSize, threads);
+    }
+
     ///////////////////////////
     ///////// SOURCES /////////
     ///////////////////////////
@@ -333,6 +374,36 @@ public final class BIOS {
         return file(Paths.get(path), append);
     }
 
+    /**
+     * Returns a store for the file referenced by the given path which reads the file via memory mapped windows.
+     * Reading a file via memory mapping avoids a system call and copying the data from the kernel's page cache to a
+     * buffer in user space for every read operation, which is faster for large files which are read often.
+     * The file is mapped in windows of 256 MiB, so files larger than 2 GiB are supported, too.
+     * The windows get unmapped by the garbage collector.
+     * Writing the file works like with {@link #file(File)}.
+     */
+    public static FileStore mapped(File path) {
+        return mapped(path.toPath());
+    }
+
+    /**
+     * Returns a store for the file referenced by the given path which reads the file via memory mapped windows.
+     *
+     * @see #mapped(File)
+     */
+    public static FileStore mapped(Path path) {
+        return new RealPathStore(requireNonNull(path), RealPathStore.WINDOW_SIZE);
+    }
+
+    /**
+     * Returns a store for the file referenced by the given path which reads the file via memory mapped windows.
+     *
+     * @see #mapped(File)
+     */
+    public static FileStore mapped(String path) {
+        return mapped(Paths.get(path));
+    }
+
     /**
      * Returns a new in-memory store with the default buffer size.
      */
@@ -347,6 +418,54 @@ public final class BIOS {
         return new MemoryStore(bufferSize);
     }
 
+    /**
+     * Returns a new in-memory store which keeps its content outside of the heap.
+     * The content is stored in direct buffers of 64 KiB, which are acquired from and released to a shared pool, so
+     * writing the content never copies the data written so far and the content may exceed 2 GiB.
+     * When the content gets replaced or deleted and all input streams for it have been closed, then its buffers get
+     * returned to the pool or, if the pool is full, their native memory gets freed immediately.
+     * The store is thread-safe.
+     */
+    public static Store offHeapMemory() {
+        return offHeapMemory(Long.MAX_VALUE);
+    }
+
+    /**
+     * Returns a new in-memory store which keeps its content outside of the heap, up to the given maximum size in bytes.
+     * Writing more than the maximum size fails with a {@link ContentTooLargeException} and leaves the previous content
+     * unchanged.
+     *
+     * @see #offHeapMemory()
+     */
+    public static Store offHeapMemory(long maxSize) {
+        return new SegmentedStore(BufferArena.direct(), maxSize);
+    }
+
+    /**
+     * Returns a new in-memory store which keeps its content on the heap in segments of 64 KiB.
+     * Other than {@link #memory()}, writing the content never copies the data written so far, the content may exceed
+     * 2 GiB and large content does not require a large contiguous array, which is expensive for the garbage collector.
+     * The segments get acquired from and released to a shared pool when the content gets replaced or deleted and all
+     * input streams for it have been closed.
+     * The pool retains only a bounded number of segments, so the rest is left to the garbage collector.
+     * The store is thread-safe.
+     */
+    public static Store segmentedMemory() {
+        return segmentedMemory(Long.MAX_VALUE);
+    }
+
+    /**
+     * Returns a new in-memory store which keeps its content on the heap in segments of 64 KiB, up to the given maximum
+     * size in bytes.
+     * Writing more than the maximum size fails with a {@link ContentTooLargeException} and leaves the previous content
+     * unchanged.
+     *
+     * @see #segmentedMemory()
+     */
+    public static Store segmentedMemory(long maxSize) {
+        return new SegmentedStore(BufferArena.heap(), maxSize);
+    }
+
     /**
      * Returns a store for the given path.
      */
@@ -509,6 +628,18 @@ public final class BIOS {
         Copy.copy(source, sink);
     }
 
+    /**
+     * Copies the entries from the given archive source to the given archive sink using the given copy options.
+     *
+     * @param source  the archive source to read the entries from.
+     * @param sink    the archive sink to write the entries to.
+     * @param options the options for copying the entries.
+     * @see #copy(ArchiveSource, ArchiveSink)
+     */
+    public static void copy(ArchiveSource source, ArchiveSink sink, CopyOptions options) throws Exception {
+        Copy.copy(source, sink, options);
+    }
+
     /**
      * Copies the data from the given source to the given sink.
      * <p>
@@ -523,6 +654,18 @@ public final class BIOS {
         Copy.copy(source, sink);
     }
 
+    /**
+     * Copies the data from the given source to the given sink using the given copy options.
+     *
+     * @param source  the source for reading the data from.
+     * @param sink    the sink for writing the data to.
+     * @param options the options for copying the data.
+     * @see #copy(Source, Sink)
+     */
+    public static void copy(Source source, Sink sink, CopyOptions options) throws Exception {
+        Copy.copy(source, sink, options);
+    }
+
     /**
      * Copies the data from the given input stream socket to the given output stream socket.
      * <p>
@@ -537,6 +680,21 @@ public final class BIOS {
         Copy.copy(input, output);
     }
 
+    /**
+     * Copies the data from the given input stream socket to the given output stream socket using the given copy
+     * options.
+     *
+     * @param input   the input stream socket for reading the data from.
+     * @param output  the output stream socket for writing the data to.
+     * @param options the options for copying the data.
+     * @see #copy(Socket, Socket)
+     */
+    public static void copy(Socket<? extends InputStream> input,
+                            Socket<? extends OutputStream> output,
+                            CopyOptions options) throws Exception {
+        Copy.copy(input, output, options);
+    }
+
     /**
      * Returns a deep clone of the given object by serializing it to a memory store and de-serializing it again.
      * The memory store uses {@value Store#BUFSIZE} bytes as its initial buffer size.
@@ -2,11 +2,10 @@ package global.namespace.fun.io.bios;
 
 import global.namespace.fun.io.api.Filter;
 import global.namespace.fun.io.api.Socket;
+import global.namespace.fun.io.spi.BufferArena;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
-import java.io.InputStream;
-import java.io.OutputStream;
+import java.io.*;
+import java.nio.ByteBuffer;
 
 /**
  * @author Christian Schlichtherle
@@ -22,13 +21,163 @@ final class BufferFilter implements Filter {
         this.size = size;
     }
 
+    /**
+     * Returns a socket for an output stream which buffers up to {@link #size} bytes in a pooled buffer.
+     * The capacity of the pooled buffer may exceed this size, but the extra capacity never gets used.
+     */
     @Override
     public Socket<OutputStream> output(Socket<OutputStream> output) {
-        return output.map(out -> new BufferedOutputStream(out, size));
+        return output.map(out -> new BufferedOutputStream(out, 1) {
+
+            final ByteBuffer pooled = BufferArena.heap().acquire(size);
+
+            final Lease lease = new Lease(() -> BufferArena.heap().release(pooled));
+
+            {
+                buf = pooled.array();
+            }
+
+            @Override
+            public synchronized void write(int b) throws IOException {
+                lease.enter();
+                try {
+                    if (count >= size) {
+                        flushBuffer();
+                    }
+                    buf[count++] = (byte) b;
+                } finally {
+                    lease.exit();
+                }
+            }
+
+            @Override
+            public synchronized void write(byte[] b, int off, int len) throws IOException {
+                lease.enter();
+                try {
+                    if (len >= size) {
+                        flushBuffer();
+                        out.write(b, off, len);
+                    } else {
+                        if (len > size - count) {
+                            flushBuffer();
+                        }
+                        System.arraycopy(b, off, buf, count, len);
+                        count += len;
+                    }
+                } finally {
+                    lease.exit();
+                }
+            }
+
+            @Override
+            public synchronized void flush() throws IOException {
+                if (lease.tryEnter()) {
+                    try {
+                        super.flush();
+                    } finally {
+                        lease.exit();
+                    }
+                } else {
+                    out.flush(); // like BufferedOutputStream with an empty buffer
+                }
+            }
+
+            void flushBuffer() throws IOException {
+                if (0 < count) {
+                    out.write(buf, 0, count);
+                    count = 0;
+                }
+            }
+
+            @Override
+            public void close() throws IOException {
+                if (lease.beginClose()) {
+                    SideEffect.runAll(super::close, lease::endClose);
+                }
+            }
+        });
     }
 
+    /**
+     * Returns a socket for an input stream which buffers up to {@link #size} bytes in a pooled buffer.
+     * The capacity of the pooled buffer may exceed this size, but it only gets used as slack for marking the stream.
+     */
     @Override
     public Socket<InputStream> input(Socket<InputStream> input) {
-        return input.map(in -> new BufferedInputStream(in, size));
+        return input.map(in -> {
+            final ByteBuffer pooled = BufferArena.heap().acquire(size);
+            return new BufferedInputStream(new FilterInputStream(in) {
+
+                /** Limits filling the pooled buffer to the requested size. */
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    return in.read(b, off, b == pooled.array() ? Math.min(len, size) : len);
+                }
+            }, 1) {
+
+                final Lease lease = new Lease(() -> BufferArena.heap().release(pooled));
+
+                {
+                    buf = pooled.array();
+                }
+
+                @Override
+                public int read() throws IOException {
+                    lease.enter();
+                    try {
+                        return super.read();
+                    } finally {
+                        lease.exit();
+                    }
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    lease.enter();
+                    try {
+                        return super.read(b, off, len);
+                    } finally {
+                        lease.exit();
+                    }
+                }
+
+                @Override
+                public long skip(long n) throws IOException {
+                    lease.enter();
+                    try {
+                        return super.skip(n);
+                    } finally {
+                        lease.exit();
+                    }
+                }
+
+                @Override
+                public int available() throws IOException {
+                    lease.enter();
+                    try {
+                        return super.available();
+                    } finally {
+                        lease.exit();
+                    }
+                }
+
+                @Override
+                public void reset() throws IOException {
+                    lease.enter();
+                    try {
+                        super.reset();
+                    } finally {
+                        lease.exit();
+                    }
+                }
+
+                @Override
+                public void close() throws IOException {
+                    if (lease.beginClose()) {
+                        SideEffect.runAll(super::close, lease::endClose);
+                    }
+                }
+            };
+        });
     }
 }
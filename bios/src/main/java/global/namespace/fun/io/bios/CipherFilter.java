@@ -15,18 +15,16 @@
  */
 package global.namespace.fun.io.bios;
 
-import global.namespace.fun.io.api.Filter;
-import global.namespace.fun.io.api.Socket;
+import global.namespace.fun.io.api.BlockFilter;
+import global.namespace.fun.io.api.BlockTransform;
 import global.namespace.fun.io.api.function.XSupplier;
 
-import javax.crypto.*;
-import java.io.InputStream;
-import java.io.OutputStream;
+import javax.crypto.Cipher;
 
 /**
  * @author Christian Schlichtherle
  */
-final class CipherFilter implements Filter {
+final class CipherFilter implements BlockFilter {
 
     private final XSupplier<Cipher> inputCipherSupplier, outputCipherSupplier;
 
@@ -36,12 +34,12 @@ final class CipherFilter implements Filter {
     }
 
     @Override
-    public Socket<OutputStream> output(Socket<OutputStream> output) {
-        return output.map(out -> new CipherOutputStream(out, outputCipherSupplier.get()));
+    public BlockTransform outputTransform() throws Exception {
+        return new CipherTransform(outputCipherSupplier.get());
     }
 
     @Override
-    public Socket<InputStream> input(Socket<InputStream> input) {
-        return input.map(in -> new CipherInputStream(in, inputCipherSupplier.get()));
+    public BlockTransform inputTransform() throws Exception {
+        return new CipherTransform(inputCipherSupplier.get());
     }
 }
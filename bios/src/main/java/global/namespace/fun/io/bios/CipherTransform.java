@@ -0,0 +1,97 @@
+/*
+ * Copyright © 2017 - 2020 Schlichtherle IT Services
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package global.namespace.fun.io.bios;
+
+import global.namespace.fun.io.api.BlockTransform;
+
+import javax.crypto.Cipher;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+
+/**
+ * Encrypts or decrypts the data with a cipher.
+ * If the output buffer is too small for the output of the cipher, e.g. when decrypting with an AEAD cipher, which
+ * returns all of the plain text upon completion, then the output gets kept in a pending buffer until it has been
+ * drained.
+ *
+ * @author Christian Schlichtherle
+ */
+final class CipherTransform implements BlockTransform {
+
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+    private final Cipher cipher;
+
+    private ByteBuffer pending = EMPTY;
+
+    private boolean finished;
+
+    CipherTransform(final Cipher cipher) { this.cipher = cipher; }
+
+    @Override
+    public void update(final ByteBuffer input, final ByteBuffer output) throws IOException {
+        try {
+            while (input.hasRemaining() && drain(output)) {
+                final int n = Math.min(input.remaining(), output.remaining());
+                if (0 == n) {
+                    return;
+                }
+                final int position = input.position();
+                if (cipher.getOutputSize(n) <= output.remaining()) {
+                    final ByteBuffer slice = input.duplicate();
+                    slice.limit(position + n);
+                    cipher.update(slice, output);
+                } else {
+                    pending = wrap(cipher.update(input.array(), input.arrayOffset() + position, n));
+                }
+                input.position(position + n);
+            }
+        } catch (GeneralSecurityException e) {
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public boolean finish(final ByteBuffer output) throws IOException {
+        if (!finished) {
+            if (!drain(output)) {
+                return false;
+            }
+            try {
+                pending = wrap(cipher.doFinal());
+            } catch (GeneralSecurityException e) {
+                throw new IOException(e);
+            }
+            finished = true;
+        }
+        return drain(output);
+    }
+
+    /** Drains the pending output and returns {@code true} if and only if it's empty. */
+    private boolean drain(final ByteBuffer output) {
+        final int n = Math.min(pending.remaining(), output.remaining());
+        if (0 < n) {
+            final ByteBuffer slice = pending.duplicate();
+            slice.limit(slice.position() + n);
+            output.put(slice);
+            pending.position(pending.position() + n);
+        }
+        return !pending.hasRemaining();
+    }
+
+    private static ByteBuffer wrap(final byte[] b) { return null != b ? ByteBuffer.wrap(b) : EMPTY; }
+}
@@ -0,0 +1,428 @@
+/*
+ * Copyright © 2017 Schlichtherle IT Services
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package global.namespace.fun.io.bios;
+
+import global.namespace.fun.io.api.ContentTooLargeException;
+import global.namespace.fun.io.api.NoContentException;
+import global.namespace.fun.io.api.Socket;
+import global.namespace.fun.io.api.Source;
+import global.namespace.fun.io.api.Store;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.Arrays.copyOf;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A bounded cache for the content of sources and stores.
+ * This is useful for sources and stores which are expensive to read, e.g. remote stores or stores which are filtered
+ * through compression or encryption:
+ * Once the content has been read, any subsequent call to {@link Store#content()} or {@link Source#input()} gets served
+ * from memory until the cached content gets evicted.
+ * <p>
+ * Use {@link #source(Source)} or {@link #store(Store)} to decorate a source or store with this cache.
+ * The total size of the cached content is limited by the {@linkplain Builder#maxBytes(long) maximum number of bytes},
+ * where the least recently used content gets evicted first.
+ * Content which is larger than this limit never gets cached.
+ * Optionally, cached content expires after a {@linkplain Builder#timeToLive(Duration) time to live}.
+ * Writing to or deleting a decorated store invalidates its cached content.
+ * However, changes to the underlying source or store which bypass the decorator are not noticed, so use a time to
+ * live or {@link #invalidateAll()} in this case.
+ * <p>
+ * A content cache is thread-safe, so it may be shared by any number of decorators and threads.
+ *
+ * @author Christian Schlichtherle
+ */
+public final class ContentCache {
+
+    private final long maxBytes, timeToLiveNanos;
+
+    private final LinkedHashMap<Object, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long bytes, hits, misses, evictions;
+
+    private ContentCache(final Builder b) {
+        this.maxBytes = b.maxBytes;
+        this.timeToLiveNanos = b.timeToLive.toNanos();
+    }
+
+    /** Returns a new builder for a content cache. */
+    public static Builder builder() { return new Builder(); }
+
+    /** Returns a source which caches the content of the given source in this cache. */
+    public Source source(Source source) { return new CachingSource(requireNonNull(source)); }
+
+    /** Returns a store which caches the content of the given store in this cache. */
+    public Store store(Store store) { return new CachingStore(requireNonNull(store)); }
+
+    /** Returns the maximum total size of the cached content in bytes. */
+    public long maxBytes() { return maxBytes; }
+
+    /** Returns the total size of the cached content in bytes. */
+    public synchronized long bytes() { return bytes; }
+
+    /** Returns the number of lookups which have been served from this cache. */
+    public synchronized long hitCount() { return hits; }
+
+    /** Returns the number of lookups which have not been served from this cache. */
+    public synchronized long missCount() { return misses; }
+
+    /** Returns the number of cached contents which have been evicted because of their size or age. */
+    public synchronized long evictionCount() { return evictions; }
+
+    /** Removes all content from this cache. */
+    public synchronized void invalidateAll() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    private synchronized byte[] get(final Object key) {
+        final Entry entry = entries.get(key);
+        if (null != entry) {
+            if (0 == timeToLiveNanos || System.nanoTime() - entry.created < timeToLiveNanos) {
+                hits++;
+                return entry.content;
+            }
+            remove(key);
+            evictions++;
+        }
+        misses++;
+        return null;
+    }
+
+    private synchronized void put(final Object key, final byte[] content) {
+        remove(key);
+        if (content.length <= maxBytes) {
+            entries.put(key, new Entry(content));
+            bytes += content.length;
+            for (final Iterator<Entry> it = entries.values().iterator(); maxBytes < bytes; evictions++) {
+                bytes -= it.next().content.length;
+                it.remove();
+            }
+        }
+    }
+
+    private synchronized void remove(final Object key) {
+        final Entry entry = entries.remove(key);
+        if (null != entry) {
+            bytes -= entry.content.length;
+        }
+    }
+
+    private int maxContentSize() { return (int) Math.min(maxBytes, Integer.MAX_VALUE); }
+
+    @Override
+    public String toString() {
+        return String.format("%s(maxBytes=%d, timeToLiveNanos=%d, bytes=%d, hits=%d, misses=%d, evictions=%d)",
+                getClass().getName(), maxBytes, timeToLiveNanos, bytes(), hitCount(), missCount(), evictionCount());
+    }
+
+    private static final class Entry {
+
+        final byte[] content;
+        final long created = System.nanoTime();
+
+        Entry(final byte[] content) { this.content = content; }
+    }
+
+    private class CachingSource implements Source {
+
+        /** Incremented whenever the content gets invalidated, so that a concurrent load does not cache stale content. */
+        private final AtomicLong version = new AtomicLong();
+
+        private final Source source;
+
+        CachingSource(final Source source) { this.source = source; }
+
+        /**
+         * Returns an input stream socket which serves the cached content, if any.
+         * Otherwise, it reads the underlying source and caches its content while streaming it, unless it exceeds the
+         * maximum number of bytes or the stream gets closed before the end of the content.
+         */
+        @Override
+        @SuppressWarnings("deprecation")
+        public Socket<InputStream> input() {
+            return () -> {
+                final long version = this.version.get();
+                final byte[] cached = get(this);
+                if (null != cached) {
+                    return new ByteArrayInputStream(cached);
+                }
+                return source.input().map(in -> new CachingInputStream(in, version)).get();
+            };
+        }
+
+        /**
+         * Returns the content of the underlying source, cached or not.
+         *
+         * @throws ContentTooLargeException if the content exceeds {@code max} bytes.
+         */
+        final byte[] cachedContent(final int max) throws IOException {
+            final long version = this.version.get();
+            byte[] content = get(this);
+            if (null == content) {
+                content = load(max(max));
+                cache(version, content);
+            }
+            if (content.length > max) {
+                throw new ContentTooLargeException(content.length, max);
+            }
+            return content;
+        }
+
+        /** Returns the maximum size of the content to load for a request of at most {@code max} bytes. */
+        private int max(final int max) { return Math.max(max, maxContentSize()); }
+
+        byte[] load(final int max) throws IOException {
+            try {
+                return source.applyReader(in -> {
+                    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+                    final byte[] buffer = new byte[Store.BUFSIZE];
+                    for (int read; 0 <= (read = in.read(buffer)); ) {
+                        if (out.size() > max - read) {
+                            throw new ContentTooLargeException((long) out.size() + read, max);
+                        }
+                        out.write(buffer, 0, read);
+                    }
+                    return out.toByteArray();
+                });
+            } catch (IOException | RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IOException(e);
+            }
+        }
+
+        private void cache(final long version, final byte[] content) {
+            synchronized (ContentCache.this) {
+                if (this.version.get() == version) {
+                    put(this, content);
+                }
+            }
+        }
+
+        void invalidate() {
+            synchronized (ContentCache.this) {
+                version.incrementAndGet();
+                remove(this);
+            }
+        }
+
+        /** Copies the content while it's read and caches it at the end of the content, unless it's too large. */
+        private final class CachingInputStream extends FilterInputStream {
+
+            private final long version;
+
+            private ByteArrayOutputStream copy = new ByteArrayOutputStream();
+
+            CachingInputStream(final InputStream in, final long version) {
+                super(in);
+                this.version = version;
+            }
+
+            @Override
+            public int read() throws IOException {
+                final int b = in.read();
+                if (0 <= b) {
+                    copy(new byte[]{(byte) b}, 0, 1);
+                } else {
+                    complete();
+                }
+                return b;
+            }
+
+            @Override
+            public int read(final byte[] b, final int off, final int len) throws IOException {
+                final int n = in.read(b, off, len);
+                if (0 < n) {
+                    copy(b, off, n);
+                } else if (0 > n) {
+                    complete();
+                }
+                return n;
+            }
+
+            @Override
+            public long skip(final long n) throws IOException {
+                copy = null; // the copy would have a gap
+                return in.skip(n);
+            }
+
+            @Override
+            public boolean markSupported() { return false; }
+
+            @Override
+            public void mark(int readlimit) {
+            }
+
+            @Override
+            public void reset() throws IOException { throw new IOException("mark/reset not supported"); }
+
+            private void copy(final byte[] b, final int off, final int len) {
+                final ByteArrayOutputStream copy = this.copy;
+                if (null != copy) {
+                    if (copy.size() > maxContentSize() - len) {
+                        this.copy = null; // too large
+                    } else {
+                        copy.write(b, off, len);
+                    }
+                }
+            }
+
+            private void complete() {
+                final ByteArrayOutputStream copy = this.copy;
+                if (null != copy) {
+                    this.copy = null;
+                    cache(version, copy.toByteArray());
+                }
+            }
+        }
+    }
+
+    private final class CachingStore extends CachingSource implements Store {
+
+        private final Store store;
+
+        CachingStore(final Store store) {
+            super(store);
+            this.store = store;
+        }
+
+        @Override
+        byte[] load(final int max) throws IOException { return store.content(max); }
+
+        @Override
+        public Socket<OutputStream> output() {
+            return store.output().map(out -> {
+                invalidate();
+                return new FilterOutputStream(out) {
+
+                    @Override
+                    public void write(byte[] b, int off, int len) throws IOException { out.write(b, off, len); }
+
+                    @Override
+                    public void close() throws IOException {
+                        try {
+                            super.close();
+                        } finally {
+                            invalidate();
+                        }
+                    }
+                };
+            });
+        }
+
+        @Override
+        public void delete() throws IOException {
+            invalidate();
+            store.delete();
+        }
+
+        @Override
+        public OptionalLong size() throws IOException {
+            final byte[] cached = cached();
+            return null != cached ? OptionalLong.of(cached.length) : store.size();
+        }
+
+        @Override
+        public boolean exists() throws IOException { return null != cached() || store.exists(); }
+
+        @Override
+        public Optional<?> changeToken() throws IOException { return store.changeToken(); }
+
+        /** Returns the cached content without counting a hit or miss. */
+        private byte[] cached() {
+            synchronized (ContentCache.this) {
+                final Entry entry = entries.get(this);
+                return null != entry && (0 == timeToLiveNanos || System.nanoTime() - entry.created < timeToLiveNanos)
+                        ? entry.content
+                        : null;
+            }
+        }
+
+        @Override
+        public byte[] content(final int max) throws IOException {
+            if (max < 0) {
+                throw new IllegalArgumentException(max + " < 0");
+            }
+            final byte[] content = cachedContent(max);
+            return copyOf(content, content.length);
+        }
+
+        /** Returns a read-only view of the cached content without copying it. */
+        @Override
+        public ByteBuffer contentBuffer(final int max) throws IOException {
+            if (max < 0) {
+                throw new IllegalArgumentException(max + " < 0");
+            }
+            return ByteBuffer.wrap(cachedContent(max)).asReadOnlyBuffer();
+        }
+
+        @Override
+        public void content(final byte[] b, final int off, final int len) throws IOException {
+            invalidate();
+            try {
+                store.content(b, off, len);
+            } finally {
+                invalidate();
+            }
+        }
+    }
+
+    /** A builder for a content cache. */
+    public static final class Builder {
+
+        private long maxBytes = 64 * 1024 * 1024;
+
+        private Duration timeToLive = Duration.ZERO;
+
+        private Builder() { }
+
+        /**
+         * Sets the maximum total size of the cached content in bytes.
+         * The default value is 64 MiB.
+         */
+        public Builder maxBytes(final long maxBytes) {
+            if (0 > maxBytes) {
+                throw new IllegalArgumentException(maxBytes + " is a negative number of bytes.");
+            }
+            this.maxBytes = maxBytes;
+            return this;
+        }
+
+        /**
+         * Sets the time to live of the cached content, starting when it gets loaded.
+         * The default value is zero, which means that the cached content never expires.
+         */
+        public Builder timeToLive(final Duration timeToLive) {
+            if (timeToLive.isNegative()) {
+                throw new IllegalArgumentException(timeToLive + " is a negative duration.");
+            }
+            this.timeToLive = timeToLive;
+            return this;
+        }
+
+        public ContentCache build() { return new ContentCache(this); }
+    }
+}
@@ -15,23 +15,30 @@
  */
 package global.namespace.fun.io.bios;
 
-import global.namespace.fun.io.api.Filter;
+import global.namespace.fun.io.api.BlockFilter;
+import global.namespace.fun.io.api.BlockTransform;
 import global.namespace.fun.io.api.Socket;
 import global.namespace.fun.io.api.Store;
 import global.namespace.fun.io.api.function.XSupplier;
+import global.namespace.fun.io.spi.BufferArena;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.util.zip.Deflater;
 import java.util.zip.DeflaterOutputStream;
 import java.util.zip.Inflater;
 import java.util.zip.InflaterInputStream;
 
 /**
+ * The streams of this filter are the JDK's deflater/inflater streams, while its transformations only get used when
+ * fusing it with other block filters.
+ * Either way, the deflaters and inflaters get released to the shared {@link ZlibPool} when they are not needed anymore.
+ *
  * @author Christian Schlichtherle
  */
-final class DeflateFilter implements Filter {
+final class DeflateFilter implements BlockFilter {
 
     private final XSupplier<Deflater> deflaterSupplier;
     private final XSupplier<Inflater> inflaterSupplier;
@@ -41,18 +48,51 @@ final class DeflateFilter implements Filter {
         this.inflaterSupplier = inflaterSupplier;
     }
 
+    @Override
+    public BlockTransform outputTransform() throws Exception { return new DeflateTransform(deflaterSupplier.get()); }
+
+    @Override
+    public BlockTransform inputTransform() throws Exception { return new InflateTransform(inflaterSupplier.get()); }
+
     @Override
     public Socket<OutputStream> output(final Socket<OutputStream> output) {
-        return output.map(out -> new DeflaterOutputStream(out, deflaterSupplier.get(), Store.BUFSIZE) {
+        return output.map(out -> new DeflaterOutputStream(out, deflaterSupplier.get(), 1) {
+
+            final ByteBuffer pooled = BufferArena.heap().acquire(Store.BUFSIZE);
+
+            final Lease lease = new Lease(() -> {
+                ZlibPool.shared().release(def);
+                BufferArena.heap().release(pooled);
+            });
 
-            boolean closed;
+            {
+                buf = pooled.array();
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                lease.enter();
+                try {
+                    super.write(b, off, len);
+                } finally {
+                    lease.exit();
+                }
+            }
+
+            @Override
+            public void finish() throws IOException {
+                lease.enter();
+                try {
+                    super.finish();
+                } finally {
+                    lease.exit();
+                }
+            }
 
             @Override
             public void close() throws IOException {
-                finish();
-                if (!closed) {
-                    closed = true;
-                    SideEffect.runAll(def::end, super::close);
+                if (lease.beginClose()) {
+                    SideEffect.runAll(this::finish, out::close, lease::endClose);
                 }
             }
         });
@@ -60,15 +100,41 @@ final class DeflateFilter implements Filter {
 
     @Override
     public Socket<InputStream> input(final Socket<InputStream> input) {
-        return input.map(in -> new InflaterInputStream(in, inflaterSupplier.get(), Store.BUFSIZE) {
+        return input.map(in -> new InflaterInputStream(in, inflaterSupplier.get(), 1) {
+
+            final ByteBuffer pooled = BufferArena.heap().acquire(Store.BUFSIZE);
+
+            final Lease lease = new Lease(() -> {
+                ZlibPool.shared().release(inf);
+                BufferArena.heap().release(pooled);
+            });
 
-            boolean closed;
+            {
+                buf = pooled.array();
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                lease.enter();
+                try {
+                    return super.read(b, off, len);
+                } finally {
+                    lease.exit();
+                }
+            }
+
+            @Override
+            public int available() throws IOException {
+                if (lease.closed()) {
+                    throw new IOException("Stream closed.");
+                }
+                return super.available();
+            }
 
             @Override
             public void close() throws IOException {
-                if (!closed) {
-                    closed = true;
-                    SideEffect.runAll(inf::end, super::close);
+                if (lease.beginClose()) {
+                    SideEffect.runAll(in::close, lease::endClose);
                 }
             }
         });
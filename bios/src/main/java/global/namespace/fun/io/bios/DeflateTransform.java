@@ -0,0 +1,70 @@
+/*
+ * Copyright © 2017 - 2020 Schlichtherle IT Services
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package global.namespace.fun.io.bios;
+
+import global.namespace.fun.io.api.BlockTransform;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.Deflater;
+
+/**
+ * Compresses the data with a deflater, which gets released to the shared {@link ZlibPool} upon closing this
+ * transformation.
+ *
+ * @author Christian Schlichtherle
+ */
+final class DeflateTransform implements BlockTransform {
+
+    private final Deflater deflater;
+
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    DeflateTransform(final Deflater deflater) { this.deflater = deflater; }
+
+    @Override
+    public void update(final ByteBuffer input, final ByteBuffer output) {
+        if (input.hasRemaining()) {
+            final long read = deflater.getBytesRead();
+            deflater.setInput(input.array(), input.arrayOffset() + input.position(), input.remaining());
+            while (!deflater.needsInput() && output.hasRemaining() && 0 < deflate(output)) {
+            }
+            input.position(input.position() + (int) (deflater.getBytesRead() - read));
+        }
+    }
+
+    @Override
+    public boolean finish(final ByteBuffer output) {
+        deflater.finish();
+        while (!deflater.finished() && output.hasRemaining() && 0 < deflate(output)) {
+        }
+        return deflater.finished();
+    }
+
+    private int deflate(final ByteBuffer output) {
+        final int position = output.position();
+        final int n = deflater.deflate(output.array(), output.arrayOffset() + position, output.remaining());
+        output.position(position + n);
+        return n;
+    }
+
+    @Override
+    public void close() {
+        if (closed.compareAndSet(false, true)) {
+            ZlibPool.shared().release(deflater);
+        }
+    }
+}
@@ -96,6 +96,11 @@ final class DirectoryStore implements ArchiveStore {
                 };
             }
 
+            @Override
+            public boolean isConcurrent() {
+                return true;
+            }
+
             @Override
             public void close() {
             }
@@ -136,6 +141,11 @@ final class DirectoryStore implements ArchiveStore {
                 };
             }
 
+            @Override
+            public boolean isConcurrent() {
+                return true;
+            }
+
             @Override
             public void close() {
             }
@@ -17,12 +17,9 @@ package global.namespace.fun.io.bios;
 
 import global.namespace.fun.io.api.Filter;
 import global.namespace.fun.io.api.Socket;
-import global.namespace.fun.io.api.Store;
 
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
 
 /**
  * @author Christian Schlichtherle
@@ -31,11 +28,11 @@ final class GZIPFilter implements Filter {
 
     @Override
     public Socket<OutputStream> output(Socket<OutputStream> output) {
-        return output.map(out -> new GZIPOutputStream(out, Store.BUFSIZE));
+        return output.map(PooledGZIPOutputStream::new);
     }
 
     @Override
     public Socket<InputStream> input(Socket<InputStream> input) {
-        return input.map(in -> new GZIPInputStream(in, Store.BUFSIZE));
+        return input.map(PooledGZIPInputStream::new);
     }
 }
@@ -15,7 +15,8 @@
  */
 package global.namespace.fun.io.bios;
 
-import global.namespace.fun.io.api.Filter;
+import global.namespace.fun.io.api.BlockFilter;
+import global.namespace.fun.io.api.BlockTransform;
 import global.namespace.fun.io.api.Socket;
 import global.namespace.fun.io.api.Store;
 import global.namespace.fun.io.api.function.XSupplier;
@@ -29,9 +30,13 @@ import java.util.zip.Inflater;
 import java.util.zip.InflaterOutputStream;
 
 /**
+ * The streams of this filter are the JDK's deflater/inflater streams, while its transformations only get used when
+ * fusing it with other block filters.
+ * Either way, the inflaters and deflaters get released to the shared {@link ZlibPool} when they are not needed anymore.
+ *
  * @author Christian Schlichtherle
  */
-final class InflateFilter implements Filter {
+final class InflateFilter implements BlockFilter {
 
     private final XSupplier<Inflater> inflaterSupplier;
     private final XSupplier<Deflater> deflaterSupplier;
@@ -41,18 +46,52 @@ final class InflateFilter implements Filter {
         this.deflaterSupplier = deflaterSupplier;
     }
 
+    @Override
+    public BlockTransform outputTransform() throws Exception { return new InflateTransform(inflaterSupplier.get()); }
+
+    @Override
+    public BlockTransform inputTransform() throws Exception { return new DeflateTransform(deflaterSupplier.get()); }
+
     @Override
     public Socket<OutputStream> output(final Socket<OutputStream> output) {
         return output.map(out -> new InflaterOutputStream(out, inflaterSupplier.get(), Store.BUFSIZE) {
 
-            boolean closed;
+            final Lease lease = new Lease(() -> ZlibPool.shared().release(inf));
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                lease.enter();
+                try {
+                    super.write(b, off, len);
+                } finally {
+                    lease.exit();
+                }
+            }
+
+            @Override
+            public void flush() throws IOException {
+                lease.enter();
+                try {
+                    super.flush();
+                } finally {
+                    lease.exit();
+                }
+            }
+
+            @Override
+            public void finish() throws IOException {
+                lease.enter();
+                try {
+                    super.finish();
+                } finally {
+                    lease.exit();
+                }
+            }
 
             @Override
             public void close() throws IOException {
-                finish();
-                if (!closed) {
-                    closed = true;
-                    SideEffect.runAll(inf::end, super::close);
+                if (lease.beginClose()) {
+                    SideEffect.runAll(this::finish, out::close, lease::endClose);
                 }
             }
         });
@@ -62,13 +101,40 @@ final class InflateFilter implements Filter {
     public Socket<InputStream> input(final Socket<InputStream> input) {
         return input.map(in -> new DeflaterInputStream(in, deflaterSupplier.get(), Store.BUFSIZE) {
 
-            boolean closed;
+            final Lease lease = new Lease(() -> ZlibPool.shared().release(def));
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                lease.enter();
+                try {
+                    return super.read(b, off, len);
+                } finally {
+                    lease.exit();
+                }
+            }
+
+            @Override
+            public long skip(long n) throws IOException {
+                lease.enter();
+                try {
+                    return super.skip(n);
+                } finally {
+                    lease.exit();
+                }
+            }
+
+            @Override
+            public int available() throws IOException {
+                if (lease.closed()) {
+                    throw new IOException("Stream closed.");
+                }
+                return super.available();
+            }
 
             @Override
             public void close() throws IOException {
-                if (!closed) {
-                    closed = true;
-                    SideEffect.runAll(def::end, super::close);
+                if (lease.beginClose()) {
+                    SideEffect.runAll(in::close, lease::endClose);
                 }
             }
         });
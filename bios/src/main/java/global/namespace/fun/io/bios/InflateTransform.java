@@ -0,0 +1,89 @@
+/*
+ * Copyright © 2017 - 2020 Schlichtherle IT Services
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package global.namespace.fun.io.bios;
+
+import global.namespace.fun.io.api.BlockTransform;
+
+import java.io.EOFException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Decompresses the data with an inflater, which gets released to the shared {@link ZlibPool} upon closing this
+ * transformation.
+ * Like an {@link java.util.zip.InflaterInputStream}, any data after the end of the compressed data gets ignored.
+ *
+ * @author Christian Schlichtherle
+ */
+final class InflateTransform implements BlockTransform {
+
+    private final Inflater inflater;
+
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    InflateTransform(final Inflater inflater) { this.inflater = inflater; }
+
+    @Override
+    public void update(final ByteBuffer input, final ByteBuffer output) throws ZipException {
+        if (input.hasRemaining() && !inflater.finished()) {
+            inflater.setInput(input.array(), input.arrayOffset() + input.position(), input.remaining());
+            inflate(output);
+            input.position(input.limit() - inflater.getRemaining());
+        }
+        if (inflater.finished()) {
+            input.position(input.limit());
+        }
+    }
+
+    @Override
+    public boolean finish(final ByteBuffer output) throws ZipException, EOFException {
+        inflate(output);
+        if (!inflater.finished() && output.hasRemaining()) {
+            throw new EOFException("Unexpected end of ZLIB input stream");
+        }
+        return inflater.finished();
+    }
+
+    /** Inflates into the output buffer until it's full or the inflater needs more input or has finished. */
+    private void inflate(final ByteBuffer output) throws ZipException {
+        try {
+            while (output.hasRemaining() && !inflater.finished()) {
+                final int position = output.position();
+                final int n = inflater.inflate(output.array(), output.arrayOffset() + position, output.remaining());
+                if (0 == n) {
+                    if (inflater.needsDictionary()) {
+                        throw new ZipException("Missing preset dictionary.");
+                    }
+                    return;
+                }
+                output.position(position + n);
+            }
+        } catch (DataFormatException e) {
+            final String message = e.getMessage();
+            throw new ZipException(null != message ? message : "Invalid ZLIB data format");
+        }
+    }
+
+    @Override
+    public void close() {
+        if (closed.compareAndSet(false, true)) {
+            ZlibPool.shared().release(inflater);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright © 2017 Schlichtherle IT Services
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package global.namespace.fun.io.bios;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Guards the release of the pooled resources of a stream, e.g. a deflater or a buffer, which may get closed by another
+ * thread than the thread which is reading or writing it, e.g. when a copy operation gets aborted.
+ * Each read or write operation must be bracketed by {@link #enter()} and {@link #exit()}, and closing the stream
+ * must be bracketed by {@link #beginClose()} and {@link #endClose()}.
+ * The resources get released exactly once, when the stream has been closed and no operation is in progress anymore,
+ * so they never get reused by another stream while this stream is still using them.
+ *
+ * @author Christian Schlichtherle
+ */
+final class Lease {
+
+    private static final int CLOSED = 1, OPERATION = 2;
+
+    /** The closed bit plus the number of operations in progress times {@link #OPERATION}. */
+    private final AtomicInteger state = new AtomicInteger();
+
+    private final Runnable release;
+
+    /** The thread which has closed the stream and may still operate on it in order to clean it up. */
+    private volatile Thread closer;
+
+    Lease(final Runnable release) { this.release = release; }
+
+    /**
+     * Starts an operation.
+     *
+     * @throws IOException if the stream has been closed, unless the current thread is cleaning it up.
+     */
+    void enter() throws IOException {
+        if (!tryEnter()) {
+            throw new IOException("Stream closed.");
+        }
+    }
+
+    /**
+     * Starts an operation and returns {@code true} unless the stream has been closed and the current thread is not
+     * cleaning it up.
+     */
+    boolean tryEnter() {
+        while (true) {
+            final int s = state.get();
+            if (0 != (s & CLOSED) && closer != Thread.currentThread()) {
+                return false;
+            }
+            if (state.compareAndSet(s, s + OPERATION)) {
+                return true;
+            }
+        }
+    }
+
+    /** Ends an operation and releases the resources if the stream has been closed meanwhile. */
+    void exit() {
+        if (CLOSED == state.addAndGet(-OPERATION)) {
+            release.run();
+        }
+    }
+
+    /**
+     * Marks the stream as closed and returns {@code true} if it hasn't been closed before.
+     * In this case, the current thread must clean up the stream, e.g. finish and close the underlying stream, and then
+     * call {@link #endClose()}.
+     * While cleaning up, the current thread may still start operations.
+     */
+    boolean beginClose() {
+        for (int s; 0 == ((s = state.get()) & CLOSED); ) {
+            if (state.compareAndSet(s, (s | CLOSED) + OPERATION)) {
+                closer = Thread.currentThread();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Ends cleaning up the stream and releases the resources unless another operation is still in progress. */
+    void endClose() {
+        closer = null;
+        exit();
+    }
+
+    /** Returns {@code true} if and only if the stream has been closed. */
+    boolean closed() { return 0 != (state.get() & CLOSED); }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright © 2017 Schlichtherle IT Services
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package global.namespace.fun.io.bios;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+
+/**
+ * An input stream which reads a file via memory mapped windows of a fixed size, so that files larger than 2 GiB can be
+ * read, too.
+ * The windows get mapped lazily as the stream advances and unmapped by the garbage collector.
+ * This stream reads the file up to the size it had when the stream was opened.
+ *
+ * @author Christian Schlichtherle
+ */
+final class MappedInputStream extends InputStream {
+
+    private final FileChannel channel;
+    private final long size;
+    private final int windowSize;
+
+    private MappedByteBuffer window;
+    private long windowStart, position, mark;
+    private boolean closed;
+
+    MappedInputStream(final FileChannel channel, final int windowSize) throws IOException {
+        if (0 >= windowSize) {
+            throw new IllegalArgumentException(windowSize + " is not a positive window size.");
+        }
+        this.channel = channel;
+        this.windowSize = windowSize;
+        this.size = channel.size();
+        this.position = this.mark = channel.position();
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!window()) {
+            return -1;
+        }
+        final int b = window.get((int) (position - windowStart)) & 0xff;
+        position++;
+        return b;
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException {
+        if (0 > off || 0 > len || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (0 == len) {
+            return 0;
+        }
+        int total = 0;
+        while (total < len && window()) {
+            final int offset = (int) (position - windowStart);
+            final int n = Math.min(len - total, window.limit() - offset);
+            window.position(offset);
+            window.get(b, off + total, n);
+            position += n;
+            total += n;
+        }
+        return 0 < total ? total : -1;
+    }
+
+    /**
+     * Ensures that the current window covers the current position.
+     * Returns {@code false} if and only if the end of the file has been reached.
+     */
+    private boolean window() throws IOException {
+        checkOpen();
+        if (position >= size) {
+            return false;
+        }
+        if (null == window || position < windowStart || position >= windowStart + window.limit()) {
+            final long start = position - position % windowSize;
+            window = channel.map(READ_ONLY, start, Math.min(windowSize, size - start));
+            windowStart = start;
+        }
+        return true;
+    }
+
+    @Override
+    public long skip(final long n) throws IOException {
+        checkOpen();
+        if (0 >= n) {
+            return 0;
+        }
+        final long skipped = Math.min(n, Math.max(0, size - position));
+        position += skipped;
+        return skipped;
+    }
+
+    @Override
+    public int available() throws IOException {
+        checkOpen();
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(0, size - position));
+    }
+
+    @Override
+    public boolean markSupported() { return true; }
+
+    @Override
+    public synchronized void mark(int readlimit) { mark = position; }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        checkOpen();
+        position = mark;
+    }
+
+    private void checkOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed.");
+        }
+    }
+
+    /**
+     * Closes the underlying file channel.
+     * The current window does not get unmapped explicitly because another thread may still be reading it.
+     */
+    @Override
+    public void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            channel.close();
+        }
+    }
+}
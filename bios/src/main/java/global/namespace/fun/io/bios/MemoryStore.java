@@ -21,20 +21,28 @@ import global.namespace.fun.io.api.Socket;
 import global.namespace.fun.io.api.Store;
 
 import java.io.*;
+import java.nio.ByteBuffer;
 import java.util.Optional;
 import java.util.OptionalLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static java.util.Arrays.copyOf;
 import static java.util.Arrays.copyOfRange;
 
+/**
+ * A store which keeps its content in a byte array on the heap.
+ * This store is thread-safe:
+ * Closing an output stream atomically publishes a new immutable snapshot of the content, so any reader sees either the
+ * old or the new content, but never a mix of both.
+ * Reads are lock-free and any number of input streams may read the same snapshot concurrently without copying it.
+ *
+ * @author Christian Schlichtherle
+ */
 final class MemoryStore implements Store {
 
     private final int bufferSize;
 
-    @SuppressWarnings("OptionalUsedAsFieldOrParameterType")
-    private Optional<byte[]> optContent = Optional.empty();
-
-    private int length; // only valid if optContent.isPresent() == true
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>();
 
     MemoryStore(final int bufferSize) {
         if (0 > (this.bufferSize = bufferSize)) {
@@ -44,39 +52,76 @@ final class MemoryStore implements Store {
 
     @Override
     public Socket<InputStream> input() {
-        return () -> new ByteArrayInputStream(checkedContent(), 0, length);
+        return () -> {
+            final Snapshot snapshot = checkedSnapshot();
+            return new ByteArrayInputStream(snapshot.content, 0, snapshot.length);
+        };
     }
 
     @Override
     public Socket<OutputStream> output() {
-        return () -> new ByteArrayOutputStream(bufferSize) {
+        return () -> new OutputStream() {
+
+            final Buffer buffer = new Buffer(bufferSize);
+
+            boolean closed;
+
+            @Override
+            public synchronized void write(int b) throws IOException {
+                checkOpen();
+                buffer.write(b);
+            }
+
+            @Override
+            public synchronized void write(byte[] b, int off, int len) throws IOException {
+                checkOpen();
+                buffer.write(b, off, len);
+            }
+
+            void checkOpen() throws IOException {
+                if (closed) {
+                    throw new IOException("Stream closed.");
+                }
+            }
 
             @Override
-            public void close() {
-                optContent = Optional.of(buf);
-                length = count;
+            public synchronized void close() {
+                if (!closed) {
+                    closed = true;
+                    snapshot.set(buffer.snapshot());
+                }
             }
         };
     }
 
     @Override
     public void delete() throws IOException {
-        checkedContent();
-        optContent = Optional.empty();
+        if (null == snapshot.getAndSet(null)) {
+            throw new NoContentException();
+        }
     }
 
     @Override
-    public OptionalLong size() throws IOException {
-        return optContent.isPresent() ? OptionalLong.of(length) : OptionalLong.empty();
+    public OptionalLong size() {
+        final Snapshot snapshot = this.snapshot.get();
+        return null != snapshot ? OptionalLong.of(snapshot.length) : OptionalLong.empty();
     }
 
     @Override
     public boolean exists() {
-        return optContent.isPresent();
+        return null != snapshot.get();
     }
 
-    private byte[] checkedContent() throws NoContentException {
-        return optContent.orElseThrow(NoContentException::new);
+    /** Returns the current snapshot, which is replaced whenever the content changes. */
+    @Override
+    public Optional<?> changeToken() { return Optional.ofNullable(snapshot.get()); }
+
+    private Snapshot checkedSnapshot() throws NoContentException {
+        final Snapshot snapshot = this.snapshot.get();
+        if (null == snapshot) {
+            throw new NoContentException();
+        }
+        return snapshot;
     }
 
     @Override
@@ -84,23 +129,52 @@ final class MemoryStore implements Store {
         if (max < 0) {
             throw new IllegalArgumentException(max + " < 0");
         }
-        final Optional<byte[]> optContent = this.optContent;
-        if (optContent.isPresent()) {
-            final byte[] content = optContent.get();
-            final int length = this.length;
-            if (length <= max) {
-                return copyOf(content, length);
-            } else {
-                throw new ContentTooLargeException(length, max);
-            }
+        final Snapshot snapshot = checkedSnapshot();
+        final int length = snapshot.length;
+        if (length <= max) {
+            return copyOf(snapshot.content, length);
         } else {
-            throw new NoContentException();
+            throw new ContentTooLargeException(length, max);
+        }
+    }
+
+    /** Returns a read-only view of the content without copying it. */
+    @Override
+    public ByteBuffer contentBuffer(final int max) throws IOException {
+        if (max < 0) {
+            throw new IllegalArgumentException(max + " < 0");
+        }
+        final Snapshot snapshot = checkedSnapshot();
+        final int length = snapshot.length;
+        if (length <= max) {
+            return ByteBuffer.wrap(snapshot.content, 0, length).slice().asReadOnlyBuffer();
+        } else {
+            throw new ContentTooLargeException(length, max);
         }
     }
 
     @Override
     public void content(byte[] b, int off, int len) {
-        optContent = Optional.of(copyOfRange(b, off, off + len));
-        length = len;
+        snapshot.set(new Snapshot(copyOfRange(b, off, off + len), len));
+    }
+
+    /** A byte array output stream which hands over its buffer to a snapshot without copying it. */
+    private static final class Buffer extends ByteArrayOutputStream {
+
+        Buffer(int size) { super(size); }
+
+        Snapshot snapshot() { return new Snapshot(buf, count); }
+    }
+
+    /** An immutable snapshot of the content. */
+    private static final class Snapshot {
+
+        final byte[] content;
+        final int length;
+
+        Snapshot(final byte[] content, final int length) {
+            this.content = content;
+            this.length = length;
+        }
     }
 }
@@ -0,0 +1,52 @@
+/*
+ * Copyright © 2017 Schlichtherle IT Services
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package global.namespace.fun.io.bios;
+
+import global.namespace.fun.io.api.Filter;
+import global.namespace.fun.io.api.Socket;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * @author Christian Schlichtherle
+ */
+final class ParallelGZIPFilter implements Filter {
+
+    private static final Filter GZIP = new GZIPFilter();
+
+    private final int level, blockSize, maxPending;
+
+    private final ForkJoinPool pool;
+
+    ParallelGZIPFilter(final int level, final int blockSize, final int threads) {
+        this.level = level;
+        this.blockSize = blockSize;
+        this.maxPending = 2 * threads;
+        this.pool = new ForkJoinPool(threads);
+    }
+
+    @Override
+    public Socket<OutputStream> output(Socket<OutputStream> output) {
+        return output.map(out -> new ParallelGZIPOutputStream(out, level, blockSize, pool, maxPending));
+    }
+
+    @Override
+    public Socket<InputStream> input(Socket<InputStream> input) {
+        return GZIP.input(input);
+    }
+}
@@ -0,0 +1,319 @@
+/*
+ * Copyright © 2017 Schlichtherle IT Services
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package global.namespace.fun.io.bios;
+
+import global.namespace.fun.io.spi.BufferArena;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * An output stream which compresses the data in the GZIP format by compressing blocks of the data in parallel.
+ * Each block gets compressed by a raw deflater which is primed with the last {@value #DICTIONARY_SIZE} bytes of the
+ * previous block as its dictionary and flushed to a byte boundary, so that the compressed blocks can get concatenated
+ * into a single deflate stream.
+ * The CRC-32 checksums of the blocks get combined into the checksum of the data for the GZIP trailer.
+ *
+ * @author Christian Schlichtherle
+ */
+final class ParallelGZIPOutputStream extends OutputStream {
+
+    private static final int DICTIONARY_SIZE = 32 * 1024;
+
+    /** The same header as written by {@link java.util.zip.GZIPOutputStream}. */
+    private static final byte[] HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0};
+
+    private final BufferArena arena = BufferArena.heap();
+
+    private final ArrayDeque<Block> pending = new ArrayDeque<>();
+
+    private final OutputStream out;
+
+    private final int level, blockSize, maxPending;
+
+    private final ForkJoinPool pool;
+
+    /** The block which gets currently filled, if any. */
+    private Block current;
+
+    /** The last submitted block, which provides the dictionary for the next block, if any. */
+    private Block previous;
+
+    /**
+     * The last written block, if any.
+     * Its buffer gets released once the next block has been written because until then it may be used as a
+     * dictionary.
+     */
+    private Block written;
+
+    private long crc, size;
+
+    private boolean closed, failed;
+
+    ParallelGZIPOutputStream(final OutputStream out, final int level, final int blockSize, final ForkJoinPool pool,
+                             final int maxPending) throws IOException {
+        this.out = out;
+        this.level = level;
+        this.blockSize = blockSize;
+        this.pool = pool;
+        this.maxPending = maxPending;
+        out.write(HEADER);
+    }
+
+    @Override
+    public void write(int b) throws IOException { write(new byte[]{(byte) b}, 0, 1); }
+
+    @Override
+    public void write(final byte[] b, int off, int len) throws IOException {
+        check();
+        try {
+            while (0 < len) {
+                if (null == current) {
+                    current = new Block(arena.acquire(blockSize));
+                }
+                final int n = Math.min(len, blockSize - current.length);
+                System.arraycopy(b, off, current.array(), current.length, n);
+                current.length += n;
+                off += n;
+                len -= n;
+                if (current.length == blockSize) {
+                    submit(false);
+                }
+            }
+        } catch (Throwable e) {
+            failed = true;
+            throw e;
+        }
+    }
+
+    /** Writes all pending blocks, including the current block, and flushes the underlying output stream. */
+    @Override
+    public void flush() throws IOException {
+        check();
+        try {
+            if (null != current) {
+                submit(false);
+            }
+            while (!pending.isEmpty()) {
+                write();
+            }
+            out.flush();
+        } catch (Throwable e) {
+            failed = true;
+            throw e;
+        }
+    }
+
+    private void check() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed.");
+        }
+        if (failed) {
+            throw new IOException("Stream failed.");
+        }
+    }
+
+    private void submit(final boolean last) throws IOException {
+        final Block block = null != current ? current : new Block(arena.acquire(blockSize));
+        current = null;
+        final Optional<Block> dictionary = Optional.ofNullable(previous);
+        block.task = pool.submit(() -> block.deflate(level, dictionary, last));
+        pending.add(block);
+        previous = block;
+        while (pending.size() > maxPending) {
+            write();
+        }
+    }
+
+    /** Waits for the first pending block to get compressed and writes it to the underlying output stream. */
+    private void write() throws IOException {
+        final Block block = pending.element();
+        final byte[] deflated;
+        try {
+            deflated = block.task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt(); // restore
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+        }
+        pending.remove();
+        out.write(deflated);
+        crc = combine(crc, block.crc, block.length);
+        size += block.length;
+        if (null != written) {
+            arena.release(written.buffer);
+        }
+        written = block;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            SideEffect.runAll(this::finish, out::close, this::release);
+        }
+    }
+
+    private void finish() throws IOException {
+        if (!failed) {
+            failed = true;
+            submit(true);
+            while (!pending.isEmpty()) {
+                write();
+            }
+            writeInt((int) crc);
+            writeInt((int) size);
+            failed = false;
+        }
+    }
+
+    private void writeInt(final int i) throws IOException {
+        out.write(i);
+        out.write(i >>> 8);
+        out.write(i >>> 16);
+        out.write(i >>> 24);
+    }
+
+    private void release() {
+        for (final Block block : pending) {
+            block.task.quietlyJoin();
+            arena.release(block.buffer);
+        }
+        pending.clear();
+        if (null != current) {
+            arena.release(current.buffer);
+            current = null;
+        }
+        if (null != written) {
+            arena.release(written.buffer);
+            written = null;
+        }
+        previous = null;
+    }
+
+    /**
+     * Returns the CRC-32 checksum of the concatenation of two sequences, given the checksums of both sequences and
+     * the length of the second sequence.
+     * This is the same algorithm as {@code crc32_combine} in zlib.
+     */
+    static long combine(long crc1, final long crc2, long len2) {
+        if (0 >= len2) {
+            return crc1;
+        }
+        final long[] even = new long[32], odd = new long[32];
+        odd[0] = 0xedb88320L; // the CRC-32 polynomial
+        for (int n = 1; n < 32; n++) {
+            odd[n] = 1L << (n - 1);
+        }
+        square(even, odd); // two zero bits
+        square(odd, even); // four zero bits
+        do {
+            square(even, odd);
+            if (0 != (len2 & 1)) {
+                crc1 = times(even, crc1);
+            }
+            len2 >>>= 1;
+            if (0 == len2) {
+                break;
+            }
+            square(odd, even);
+            if (0 != (len2 & 1)) {
+                crc1 = times(odd, crc1);
+            }
+            len2 >>>= 1;
+        } while (0 != len2);
+        return crc1 ^ crc2;
+    }
+
+    private static long times(final long[] matrix, long vector) {
+        long sum = 0;
+        for (int i = 0; 0 != vector; i++, vector >>>= 1) {
+            if (0 != (vector & 1)) {
+                sum ^= matrix[i];
+            }
+        }
+        return sum;
+    }
+
+    private static void square(final long[] square, final long[] matrix) {
+        for (int n = 0; n < 32; n++) {
+            square[n] = times(matrix, matrix[n]);
+        }
+    }
+
+    private static final class Block {
+
+        final ByteBuffer buffer;
+
+        int length;
+
+        long crc;
+
+        ForkJoinTask<byte[]> task;
+
+        Block(final ByteBuffer buffer) { this.buffer = buffer; }
+
+        byte[] array() { return buffer.array(); }
+
+        /**
+         * Returns the compressed data of this block and computes its checksum.
+         * Unless this is the last block, the compressed data ends with a sync flush, so it does not end the deflate
+         * stream.
+         */
+        byte[] deflate(final int level, final Optional<Block> dictionary, final boolean last) {
+            final byte[] array = array();
+            final CRC32 checksum = new CRC32();
+            checksum.update(array, 0, length);
+            crc = checksum.getValue();
+            final Deflater deflater = ZlibPool.shared().deflater(level, true);
+            try {
+                dictionary.ifPresent(block -> {
+                    final int n = Math.min(block.length, DICTIONARY_SIZE);
+                    deflater.setDictionary(block.array(), block.length - n, n);
+                });
+                deflater.setInput(array, 0, length);
+                if (last) {
+                    deflater.finish();
+                }
+                byte[] deflated = new byte[length + (length >>> 12) + 64];
+                int n = 0;
+                while (true) {
+                    n += deflater.deflate(deflated, n, deflated.length - n, last ? Deflater.NO_FLUSH : Deflater.SYNC_FLUSH);
+                    if (last ? deflater.finished() : n < deflated.length) {
+                        return n == deflated.length ? deflated : Arrays.copyOf(deflated, n);
+                    }
+                    if (n == deflated.length) {
+                        deflated = Arrays.copyOf(deflated, 2 * deflated.length);
+                    }
+                }
+            } finally {
+                ZlibPool.shared().release(deflater);
+            }
+        }
+    }
+}
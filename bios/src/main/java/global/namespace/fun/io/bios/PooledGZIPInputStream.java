@@ -0,0 +1,190 @@
+/*
+ * Copyright © 2017 Schlichtherle IT Services
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package global.namespace.fun.io.bios;
+
+import global.namespace.fun.io.api.Store;
+import global.namespace.fun.io.spi.BufferArena;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+/**
+ * Reads the same GZIP format as {@link java.util.zip.GZIPInputStream}, including concatenated GZIP members, but obtains
+ * its inflater from the shared {@link ZlibPool} and releases it when closed.
+ *
+ * @author Christian Schlichtherle
+ */
+final class PooledGZIPInputStream extends InflaterInputStream {
+
+    private static final int FHCRC = 2, FEXTRA = 4, FNAME = 8, FCOMMENT = 16;
+
+    private final CRC32 crc = new CRC32();
+
+    private final ByteBuffer pooled = BufferArena.heap().acquire(Store.BUFSIZE);
+
+    /** The buffered input which has not been consumed by the inflater yet. */
+    private int position, limit;
+
+    private final Lease lease = new Lease(this::release);
+
+    private boolean eos;
+
+    PooledGZIPInputStream(final InputStream in) throws IOException {
+        super(in, ZlibPool.shared().inflater(true), 1);
+        buf = pooled.array();
+        try {
+            readHeader();
+        } catch (Throwable e) {
+            lease.beginClose();
+            lease.endClose();
+            throw e;
+        }
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException {
+        lease.enter();
+        try {
+            while (!eos) {
+                final int n = super.read(b, off, len);
+                if (0 <= n) {
+                    crc.update(b, off, n);
+                    return n;
+                }
+                position = this.len - inf.getRemaining();
+                limit = this.len;
+                readTrailer();
+                if (!nextMember()) {
+                    eos = true;
+                }
+            }
+            return -1;
+        } finally {
+            lease.exit();
+        }
+    }
+
+    /** Reads the header of a GZIP member. */
+    private void readHeader() throws IOException {
+        crc.reset();
+        if (0x8b1f != readUnsignedShort()) {
+            throw new ZipException("Not in GZIP format");
+        }
+        if (Deflater.DEFLATED != readUnsignedByte()) {
+            throw new ZipException("Unsupported compression method");
+        }
+        final int flags = readUnsignedByte();
+        skipBytes(6); // MTIME, XFL, OS
+        if (0 != (flags & FEXTRA)) {
+            skipBytes(readUnsignedShort());
+        }
+        if (0 != (flags & FNAME)) {
+            while (0 != readUnsignedByte()) {
+            }
+        }
+        if (0 != (flags & FCOMMENT)) {
+            while (0 != readUnsignedByte()) {
+            }
+        }
+        if (0 != (flags & FHCRC)) {
+            final int expected = (int) crc.getValue() & 0xffff;
+            if (expected != readUnsignedShort()) {
+                throw new ZipException("Corrupt GZIP header");
+            }
+        }
+        crc.reset();
+    }
+
+    private void readTrailer() throws IOException {
+        final long expectedCrc = crc.getValue(), expectedSize = inf.getBytesWritten() & 0xffffffffL;
+        if (expectedCrc != readUnsignedInt() || expectedSize != readUnsignedInt()) {
+            throw new ZipException("Corrupt GZIP trailer");
+        }
+    }
+
+    /**
+     * Prepares reading the next GZIP member and returns {@code true} if there is one.
+     * Like {@link java.util.zip.GZIPInputStream}, any trailing data which is not a GZIP header gets ignored.
+     */
+    private boolean nextMember() throws IOException {
+        if (position == limit && 0 >= in.available()) {
+            return false;
+        }
+        try {
+            readHeader();
+        } catch (IOException ignored) {
+            return false;
+        }
+        inf.reset();
+        if (position < limit) {
+            inf.setInput(buf, position, limit - position);
+        }
+        return true;
+    }
+
+    private void skipBytes(int n) throws IOException {
+        while (0 < n--) {
+            readUnsignedByte();
+        }
+    }
+
+    private long readUnsignedInt() throws IOException {
+        return readUnsignedShort() | (long) readUnsignedShort() << 16;
+    }
+
+    private int readUnsignedShort() throws IOException { return readUnsignedByte() | readUnsignedByte() << 8; }
+
+    /** Reads a byte of a header or trailer, consuming the buffered input first, and updates the CRC-32 with it. */
+    private int readUnsignedByte() throws IOException {
+        final int b;
+        if (position < limit) {
+            b = buf[position++] & 0xff;
+        } else {
+            b = in.read();
+            if (0 > b) {
+                throw new EOFException();
+            }
+        }
+        crc.update(b);
+        return b;
+    }
+
+    @Override
+    public int available() throws IOException {
+        if (lease.closed()) {
+            throw new IOException("Stream closed.");
+        }
+        return eos ? 0 : super.available();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (lease.beginClose()) {
+            SideEffect.runAll(in::close, lease::endClose);
+        }
+    }
+
+    private void release() {
+        ZlibPool.shared().release(inf);
+        BufferArena.heap().release(pooled);
+    }
+}
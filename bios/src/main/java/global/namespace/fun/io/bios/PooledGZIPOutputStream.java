@@ -0,0 +1,100 @@
+/*
+ * Copyright © 2017 Schlichtherle IT Services
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package global.namespace.fun.io.bios;
+
+import global.namespace.fun.io.api.Store;
+import global.namespace.fun.io.spi.BufferArena;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes the same GZIP format as {@link java.util.zip.GZIPOutputStream}, but obtains its deflater from the shared
+ * {@link ZlibPool} and releases it when closed.
+ *
+ * @author Christian Schlichtherle
+ */
+final class PooledGZIPOutputStream extends DeflaterOutputStream {
+
+    /** The same header as written by {@link java.util.zip.GZIPOutputStream}. */
+    private static final byte[] HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0};
+
+    private final CRC32 crc = new CRC32();
+
+    private final ByteBuffer pooled = BufferArena.heap().acquire(Store.BUFSIZE);
+
+    private final Lease lease = new Lease(this::release);
+
+    PooledGZIPOutputStream(final OutputStream out) throws IOException {
+        super(out, ZlibPool.shared().deflater(Deflater.DEFAULT_COMPRESSION, true), 1);
+        buf = pooled.array();
+        try {
+            out.write(HEADER);
+        } catch (Throwable e) {
+            lease.beginClose();
+            lease.endClose();
+            throw e;
+        }
+    }
+
+    @Override
+    public void write(final byte[] b, final int off, final int len) throws IOException {
+        lease.enter();
+        try {
+            super.write(b, off, len);
+            crc.update(b, off, len);
+        } finally {
+            lease.exit();
+        }
+    }
+
+    @Override
+    public void finish() throws IOException {
+        lease.enter();
+        try {
+            if (!def.finished()) {
+                super.finish();
+                writeInt((int) crc.getValue());
+                writeInt((int) def.getBytesRead());
+            }
+        } finally {
+            lease.exit();
+        }
+    }
+
+    private void writeInt(final int i) throws IOException {
+        out.write(i);
+        out.write(i >>> 8);
+        out.write(i >>> 16);
+        out.write(i >>> 24);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (lease.beginClose()) {
+            SideEffect.runAll(this::finish, out::close, lease::endClose);
+        }
+    }
+
+    private void release() {
+        ZlibPool.shared().release(def);
+        BufferArena.heap().release(pooled);
+    }
+}
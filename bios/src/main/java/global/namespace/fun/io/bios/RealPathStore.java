@@ -15,51 +15,153 @@
  */
 package global.namespace.fun.io.bios;
 
+import global.namespace.fun.io.api.ContentTooLargeException;
+import global.namespace.fun.io.api.NoContentException;
 import global.namespace.fun.io.api.Socket;
+import global.namespace.fun.io.spi.ChannelInputStream;
+import global.namespace.fun.io.spi.ChannelOutputStream;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.OpenOption;
 import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Optional;
 import java.util.OptionalLong;
-
-import static java.nio.file.Files.newInputStream;
-import static java.nio.file.Files.newOutputStream;
-
+import java.util.Set;
+
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import static java.nio.file.Files.newByteChannel;
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * Other than the streams returned by {@link Files#newInputStream} and {@link Files#newOutputStream}, the streams
+ * loaned by this store provide access to their underlying channel, so that {@code Copy} can transfer data between files
+ * without copying it to user space.
+ * <p>
+ * If a window size is given, then the input streams read the file via memory mapped windows of this size instead.
+ * This trades the system calls and the copying from the kernel's page cache for page faults, which is faster for large
+ * files which are read often, especially when reading them completely, e.g. with {@link #content()}.
+ *
+ * @author Christian Schlichtherle
+ */
 final class RealPathStore implements BIOS.FileStore, BIOS.PathStore {
 
     private static final OpenOption[] EMPTY = new OpenOption[0];
 
+    /** The size of the memory mapped windows for reading a file if mapping is enabled. */
+    static final int WINDOW_SIZE = 256 * 1024 * 1024;
+
     private final Path path;
     private final OpenOption[] inputOptions;
     private final OpenOption[] outputOptions;
 
-    RealPathStore(Path p) { this(p, EMPTY, EMPTY); }
+    /** The size of the memory mapped windows for reading the file or zero if mapping is disabled. */
+    private final int windowSize;
+
+    RealPathStore(Path p) { this(p, 0); }
 
-    private RealPathStore(final Path p, final OpenOption[] inputOptions, final OpenOption[] outputOptions) {
+    RealPathStore(Path p, int windowSize) { this(p, EMPTY, EMPTY, windowSize); }
+
+    private RealPathStore(final Path p,
+                          final OpenOption[] inputOptions,
+                          final OpenOption[] outputOptions,
+                          final int windowSize) {
+        if (0 > windowSize) {
+            throw new IllegalArgumentException(windowSize + " is a negative window size.");
+        }
         this.path = p;
         this.inputOptions = inputOptions;
         this.outputOptions = outputOptions;
+        this.windowSize = windowSize;
     }
 
     @Override
     public RealPathStore onInput(OpenOption... inputOptions) {
-        return new RealPathStore(path, inputOptions, outputOptions);
+        return new RealPathStore(path, inputOptions, outputOptions, windowSize);
     }
 
     @Override
     public RealPathStore onOutput(OpenOption... outputOptions) {
-        return new RealPathStore(path, inputOptions, outputOptions);
+        return new RealPathStore(path, inputOptions, outputOptions, windowSize);
     }
 
     @Override
-    public Socket<InputStream> input() { return () -> newInputStream(path, inputOptions); }
+    public Socket<InputStream> input() {
+        return 0 < windowSize
+                ? () -> new MappedInputStream(FileChannel.open(path, inputOptions(inputOptions)), windowSize)
+                : inputChannel().map(ChannelInputStream::new);
+    }
+
+    Socket<ReadableByteChannel> inputChannel() {
+        return () -> newByteChannel(path, inputOptions(inputOptions));
+    }
 
     @Override
-    public Socket<OutputStream> output() { return () -> newOutputStream(path, outputOptions); }
+    public Socket<OutputStream> output() { return outputChannel().map(ChannelOutputStream::new); }
+
+    Socket<WritableByteChannel> outputChannel() {
+        return () -> newByteChannel(path, outputOptions(outputOptions));
+    }
+
+    /**
+     * Returns a read-only view of the content of the file.
+     * If mapping is enabled, then the file gets mapped into memory instead of being read.
+     */
+    @Override
+    public ByteBuffer contentBuffer(final int max) throws IOException {
+        if (0 == windowSize) {
+            return BIOS.FileStore.super.contentBuffer(max);
+        }
+        if (max < 0) {
+            throw new IllegalArgumentException(max + " < 0");
+        }
+        try (FileChannel channel = FileChannel.open(path, inputOptions(inputOptions))) {
+            final long size = channel.size();
+            if (size <= max) {
+                return channel.map(READ_ONLY, 0, size);
+            } else {
+                throw new ContentTooLargeException(size, max);
+            }
+        } catch (NoSuchFileException e) {
+            throw new NoContentException(e);
+        }
+    }
+
+    /** Mimics {@link Files#newInputStream}. */
+    private static Set<OpenOption> inputOptions(final OpenOption[] options) {
+        final Set<OpenOption> set = new HashSet<>();
+        Collections.addAll(set, options);
+        if (set.contains(APPEND) || set.contains(WRITE)) {
+            throw new UnsupportedOperationException("Option APPEND or WRITE not allowed for input.");
+        }
+        return set;
+    }
+
+    /** Mimics {@link Files#newOutputStream}. */
+    private static Set<OpenOption> outputOptions(final OpenOption[] options) {
+        final Set<OpenOption> set = new HashSet<>();
+        if (0 == options.length) {
+            Collections.addAll(set, CREATE, TRUNCATE_EXISTING);
+        } else {
+            Collections.addAll(set, options);
+            if (set.contains(READ)) {
+                throw new IllegalArgumentException("Option READ not allowed for output.");
+            }
+        }
+        set.add(WRITE);
+        return set;
+    }
 
     @Override
     public void deleteIfExists() throws IOException { Files.deleteIfExists(path); }
@@ -78,4 +180,19 @@ final class RealPathStore implements BIOS.FileStore, BIOS.PathStore {
             return OptionalLong.empty();
         }
     }
+
+    /**
+     * Returns the file key, the last modified time and the size of the file.
+     * Note that the resolution of the last modified time depends on the file system, so changes which are made in
+     * quick succession and keep the size of the file may go unnoticed.
+     */
+    @Override
+    public Optional<?> changeToken() throws IOException {
+        try {
+            final BasicFileAttributes a = Files.readAttributes(path, BasicFileAttributes.class);
+            return Optional.of(Arrays.asList(a.fileKey(), a.lastModifiedTime(), a.size()));
+        } catch (NoSuchFileException ignored) {
+            return Optional.empty();
+        }
+    }
 }
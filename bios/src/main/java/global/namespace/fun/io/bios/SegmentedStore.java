@@ -0,0 +1,387 @@
+/*
+ * Copyright © 2017 Schlichtherle IT Services
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package global.namespace.fun.io.bios;
+
+import global.namespace.fun.io.api.ContentTooLargeException;
+import global.namespace.fun.io.api.NoContentException;
+import global.namespace.fun.io.api.Socket;
+import global.namespace.fun.io.api.Store;
+import global.namespace.fun.io.spi.BufferArena;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A memory store which keeps its content in a list of fixed size segments which are acquired from a
+ * {@link BufferArena}, so that writing the content never needs to copy the data written so far to a larger buffer,
+ * the content is not limited to 2 GiB and, if the arena provides direct buffers, the content is kept off the heap.
+ * The content may be limited to a maximum size.
+ * <p>
+ * Each version of the content is reference counted: The store holds one reference and each open input stream holds
+ * another.
+ * When the content gets replaced or deleted and all input streams for it are closed, then its segments get released
+ * to the arena immediately.
+ * However, the arena retains only a bounded number of segments, that is 4 MiB in its global pool plus one segment
+ * per thread, and discards the rest:
+ * If the segments are direct buffers, then this store frees the native memory of the discarded segments immediately
+ * because it's their only owner, otherwise they are left to the garbage collector.
+ * This store is thread-safe.
+ *
+ * @author Christian Schlichtherle
+ */
+final class SegmentedStore implements Store {
+
+    /** The size of each segment. */
+    static final int SEGMENT_SIZE = 64 * 1024;
+
+    /**
+     * A method handle which frees the native memory of a direct buffer or {@code null} if the JVM does not support
+     * this.
+     */
+    private static final MethodHandle free = free();
+
+    /**
+     * Returns a method handle for {@code sun.misc.Unsafe.invokeCleaner(ByteBuffer)} on Java 9 or later or for
+     * {@code ((sun.nio.ch.DirectBuffer) buffer).cleaner().clean()} on Java 8 or {@code null} if neither is available.
+     */
+    private static MethodHandle free() {
+        final MethodHandles.Lookup lookup = MethodHandles.lookup();
+        try {
+            final Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            final Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            return lookup
+                    .findVirtual(unsafeClass, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class))
+                    .bindTo(theUnsafe.get(null));
+        } catch (ReflectiveOperationException | RuntimeException notJava9) {
+            try {
+                final Class<?> directBufferClass = Class.forName("sun.nio.ch.DirectBuffer");
+                final Class<?> cleanerClass = Class.forName("sun.misc.Cleaner");
+                final MethodHandle cleaner = lookup
+                        .findVirtual(directBufferClass, "cleaner", MethodType.methodType(cleanerClass));
+                final MethodHandle clean = lookup
+                        .findVirtual(cleanerClass, "clean", MethodType.methodType(void.class));
+                return MethodHandles
+                        .filterReturnValue(cleaner, clean)
+                        .asType(MethodType.methodType(void.class, ByteBuffer.class));
+            } catch (ReflectiveOperationException | RuntimeException unsupported) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Frees the native memory of the given direct buffer, if supported.
+     * The given buffer must not be used anymore, not even by any view of it.
+     */
+    private static void free(final ByteBuffer buffer) {
+        if (null != free) {
+            try {
+                free.invokeExact(buffer);
+            } catch (RuntimeException unsupported) {
+                // Leave it to the garbage collector.
+            } catch (Throwable cannotHappen) {
+                throw new AssertionError(cannotHappen);
+            }
+        }
+    }
+
+    private final BufferArena arena;
+    private final long maxSize;
+
+    /** The current content or {@code null} if there is no content. */
+    private volatile Content content;
+
+    SegmentedStore(final BufferArena arena, final long maxSize) {
+        if (0 > maxSize) {
+            throw new IllegalArgumentException(maxSize + " is a negative maximum size.");
+        }
+        this.arena = arena;
+        this.maxSize = maxSize;
+    }
+
+    @Override
+    public Socket<InputStream> input() {
+        return () -> new SegmentedInputStream(retainedContent());
+    }
+
+    @Override
+    public Socket<OutputStream> output() {
+        return SegmentedOutputStream::new;
+    }
+
+    @Override
+    public void delete() throws IOException {
+        final Content content;
+        synchronized (this) {
+            content = checkedContent();
+            this.content = null;
+        }
+        content.release();
+    }
+
+    @Override
+    public OptionalLong size() {
+        final Content content = this.content;
+        return null != content ? OptionalLong.of(content.size) : OptionalLong.empty();
+    }
+
+    @Override
+    public boolean exists() { return null != content; }
+
+    /** Returns the current content, which is replaced whenever it changes. */
+    @Override
+    public Optional<?> changeToken() { return Optional.ofNullable(content); }
+
+    private Content checkedContent() throws NoContentException {
+        final Content content = this.content;
+        if (null == content) {
+            throw new NoContentException();
+        }
+        return content;
+    }
+
+    /** Returns the current content after retaining it. */
+    private Content retainedContent() throws NoContentException {
+        while (true) {
+            final Content content = checkedContent();
+            if (content.retain()) {
+                return content;
+            }
+            // The content has just been replaced or deleted, so try again.
+        }
+    }
+
+    private void replace(final Content content) {
+        final Content old;
+        synchronized (this) {
+            old = this.content;
+            this.content = content;
+        }
+        if (null != old) {
+            old.release();
+        }
+    }
+
+    /** An immutable version of the content with a reference count. */
+    private final class Content {
+
+        final ByteBuffer[] segments;
+        final long size;
+        final AtomicInteger references = new AtomicInteger(1);
+
+        Content(final ByteBuffer[] segments, final long size) {
+            this.segments = segments;
+            this.size = size;
+        }
+
+        /** Returns {@code true} if and only if this content has not been released yet and has been retained. */
+        boolean retain() {
+            for (int count; 0 < (count = references.get()); ) {
+                if (references.compareAndSet(count, count + 1)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        void release() {
+            if (0 == references.decrementAndGet()) {
+                for (final ByteBuffer segment : segments) {
+                    if (!arena.release(segment) && segment.isDirect()) {
+                        free(segment); // the arena has discarded it, so this content is its last owner
+                    }
+                }
+            }
+        }
+    }
+
+    private final class SegmentedInputStream extends InputStream {
+
+        final Content content;
+        long position, mark;
+        boolean closed;
+
+        SegmentedInputStream(final Content content) { this.content = content; }
+
+        @Override
+        public int read() throws IOException {
+            checkOpen();
+            if (position >= content.size) {
+                return -1;
+            }
+            final int b = segment().get(offset()) & 0xff;
+            position++;
+            return b;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            checkOpen();
+            if (0 > off || 0 > len || len > b.length - off) {
+                throw new IndexOutOfBoundsException();
+            }
+            if (0 == len) {
+                return 0;
+            }
+            if (position >= content.size) {
+                return -1;
+            }
+            int total = 0;
+            while (total < len && position < content.size) {
+                final ByteBuffer segment = segment().duplicate();
+                final int offset = offset();
+                final int n = (int) Math.min(Math.min(len - total, SEGMENT_SIZE - offset), content.size - position);
+                segment.position(offset);
+                segment.get(b, off + total, n);
+                position += n;
+                total += n;
+            }
+            return total;
+        }
+
+        private ByteBuffer segment() { return content.segments[(int) (position / SEGMENT_SIZE)]; }
+
+        private int offset() { return (int) (position % SEGMENT_SIZE); }
+
+        @Override
+        public long skip(final long n) throws IOException {
+            checkOpen();
+            if (0 >= n) {
+                return 0;
+            }
+            final long skipped = Math.min(n, Math.max(0, content.size - position));
+            position += skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            checkOpen();
+            return (int) Math.min(Integer.MAX_VALUE, Math.max(0, content.size - position));
+        }
+
+        @Override
+        public boolean markSupported() { return true; }
+
+        @Override
+        public void mark(int readlimit) { mark = position; }
+
+        @Override
+        public void reset() throws IOException {
+            checkOpen();
+            position = mark;
+        }
+
+        private void checkOpen() throws IOException {
+            if (closed) {
+                throw new IOException("Stream closed.");
+            }
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                content.release();
+            }
+        }
+    }
+
+    private final class SegmentedOutputStream extends OutputStream {
+
+        final List<ByteBuffer> segments = new ArrayList<>();
+        long size;
+        boolean closed, failed;
+
+        @Override
+        public void write(final int b) throws IOException {
+            checkSize(1);
+            segment().put((byte) b);
+            size++;
+        }
+
+        @Override
+        public void write(final byte[] b, int off, int len) throws IOException {
+            if (0 > off || 0 > len || len > b.length - off) {
+                throw new IndexOutOfBoundsException();
+            }
+            checkSize(len);
+            while (0 < len) {
+                final ByteBuffer segment = segment();
+                final int n = Math.min(len, segment.remaining());
+                segment.put(b, off, n);
+                size += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        /**
+         * Checks if the given number of bytes can be written.
+         * If the maximum size would get exceeded, then this stream fails, so that closing it discards the data
+         * instead of replacing the content of the store.
+         */
+        private void checkSize(final int len) throws IOException {
+            if (closed) {
+                throw new IOException("Stream closed.");
+            }
+            if (size + len > maxSize) {
+                failed = true;
+                throw new ContentTooLargeException(size + len, maxSize);
+            }
+        }
+
+        /** Returns a segment with some space remaining, acquiring a new one if required. */
+        private ByteBuffer segment() {
+            final int count = segments.size();
+            if (0 < count) {
+                final ByteBuffer segment = segments.get(count - 1);
+                if (segment.hasRemaining()) {
+                    return segment;
+                }
+            }
+            final ByteBuffer segment = arena.acquire(SEGMENT_SIZE);
+            segment.limit(SEGMENT_SIZE);
+            segments.add(segment);
+            return segment;
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                final Content content = new Content(segments.toArray(new ByteBuffer[0]), size);
+                if (failed) {
+                    content.release();
+                } else {
+                    replace(content);
+                }
+            }
+        }
+    }
+}
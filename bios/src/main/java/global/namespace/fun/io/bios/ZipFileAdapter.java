@@ -32,6 +32,10 @@ final class ZipFileAdapter implements ArchiveInputStream {
 
     ZipFileAdapter(final ZipFile input) { this.zip = requireNonNull(input); }
 
+    /** Returns {@code true} because {@link ZipFile} supports reading its entries concurrently. */
+    @Override
+    public boolean isConcurrent() { return true; }
+
     @Override
     public Iterator<ArchiveEntrySource> iterator() {
         return new Iterator<ArchiveEntrySource>() {
@@ -0,0 +1,216 @@
+/*
+ * Copyright © 2017 Schlichtherle IT Services
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package global.namespace.fun.io.bios;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A bounded pool of ZLIB deflaters and inflaters.
+ * Constructing a deflater or inflater allocates some native memory for its state, e.g. about 256 KiB for a deflater,
+ * which gets freed when it's {@linkplain Deflater#end() ended} or finalized.
+ * When compressing many small payloads, this allocation and finalization may dominate the cost of compressing them,
+ * so this pool resets released deflaters and inflaters and hands them out again instead.
+ * <p>
+ * Deflaters are pooled per compression level and format, inflaters are pooled per format.
+ * Each pool retains up to as many deflaters or inflaters as there are available processors.
+ * <p>
+ * Every deflater or inflater obtained from this pool should be passed to {@link #release(Deflater)} or
+ * {@link #release(Inflater)} exactly once instead of ending it when it's not used anymore.
+ * Releasing a deflater or inflater more than once or using it after releasing it results in undefined behavior.
+ * Releasing a deflater or inflater which has not been obtained from this pool simply ends it.
+ * <p>
+ * The filters returned by {@link BIOS#deflate(int)}, {@link BIOS#inflate(int)}, {@link BIOS#gzip()} and
+ * {@link BIOS#parallelGzip(int, int, int)} use the {@linkplain #shared() shared pool}.
+ *
+ * @author Christian Schlichtherle
+ */
+public final class ZlibPool {
+
+    private static final int LEVELS = Deflater.BEST_COMPRESSION - Deflater.DEFAULT_COMPRESSION + 1;
+
+    private static final ZlibPool shared = new ZlibPool(Math.max(1, Runtime.getRuntime().availableProcessors()));
+
+    private final Pool<PooledDeflater>[] deflaters;
+
+    private final Pool<PooledInflater>[] inflaters;
+
+    private final LongAdder hits = new LongAdder(), misses = new LongAdder(), discards = new LongAdder();
+
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private ZlibPool(final int capacity) {
+        deflaters = new Pool[2 * LEVELS];
+        for (int i = 0; i < deflaters.length; i++) {
+            deflaters[i] = new Pool<>(capacity);
+        }
+        inflaters = new Pool[2];
+        for (int i = 0; i < inflaters.length; i++) {
+            inflaters[i] = new Pool<>(capacity);
+        }
+    }
+
+    /** Returns the shared pool. */
+    public static ZlibPool shared() { return shared; }
+
+    /**
+     * Returns a deflater with the given compression level for the ZLIB format.
+     *
+     * @throws IllegalArgumentException if the given compression level is not in the range from
+     *                                  {@value Deflater#DEFAULT_COMPRESSION} to {@value Deflater#BEST_COMPRESSION}.
+     */
+    public Deflater deflater(int level) { return deflater(level, false); }
+
+    /**
+     * Returns a deflater with the given compression level.
+     *
+     * @param nowrap if {@code true}, then the deflater produces raw deflate data, e.g. for the GZIP or ZIP format.
+     * @throws IllegalArgumentException if the given compression level is not in the range from
+     *                                  {@value Deflater#DEFAULT_COMPRESSION} to {@value Deflater#BEST_COMPRESSION}.
+     */
+    public Deflater deflater(final int level, final boolean nowrap) {
+        if (level < Deflater.DEFAULT_COMPRESSION || Deflater.BEST_COMPRESSION < level) {
+            throw new IllegalArgumentException(level + " is not in the range from " + Deflater.DEFAULT_COMPRESSION + " to " + Deflater.BEST_COMPRESSION + ".");
+        }
+        final int index = (level - Deflater.DEFAULT_COMPRESSION) + (nowrap ? LEVELS : 0);
+        final PooledDeflater deflater = deflaters[index].poll();
+        if (null != deflater) {
+            hits.increment();
+            return deflater;
+        }
+        misses.increment();
+        return new PooledDeflater(level, nowrap, index);
+    }
+
+    /** Returns an inflater for the ZLIB format. */
+    public Inflater inflater() { return inflater(false); }
+
+    /**
+     * Returns an inflater.
+     *
+     * @param nowrap if {@code true}, then the inflater consumes raw deflate data, e.g. for the GZIP or ZIP format.
+     */
+    public Inflater inflater(final boolean nowrap) {
+        final int index = nowrap ? 1 : 0;
+        final PooledInflater inflater = inflaters[index].poll();
+        if (null != inflater) {
+            hits.increment();
+            return inflater;
+        }
+        misses.increment();
+        return new PooledInflater(nowrap, index);
+    }
+
+    /**
+     * Resets the given deflater, which should have been obtained from this pool, for reuse.
+     * Deflaters which have not been obtained from this pool or which are not required anymore get ended.
+     */
+    public void release(final Deflater deflater) {
+        if (deflater instanceof PooledDeflater) {
+            final PooledDeflater pooled = (PooledDeflater) deflater;
+            pooled.reset();
+            if (deflaters[pooled.index].offer(pooled)) {
+                return;
+            }
+        }
+        discards.increment();
+        deflater.end();
+    }
+
+    /**
+     * Resets the given inflater, which should have been obtained from this pool, for reuse.
+     * Inflaters which have not been obtained from this pool or which are not required anymore get ended.
+     */
+    public void release(final Inflater inflater) {
+        if (inflater instanceof PooledInflater) {
+            final PooledInflater pooled = (PooledInflater) inflater;
+            pooled.reset();
+            if (inflaters[pooled.index].offer(pooled)) {
+                return;
+            }
+        }
+        discards.increment();
+        inflater.end();
+    }
+
+    /** Returns the number of requests which have been served with a pooled deflater or inflater. */
+    public long hits() { return hits.sum(); }
+
+    /** Returns the number of requests which have been served by constructing a new deflater or inflater. */
+    public long misses() { return misses.sum(); }
+
+    /**
+     * Returns the number of released deflaters and inflaters which have been ended because the pool was full or
+     * because they have not been obtained from this pool.
+     */
+    public long discards() { return discards.sum(); }
+
+    @Override
+    public String toString() {
+        return String.format("%s(hits=%d, misses=%d, discards=%d)", getClass().getName(), hits(), misses(), discards());
+    }
+
+    private static final class PooledDeflater extends Deflater {
+
+        final int index;
+
+        PooledDeflater(final int level, final boolean nowrap, final int index) {
+            super(level, nowrap);
+            this.index = index;
+        }
+    }
+
+    private static final class PooledInflater extends Inflater {
+
+        final int index;
+
+        PooledInflater(final boolean nowrap, final int index) {
+            super(nowrap);
+            this.index = index;
+        }
+    }
+
+    /** A bounded, lock-free pool of deflaters or inflaters of the same kind. */
+    private static final class Pool<T> {
+
+        final Queue<T> queue = new ConcurrentLinkedQueue<>();
+        final AtomicInteger size = new AtomicInteger();
+        final int capacity;
+
+        Pool(final int capacity) { this.capacity = capacity; }
+
+        T poll() {
+            final T element = queue.poll();
+            if (null != element) {
+                size.decrementAndGet();
+            }
+            return element;
+        }
+
+        boolean offer(final T element) {
+            if (size.incrementAndGet() > capacity) {
+                size.decrementAndGet();
+                return false;
+            }
+            return queue.offer(requireNonNull(element));
+        }
+    }
+}
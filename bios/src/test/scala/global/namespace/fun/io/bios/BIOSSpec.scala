@@ -15,9 +15,14 @@
  */
 package global.namespace.fun.io.bios
 
-import java.io.{ByteArrayInputStream, InputStream, OutputStream}
+import java.io.{ByteArrayInputStream, IOException, InputStream, OutputStream}
+import java.nio.{ByteBuffer, MappedByteBuffer}
+import java.nio.channels.{FileChannel, ReadableByteChannel, WritableByteChannel}
+import java.nio.file.Files.{createTempFile, deleteIfExists}
+import java.util.Random
+import java.util.concurrent.{Callable, Executors}
 
-import global.namespace.fun.io.api.{Socket, Source, Store}
+import global.namespace.fun.io.api.{ContentTooLargeException, NoContentException, Socket, Source, Store}
 import global.namespace.fun.io.bios.BIOS._
 import org.mockito.Mockito._
 import org.scalatest.matchers.should.Matchers._
@@ -64,5 +69,252 @@ class BIOSSpec extends AnyWordSpec {
     }
   }
 
+  "A store returned from BIOS.path" should {
+    "provide direct access to its file channels" in {
+      val file = createTempFile("test", null)
+      try {
+        val store = path(file).asInstanceOf[RealPathStore]
+        store.outputChannel accept { channel: WritableByteChannel =>
+          channel shouldBe a[FileChannel]
+          channel write ByteBuffer.wrap("Hello world!".getBytes)
+        }
+        store.inputChannel accept { channel: ReadableByteChannel =>
+          channel shouldBe a[FileChannel]
+          val buffer = ByteBuffer.allocate(100)
+          channel read buffer
+          new String(buffer.array, 0, buffer.position()) shouldBe "Hello world!"
+        }
+        new String(content(store)) shouldBe "Hello world!"
+      } finally {
+        deleteIfExists(file)
+      }
+    }
+  }
+
+  "A store returned from BIOS.mapped" should {
+    "read the content of the file via memory mapped windows" in {
+      val file = createTempFile("test", null)
+      try {
+        val data = new Array[Byte](10000)
+        new Random(0) nextBytes data
+        mapped(file) content data
+        mapped(file).content shouldBe data
+        val store = new RealPathStore(file, 4096)
+        store.content shouldBe data
+        store.input accept { in: InputStream =>
+          in.read shouldBe (data(0) & 0xff)
+          val b = new Array[Byte](5000)
+          in.read(b) shouldBe 5000
+          b shouldBe data.slice(1, 5001)
+          in.mark(0)
+          in.skip(3000) shouldBe 3000
+          in.available shouldBe 1999
+          in.reset()
+          in.read(b) shouldBe 4999
+          b.take(4999) shouldBe data.drop(5001)
+          in.read(b) shouldBe -1
+        }
+      } finally {
+        deleteIfExists(file)
+      }
+    }
+
+    "read an empty file" in {
+      val file = createTempFile("test", null)
+      try {
+        mapped(file).content shouldBe empty
+      } finally {
+        deleteIfExists(file)
+      }
+    }
+  }
+
+  "A store returned from BIOS.memory" should {
+    "publish its content atomically when closing an output stream" in {
+      val store = memory
+      store content "old".getBytes
+      store.input accept { in: InputStream =>
+        store.output accept { out: OutputStream =>
+          out write "new".getBytes
+          store.content shouldBe "old".getBytes
+        }
+        store.content shouldBe "new".getBytes
+        val buf = new Array[Byte](4)
+        in read buf shouldBe 3
+        new String(buf, 0, 3) shouldBe "old"
+      }
+    }
+
+    "reject writing to a closed output stream" in {
+      val store = memory
+      store.output accept { out: OutputStream =>
+        out write "Hello world!".getBytes
+        out.close()
+        intercept[IOException](out write '!').getMessage shouldBe "Stream closed."
+      }
+      store.content shouldBe "Hello world!".getBytes
+    }
+
+    "allow concurrent readers while writing" in {
+      val store = memory
+      val a = Array.fill[Byte](100000)('a')
+      val b = Array.fill[Byte](200000)('b')
+      store content a
+      val readers = Executors.newFixedThreadPool(4)
+      try {
+        val results = (1 to 4) map { _ =>
+          readers submit new Callable[Boolean] {
+            def call(): Boolean = (1 to 100) forall { _ =>
+              val content = store.content
+              (content sameElements a) || (content sameElements b)
+            }
+          }
+        }
+        (1 to 100) foreach { i => store content (if (0 == i % 2) a else b) }
+        results foreach { _.get shouldBe true }
+      } finally {
+        readers.shutdown()
+      }
+    }
+  }
+
+  "A filter returned from BIOS.buffer" should {
+    "buffer at most the given number of bytes" when {
+      "writing" in {
+        var max = 0
+        val out = new OutputStream {
+
+          def write(b: Int): Unit = max = max max 1
+
+          override def write(b: Array[Byte], off: Int, len: Int): Unit = max = max max len
+        }
+        buffer(10000).output((() => out): Socket[OutputStream]).accept { buffered =>
+          for (_ <- 1 to 30000) {
+            buffered write 0
+          }
+        }
+        max shouldBe 10000
+      }
+
+      "reading" in {
+        var max = 0
+        val in = new ByteArrayInputStream(new Array[Byte](30000)) {
+
+          override def read(b: Array[Byte], off: Int, len: Int): Int = {
+            max = max max len
+            super.read(b, off, len)
+          }
+        }
+        buffer(10000).input((() => in): Socket[InputStream]).accept { buffered =>
+          while (0 <= buffered.read()) {
+          }
+        }
+        max shouldBe 10000
+      }
+    }
+  }
+
+  "ConnectedCodec.cached" should {
+    "return the last decoded object until the content changes" when given {
+      "a memory store" in {
+        check(memory)
+      }
+
+      "a filtered store" in {
+        check(memory map gzip)
+      }
+
+      "a path store" in {
+        val file = createTempFile("test", null)
+        try {
+          check(path(file))
+        } finally {
+          deleteIfExists(file)
+        }
+      }
+    }
+
+    "decode the content each time" when given {
+      "a store without a change token" in {
+        val store = userPreferences(classOf[BIOSSpec], "test")
+        try {
+          val codec = store.connect(serialization).cached
+          codec encode "Hello world!"
+          val a: String = codec decode classOf[String]
+          val b: String = codec decode classOf[String]
+          a shouldBe b
+          a should not be theSameInstanceAs(b)
+        } finally {
+          store.deleteIfExists()
+        }
+      }
+    }
+
+    def check(store: Store): Unit = {
+      val codec = store.connect(serialization).cached
+      codec encode "Hello world!"
+      val a: String = codec decode classOf[String]
+      a shouldBe "Hello world!"
+      (codec decode classOf[String]: String) should be theSameInstanceAs a
+      store.connect(serialization) encode "Hello Christian!"
+      val b: String = codec decode classOf[String]
+      b shouldBe "Hello Christian!"
+      (codec decode classOf[String]: String) should be theSameInstanceAs b
+    }
+  }
+
+  "Store.contentBuffer" should {
+    "return a read-only view of the content" when given {
+      "a memory store" in {
+        val store = memory
+        store content "Hello world!".getBytes
+        check(store.contentBuffer)
+        intercept[ContentTooLargeException](store contentBuffer 11)
+      }
+
+      "a mapped store" in {
+        val file = createTempFile("test", null)
+        try {
+          val store = mapped(file)
+          store content "Hello world!".getBytes
+          val buffer = store.contentBuffer
+          buffer shouldBe a[MappedByteBuffer]
+          check(buffer)
+          intercept[ContentTooLargeException](store contentBuffer 11)
+          store.delete()
+          intercept[NoContentException](store.contentBuffer)
+        } finally {
+          deleteIfExists(file)
+        }
+      }
+
+      "a filtered store" in {
+        val store = memory map buffer
+        store content "Hello world!".getBytes
+        check(store.contentBuffer)
+        intercept[ContentTooLargeException](store contentBuffer 11)
+      }
+
+      "a preferences store" in {
+        val store = userPreferences(classOf[BIOSSpec], "test")
+        try {
+          store content "Hello world!".getBytes
+          check(store.contentBuffer)
+        } finally {
+          store.deleteIfExists()
+        }
+      }
+    }
+  }
+
+  private def check(buffer: ByteBuffer): Unit = {
+    buffer.isReadOnly shouldBe true
+    buffer.position() shouldBe 0
+    buffer.remaining shouldBe 12
+    val b = new Array[Byte](buffer.remaining)
+    buffer get b
+    new String(b) shouldBe "Hello world!"
+  }
+
   private def given = afterWord("given")
 }
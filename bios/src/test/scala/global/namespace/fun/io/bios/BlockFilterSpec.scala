@@ -0,0 +1,85 @@
+/*
+ * Copyright © 2017 - 2019 Schlichtherle IT Services
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package global.namespace.fun.io.bios
+
+import java.io.IOException
+import java.lang.{Boolean => JBoolean}
+import java.security.spec.AlgorithmParameterSpec
+import java.util.Random
+
+import global.namespace.fun.io.api.{BlockFilter, Filter}
+import global.namespace.fun.io.bios.BIOS._
+import javax.crypto.Cipher
+import javax.crypto.Cipher.{DECRYPT_MODE, ENCRYPT_MODE}
+import javax.crypto.spec.{GCMParameterSpec, IvParameterSpec, SecretKeySpec}
+import org.scalatest.matchers.should.Matchers._
+import org.scalatest.prop.TableDrivenPropertyChecks._
+import org.scalatest.wordspec.AnyWordSpec
+
+/** @author Christian Schlichtherle */
+class BlockFilterSpec extends AnyWordSpec {
+
+  private val data = {
+    val random = new Random(0)
+    Array.fill[Byte](1024 * 1024 + 1)(random.nextInt(16).toByte)
+  }
+
+  private val key = new SecretKeySpec(new Array[Byte](16), "AES")
+
+  private def aes(transformation: String, params: AlgorithmParameterSpec): Filter = {
+    cipher { output: JBoolean =>
+      val c = Cipher getInstance transformation
+      c.init(if (output) ENCRYPT_MODE else DECRYPT_MODE, key, params)
+      c
+    }
+  }
+
+  private val cbc = aes("AES/CBC/PKCS5Padding", new IvParameterSpec(new Array[Byte](16)))
+
+  private val gcm = aes("AES/GCM/NoPadding", new GCMParameterSpec(128, new Array[Byte](12)))
+
+  private val compositions = Table[String, Filter, Filter](
+    ("composition", "first", "second"),
+    ("deflate and CBC", deflate, cbc),
+    ("deflate and GCM", deflate, gcm),
+    ("CBC and deflate", cbc, deflate),
+    ("deflate and inflate", deflate, inflate),
+  )
+
+  "A composition of block filters" should {
+    forAll(compositions) { (composition, first, second) =>
+      s"fuse $composition and produce the same data as stacking their streams" in {
+        val fused = first compose second
+        fused shouldBe a[BlockFilter]
+        val fusedStore = memory
+        fusedStore map fused content data
+        val stackedStore = memory
+        stackedStore map second map first content data
+        fusedStore.content shouldBe stackedStore.content
+        (fusedStore map fused).content shouldBe data
+        (stackedStore map second map first).content shouldBe data
+      }
+    }
+
+    "fail to read truncated data" in {
+      val store = memory
+      store map (deflate compose gcm) content data
+      val content = store.content
+      store content content.take(content.length - 1)
+      intercept[IOException]((store map (deflate compose gcm)).content)
+    }
+  }
+}
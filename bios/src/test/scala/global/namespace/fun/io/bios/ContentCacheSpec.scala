@@ -0,0 +1,161 @@
+/*
+ * Copyright © 2017 - 2019 Schlichtherle IT Services
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package global.namespace.fun.io.bios
+
+import java.io.{InputStream, OutputStream}
+import java.time.Duration
+import java.util.OptionalLong
+
+import global.namespace.fun.io.api.{NoContentException, Socket, Store}
+import global.namespace.fun.io.bios.BIOS._
+import global.namespace.fun.io.bios.ContentCacheSpec._
+import org.scalatest.matchers.should.Matchers._
+import org.scalatest.wordspec.AnyWordSpec
+
+/** @author Christian Schlichtherle */
+class ContentCacheSpec extends AnyWordSpec {
+
+  "A content cache" should {
+    "serve repeated reads from memory" in {
+      val cache = ContentCache.builder.build
+      val underlying = new CountingStore
+      underlying content "Hello world!".getBytes
+      val store = cache store underlying
+      store.content shouldBe "Hello world!".getBytes
+      store.content shouldBe "Hello world!".getBytes
+      BIOS.content(store) shouldBe "Hello world!".getBytes
+      store.contentBuffer.remaining shouldBe 12
+      underlying.reads shouldBe 1
+      cache.hitCount shouldBe 3
+      cache.missCount shouldBe 1
+      cache.bytes shouldBe 12
+    }
+
+    "invalidate the cached content when writing or deleting" in {
+      val cache = ContentCache.builder.build
+      val underlying = new CountingStore
+      val store = cache store underlying
+      store content "Hello world!".getBytes
+      store.content shouldBe "Hello world!".getBytes
+      store.output accept { out: OutputStream => out write "Hello Christian!".getBytes }
+      store.content shouldBe "Hello Christian!".getBytes
+      underlying.reads shouldBe 2
+      store.delete()
+      store.exists shouldBe false
+      intercept[NoContentException](store.content)
+      cache.bytes shouldBe 0
+    }
+
+    "evict the least recently used content" in {
+      val cache = ContentCache.builder.maxBytes(20).build
+      val a = cache store memory
+      val b = cache store memory
+      a content new Array[Byte](10)
+      b content new Array[Byte](10)
+      a.content
+      b.content
+      cache.bytes shouldBe 20
+      a.content
+      val c = cache store memory
+      c content new Array[Byte](10)
+      c.content
+      cache.evictionCount shouldBe 1
+      cache.bytes shouldBe 20
+      val misses = cache.missCount
+      a.content
+      cache.missCount shouldBe misses
+      b.content
+      cache.missCount shouldBe misses + 1
+    }
+
+    "not cache content which exceeds the maximum number of bytes" in {
+      val cache = ContentCache.builder.maxBytes(10).build
+      val underlying = new CountingStore
+      underlying content new Array[Byte](11)
+      val store = cache store underlying
+      store.content.length shouldBe 11
+      BIOS.content(store).length shouldBe 11
+      cache.bytes shouldBe 0
+      cache.hitCount shouldBe 0
+    }
+
+    "read content which exceeds the maximum number of bytes only once per stream" in {
+      val cache = ContentCache.builder.maxBytes(10).build
+      val underlying = new CountingStore
+      underlying content new Array[Byte](11)
+      val source = cache source underlying
+      BIOS.content(source).length shouldBe 11
+      underlying.reads shouldBe 1
+      BIOS.content(source).length shouldBe 11
+      underlying.reads shouldBe 2
+      cache.bytes shouldBe 0
+    }
+
+    "not cache content which has been read only partially" in {
+      val cache = ContentCache.builder.build
+      val underlying = new CountingStore
+      underlying content "Hello world!".getBytes
+      val source = cache source underlying
+      source.input accept { in: InputStream => in.read() shouldBe 'H' }
+      cache.bytes shouldBe 0
+      BIOS.content(source) shouldBe "Hello world!".getBytes
+      cache.bytes shouldBe 12
+    }
+
+    "expire the cached content after the time to live" in {
+      val cache = ContentCache.builder.timeToLive(Duration ofMillis 1).build
+      val underlying = new CountingStore
+      underlying content "Hello world!".getBytes
+      val store = cache store underlying
+      store.content
+      Thread sleep 10
+      store.content
+      underlying.reads shouldBe 2
+      cache.evictionCount shouldBe 1
+    }
+
+    "cache the content of a source" in {
+      val cache = ContentCache.builder.build
+      val underlying = new CountingStore
+      underlying content "Hello world!".getBytes
+      val source = cache source underlying
+      BIOS.content(source) shouldBe "Hello world!".getBytes
+      BIOS.content(source) shouldBe "Hello world!".getBytes
+      underlying.reads shouldBe 1
+    }
+  }
+}
+
+private object ContentCacheSpec {
+
+  final class CountingStore extends Store {
+
+    private val store = memory
+
+    var reads = 0
+
+    override def input: Socket[InputStream] = store.input.map { in =>
+      reads += 1
+      in
+    }
+
+    override def output: Socket[OutputStream] = store.output
+
+    override def delete(): Unit = store.delete()
+
+    override def size: OptionalLong = store.size
+  }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright © 2017 - 2019 Schlichtherle IT Services
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package global.namespace.fun.io.bios
+
+import java.io.IOException
+import java.util.concurrent.atomic.AtomicInteger
+
+import org.scalatest.matchers.should.Matchers._
+import org.scalatest.wordspec.AnyWordSpec
+
+/** @author Christian Schlichtherle */
+class LeaseSpec extends AnyWordSpec {
+
+  "A lease" should {
+    "release the resources when closed and no operation is in progress" in {
+      val releases = new AtomicInteger
+      val lease = new Lease(() => releases.incrementAndGet())
+      lease.beginClose() shouldBe true
+      releases.get shouldBe 0
+      lease.endClose()
+      releases.get shouldBe 1
+      lease.beginClose() shouldBe false
+      releases.get shouldBe 1
+    }
+
+    "defer releasing the resources until the last operation ends" in {
+      val releases = new AtomicInteger
+      val lease = new Lease(() => releases.incrementAndGet())
+      lease.enter()
+      val closer = new Thread(() => {
+        if (lease.beginClose()) {
+          lease.endClose()
+        }
+      })
+      closer.start()
+      closer.join()
+      lease.closed shouldBe true
+      releases.get shouldBe 0
+      lease.exit()
+      releases.get shouldBe 1
+    }
+
+    "reject operations after closing, except by the closing thread" in {
+      val lease = new Lease(() => ())
+      lease.beginClose() shouldBe true
+      lease.enter()
+      lease.exit()
+      var rejected = false
+      val other = new Thread(() => rejected = try {
+        lease.enter()
+        false
+      } catch {
+        case _: IOException => true
+      })
+      other.start()
+      other.join()
+      rejected shouldBe true
+      lease.endClose()
+      intercept[IOException](lease.enter())
+    }
+  }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright © 2017 - 2019 Schlichtherle IT Services
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package global.namespace.fun.io.bios
+
+import java.io.{ByteArrayInputStream, ByteArrayOutputStream, OutputStream}
+import java.util.Random
+import java.util.zip.{CRC32, GZIPInputStream}
+
+import global.namespace.fun.io.api.Socket
+import global.namespace.fun.io.bios.BIOS._
+import org.scalatest.matchers.should.Matchers._
+import org.scalatest.prop.TableDrivenPropertyChecks._
+import org.scalatest.wordspec.AnyWordSpec
+
+/** @author Christian Schlichtherle */
+class ParallelGZIPSpec extends AnyWordSpec {
+
+  private val data = {
+    val b = new Array[Byte](1024 * 1024 + 123)
+    val r = new Random(0)
+    for (i <- b.indices) {
+      b(i) = (r.nextInt(16) + 'a').toByte
+    }
+    b
+  }
+
+  private def crc(b: Array[Byte], off: Int, len: Int) = {
+    val c = new CRC32
+    c.update(b, off, len)
+    c.getValue
+  }
+
+  private def gunzip(b: Array[Byte]) = {
+    val in = new GZIPInputStream(new ByteArrayInputStream(b))
+    val out = new ByteArrayOutputStream
+    val buf = new Array[Byte](8192)
+    var n = 0
+    while ( {
+      n = in.read(buf)
+      0 <= n
+    }) {
+      out.write(buf, 0, n)
+    }
+    out.toByteArray
+  }
+
+  "BIOS.parallelGzip" should {
+    "write a GZIP stream which can be read by BIOS.gzip and GZIPInputStream" in {
+      forAll(Table(
+        ("level", "blockSize", "threads", "length"),
+        (6, 64 * 1024, 4, data.length),
+        (1, 100 * 1000, 2, data.length),
+        (0, 16 * 1024, 3, data.length),
+        (9, 128 * 1024, 1, 256 * 1024),
+        (6, 64 * 1024, 4, 1),
+        (6, 64 * 1024, 4, 0),
+      )) { (level, blockSize, threads, length) =>
+        val expected = data take length
+        val store = memory
+        store map parallelGzip(level, blockSize, threads) content expected
+        (store map gzip).content shouldBe expected
+        gunzip(store.content) shouldBe expected
+      }
+    }
+
+    "compress about as well as BIOS.gzip" in {
+      val sequential, parallel = memory
+      sequential map gzip content data
+      parallel map parallelGzip(6, 128 * 1024, 4) content data
+      parallel.content.length.toDouble should be <= sequential.content.length * 1.01
+    }
+
+    "write all data written so far when flushed" in {
+      val out = new ByteArrayOutputStream
+      parallelGzip(6, 64 * 1024, 2).output((() => out): Socket[OutputStream]).accept { gz =>
+        gz.write(data, 0, 1000)
+        gz.flush()
+        val in = new GZIPInputStream(new ByteArrayInputStream(out.toByteArray))
+        val b = new Array[Byte](1000)
+        var n = 0
+        while (n < b.length) {
+          n += in.read(b, n, b.length - n)
+        }
+        b shouldBe (data take 1000)
+      }
+    }
+
+    "reject illegal parameters" in {
+      intercept[IllegalArgumentException](parallelGzip(10, 64 * 1024, 1))
+      intercept[IllegalArgumentException](parallelGzip(6, 0, 1))
+      intercept[IllegalArgumentException](parallelGzip(6, 64 * 1024, 0))
+    }
+  }
+
+  "ParallelGZIPOutputStream.combine" should {
+    "combine the CRC-32 checksums of two sequences" in {
+      forAll(Table("split", 0, 1, 1000, data.length - 1, data.length)) { split =>
+        val crc1 = crc(data, 0, split)
+        val crc2 = crc(data, split, data.length - split)
+        ParallelGZIPOutputStream.combine(crc1, crc2, data.length - split) shouldBe crc(data, 0, data.length)
+      }
+    }
+  }
+}
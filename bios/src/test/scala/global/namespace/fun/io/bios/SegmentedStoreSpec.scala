@@ -0,0 +1,98 @@
+/*
+ * Copyright © 2017 - 2019 Schlichtherle IT Services
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package global.namespace.fun.io.bios
+
+import java.io.{DataInputStream, InputStream}
+import java.lang.management.{BufferPoolMXBean, ManagementFactory}
+import java.util.Random
+
+import global.namespace.fun.io.api.{ContentTooLargeException, NoContentException, Store}
+import global.namespace.fun.io.bios.BIOS._
+import org.scalatest.matchers.should.Matchers._
+import org.scalatest.prop.TableDrivenPropertyChecks._
+import org.scalatest.wordspec.AnyWordSpec
+
+import scala.jdk.CollectionConverters._
+
+/** @author Christian Schlichtherle */
+class SegmentedStoreSpec extends AnyWordSpec {
+
+  private val data = {
+    val b = new Array[Byte](3 * SegmentedStore.SEGMENT_SIZE + 123)
+    new Random(0) nextBytes b
+    b
+  }
+
+  private val stores = Table[String, Long => Store](
+    ("kind", "factory"),
+    ("off-heap", offHeapMemory(_)),
+    ("segmented", segmentedMemory(_)),
+  )
+
+  "A segmented store" should {
+    forAll(stores) { (kind, factory) =>
+      s"store the content in multiple segments when it's $kind" in {
+        val store = factory(Long.MaxValue)
+        store.exists shouldBe false
+        intercept[NoContentException](store.content)
+        store content data
+        store.exists shouldBe true
+        store.size.getAsLong shouldBe data.length
+        store.content shouldBe data
+        store.input accept { in: InputStream =>
+          in.read shouldBe (data(0) & 0xff)
+          in.skip(SegmentedStore.SEGMENT_SIZE) shouldBe SegmentedStore.SEGMENT_SIZE
+          val b = new Array[Byte](data.length)
+          in.read(b) shouldBe data.length - SegmentedStore.SEGMENT_SIZE - 1
+          b.take(data.length - SegmentedStore.SEGMENT_SIZE - 1) shouldBe data.drop(SegmentedStore.SEGMENT_SIZE + 1)
+          in.read(b) shouldBe -1
+        }
+        store.delete()
+        store.exists shouldBe false
+        intercept[NoContentException](store.delete())
+      }
+
+      s"keep the content for open input streams when replacing it and it's $kind" in {
+        val store = factory(Long.MaxValue)
+        store content data
+        store.input accept { in: InputStream =>
+          store content "Hello world!".getBytes
+          store.delete()
+          val b = new Array[Byte](data.length)
+          new DataInputStream(in) readFully b
+          b shouldBe data
+        }
+        intercept[NoContentException](store.content)
+      }
+
+      s"enforce the maximum size and keep the previous content when it's $kind" in {
+        val store = factory(data.length)
+        store content data
+        intercept[ContentTooLargeException](store content (data :+ 0.toByte))
+        store.content shouldBe data
+      }
+    }
+
+    "free the native memory of the segments which the arena discards when deleting the content" in {
+      val pool = ManagementFactory.getPlatformMXBeans(classOf[BufferPoolMXBean]).asScala.find(_.getName == "direct").get
+      val store = offHeapMemory
+      store content new Array[Byte](20 * 1024 * 1024)
+      val used = pool.getMemoryUsed
+      store.delete()
+      pool.getMemoryUsed should be <= used - 10 * 1024 * 1024
+    }
+  }
+}
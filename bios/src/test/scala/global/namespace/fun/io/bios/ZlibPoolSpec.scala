@@ -0,0 +1,144 @@
+/*
+ * Copyright © 2017 - 2019 Schlichtherle IT Services
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package global.namespace.fun.io.bios
+
+import java.io._
+import java.util.Random
+import java.util.zip.{Deflater, GZIPInputStream, GZIPOutputStream, ZipException}
+
+import global.namespace.fun.io.api.{Filter, Socket}
+import global.namespace.fun.io.bios.BIOS._
+import org.scalatest.matchers.should.Matchers._
+import org.scalatest.prop.TableDrivenPropertyChecks._
+import org.scalatest.wordspec.AnyWordSpec
+
+/** @author Christian Schlichtherle */
+class ZlibPoolSpec extends AnyWordSpec {
+
+  private val data = {
+    val b = new Array[Byte](100 * 1000)
+    val r = new Random(0)
+    for (i <- b.indices) {
+      b(i) = (r.nextInt(16) + 'a').toByte
+    }
+    b
+  }
+
+  private def pool = ZlibPool.shared
+
+  private def gzipped(b: Array[Byte]) = {
+    val out = new ByteArrayOutputStream
+    val gz = new GZIPOutputStream(out)
+    gz write b
+    gz.close()
+    out.toByteArray
+  }
+
+  private def gunzip(b: Array[Byte]) = {
+    val in = new GZIPInputStream(new ByteArrayInputStream(b))
+    val out = new ByteArrayOutputStream
+    val buf = new Array[Byte](8192)
+    var n = 0
+    while ( {
+      n = in.read(buf)
+      0 <= n
+    }) {
+      out.write(buf, 0, n)
+    }
+    out.toByteArray
+  }
+
+  "The shared ZLIB pool" should {
+    "reuse the deflaters and inflaters of the filters" in {
+      forAll(Table[String, Filter](
+        ("filter", "filter"),
+        ("deflate", deflate(1)),
+        ("gzip", gzip),
+        ("deflate and inflate", deflate(1) compose inflate(1)),
+      )) { (_, filter) =>
+        val store = memory map filter
+        store content data
+        store.content shouldBe data
+        val hits = pool.hits
+        for (_ <- 1 to 10) {
+          store content data
+          store.content shouldBe data
+        }
+        pool.hits - hits should be >= 20L
+      }
+    }
+
+    "reset the released deflaters" in {
+      val deflater = pool.deflater(Deflater.BEST_SPEED)
+      deflater setInput data
+      deflater.finish()
+      deflater.deflate(new Array[Byte](100))
+      pool release deflater
+      val reused = pool.deflater(Deflater.BEST_SPEED)
+      reused.getBytesRead shouldBe 0
+      reused.finished shouldBe false
+      pool release reused
+    }
+
+    "end foreign deflaters and inflaters" in {
+      val discards = pool.discards
+      val deflater = new Deflater
+      pool release deflater
+      pool.discards shouldBe discards + 1
+      intercept[NullPointerException](deflater.getBytesRead)
+    }
+
+    "reject illegal compression levels" in {
+      intercept[IllegalArgumentException](pool.deflater(10))
+      intercept[IllegalArgumentException](pool.deflater(-2, true))
+    }
+  }
+
+  "BIOS.gzip" should {
+    "be compatible with the JDK's GZIP streams" in {
+      val store = memory
+      store map gzip content data
+      gunzip(store.content) shouldBe data
+      store content gzipped(data)
+      (store map gzip).content shouldBe data
+    }
+
+    "read concatenated GZIP members and ignore trailing data" in {
+      val store = memory
+      store content (gzipped(data take 1000) ++ gzipped(data drop 1000) ++ Array[Byte](1, 2, 3))
+      (store map gzip).content shouldBe data
+    }
+
+    "reject a corrupt GZIP trailer" in {
+      val b = gzipped(data)
+      b(b.length - 5) = (b(b.length - 5) ^ 1).toByte
+      val store = memory
+      store content b
+      intercept[ZipException]((store map gzip).content)
+    }
+
+    "reject using a closed stream" in {
+      gzip.output((() => new ByteArrayOutputStream): Socket[OutputStream]).accept { out =>
+        out.close()
+        intercept[IOException](out write 0)
+      }
+      gzip.input((() => new ByteArrayInputStream(gzipped(data))): Socket[InputStream]).accept { in =>
+        in.close()
+        intercept[IOException](in.read())
+      }
+    }
+  }
+}
@@ -18,6 +18,7 @@ import sbt._
 object Dependencies {
 
   private val JAXB_Version = "2.3.3"
+  private val JMH_Version = "1.26"
 
   val AwsJavaSdkS3: ModuleID = "com.amazonaws" % "aws-java-sdk-s3" % "1.11.901"
   val CommonsCompress: ModuleID = "org.apache.commons" % "commons-compress" % "1.20"
@@ -25,7 +26,10 @@ object Dependencies {
   val JacksonDatabind: ModuleID = "com.fasterxml.jackson.core" % "jackson-databind" % "2.11.3"
   val JaxbApi: ModuleID = "jakarta.xml.bind" % "jakarta.xml.bind-api" % JAXB_Version
   val JaxbRuntime: ModuleID = "org.glassfish.jaxb" % "jaxb-runtime" % JAXB_Version
+  val JmhCore: ModuleID = "org.openjdk.jmh" % "jmh-core" % JMH_Version
+  val JmhGeneratorAnnprocess: ModuleID = "org.openjdk.jmh" % "jmh-generator-annprocess" % JMH_Version
   val MockitoCore: ModuleID = "org.mockito" % "mockito-core" % "3.6.0"
+  val ReactiveStreams: ModuleID = "org.reactivestreams" % "reactive-streams" % "1.0.3"
   val S3: ModuleID = "software.amazon.awssdk" % "s3" % "2.15.28"
   val Scalatest: ModuleID = "org.scalatest" %% "scalatest" % "3.2.3"
   val ScalatestplusMockito = "org.scalatestplus" %% "mockito-3-4" % "3.2.3.0"
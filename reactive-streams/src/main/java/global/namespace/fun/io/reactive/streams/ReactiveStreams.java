@@ -0,0 +1,84 @@
+/*
+ * Copyright © 2017 - 2020 Schlichtherle IT Services
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package global.namespace.fun.io.reactive.streams;
+
+import global.namespace.fun.io.api.Sink;
+import global.namespace.fun.io.api.Source;
+import global.namespace.fun.io.spi.BufferArena;
+import global.namespace.fun.io.spi.CopyOptions;
+import org.reactivestreams.Publisher;
+
+import java.nio.ByteBuffer;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * This facade provides static factory methods for bridging sources and sinks to
+ * <a href="https://www.reactive-streams.org">Reactive Streams</a>.
+ * This enables streaming the content of a store to a reactive HTTP server or client and vice versa with back-pressure
+ * and bounded memory.
+ * On JDK 9+, use {@code org.reactivestreams.FlowAdapters} in order to convert the returned objects to their
+ * {@code java.util.concurrent.Flow} equivalents.
+ * <p>
+ * The blocking streams of the sources and sinks get read and written by tasks which are run by the
+ * {@linkplain CopyOptions#executor() executor} of the copy options, but only while there is any demand or data, so
+ * no thread is blocked while the other side is waiting.
+ * The default executor runs each task in a new virtual thread on JDK 21+.
+ * The data gets transferred in buffers which are acquired from the {@linkplain BufferArena#heap() heap arena} with
+ * the {@linkplain CopyOptions#bufferSize() buffer size} of the copy options.
+ *
+ * @author Christian Schlichtherle
+ */
+public final class ReactiveStreams {
+
+    private ReactiveStreams() { }
+
+    /** Returns a publisher of the content of the given source using the default copy options. */
+    public static Publisher<ByteBuffer> publisher(Source source) {
+        return publisher(source, CopyOptions.defaults());
+    }
+
+    /**
+     * Returns a publisher of the content of the given source using the given copy options.
+     * Each subscriber gets its own subscription, which opens a new input stream upon the first request and closes it
+     * upon completion, failure or cancellation.
+     * Each buffer passed to {@link org.reactivestreams.Subscriber#onNext(Object)} is owned by the subscriber.
+     * When the subscriber is done with it, it may pass it to {@link BufferArena#release(ByteBuffer)
+     * BufferArena.heap().release(ByteBuffer)} for reuse.
+     * A subscriber returned from {@link #subscriber(Sink, CopyOptions)} does this automatically.
+     */
+    public static Publisher<ByteBuffer> publisher(Source source, CopyOptions options) {
+        return new SourcePublisher(requireNonNull(source), requireNonNull(options));
+    }
+
+    /** Returns a subscriber which writes the published buffers to the given sink using the default copy options. */
+    public static SinkSubscriber subscriber(Sink sink) {
+        return subscriber(sink, CopyOptions.defaults());
+    }
+
+    /**
+     * Returns a subscriber which writes the published buffers to the given sink using the given copy options.
+     * The subscriber requests up to the {@linkplain CopyOptions#fifoSize() FIFO size} of the copy options in buffers
+     * ahead of writing them.
+     * It opens an output stream upon the first buffer and closes it upon completion.
+     * The subscriber can subscribe only once.
+     *
+     * @see SinkSubscriber#completion()
+     */
+    public static SinkSubscriber subscriber(Sink sink, CopyOptions options) {
+        return new SinkSubscriber(requireNonNull(sink), requireNonNull(options));
+    }
+}
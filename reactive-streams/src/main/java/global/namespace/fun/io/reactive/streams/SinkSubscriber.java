@@ -0,0 +1,219 @@
+/*
+ * Copyright © 2017 - 2020 Schlichtherle IT Services
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package global.namespace.fun.io.reactive.streams;
+
+import global.namespace.fun.io.api.Sink;
+import global.namespace.fun.io.api.Store;
+import global.namespace.fun.io.spi.BufferArena;
+import global.namespace.fun.io.spi.CopyOptions;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A subscriber which writes the published buffers to a sink.
+ * Use {@link ReactiveStreams#subscriber(Sink, CopyOptions)} to create an instance.
+ * <p>
+ * The buffers get written by a task which is run by the executor of the copy options while there are any buffers in
+ * the queue, so that the signal methods never block.
+ * If the subscription was obtained from a {@linkplain ReactiveStreams#publisher(global.namespace.fun.io.api.Source,
+ * CopyOptions) source publisher}, then the buffers get released to the {@linkplain BufferArena#heap() heap arena}
+ * after writing them.
+ *
+ * @author Christian Schlichtherle
+ */
+public final class SinkSubscriber implements Subscriber<ByteBuffer> {
+
+    private final BufferArena arena = BufferArena.heap();
+
+    private final CompletableFuture<Void> completion = new CompletableFuture<>();
+
+    private final AtomicBoolean subscribed = new AtomicBoolean();
+
+    private final Queue<ByteBuffer> queue = new ConcurrentLinkedQueue<>();
+
+    /** The number of times the task has been scheduled but has not yet run, see {@link #schedule()}. */
+    private final AtomicInteger pending = new AtomicInteger();
+
+    private final Sink sink;
+
+    private final Executor executor;
+
+    private final int prefetch;
+
+    private volatile Subscription subscription;
+
+    private volatile boolean recycle;
+
+    /** Set to {@code true} or the failure of the publisher upon the terminal signal. */
+    private volatile Object terminal;
+
+    // The following fields are confined to the task:
+
+    private OutputStream out;
+
+    private boolean done;
+
+    SinkSubscriber(final Sink sink, final CopyOptions options) {
+        this.sink = sink;
+        this.executor = options.executor();
+        this.prefetch = options.fifoSize();
+    }
+
+    /**
+     * Returns a future which gets completed when all buffers have been written and the output stream has been closed
+     * or exceptionally if the publisher or the sink has failed.
+     * Cancelling the future cancels the subscription.
+     */
+    public CompletableFuture<Void> completion() { return completion; }
+
+    @Override
+    public void onSubscribe(final Subscription subscription) {
+        requireNonNull(subscription);
+        if (subscribed.compareAndSet(false, true)) {
+            this.recycle = subscription instanceof SourcePublisher.SourceSubscription;
+            this.subscription = subscription;
+            completion.whenComplete((v, e) -> {
+                if (completion.isCancelled()) {
+                    subscription.cancel();
+                    schedule();
+                }
+            });
+            subscription.request(prefetch);
+        } else {
+            subscription.cancel(); // see rule 2.5 of the specification
+        }
+    }
+
+    @Override
+    public void onNext(final ByteBuffer buffer) {
+        queue.add(requireNonNull(buffer));
+        schedule();
+    }
+
+    @Override
+    public void onError(final Throwable e) {
+        terminal = requireNonNull(e);
+        schedule();
+    }
+
+    @Override
+    public void onComplete() {
+        terminal = Boolean.TRUE;
+        schedule();
+    }
+
+    private void schedule() {
+        if (0 == pending.getAndIncrement()) {
+            try {
+                executor.execute(this::drain);
+            } catch (RuntimeException e) {
+                subscription.cancel();
+                completion.completeExceptionally(e);
+            }
+        }
+    }
+
+    private void drain() {
+        int missed = 1;
+        do {
+            if (!done) {
+                step();
+            }
+        } while (0 != (missed = pending.addAndGet(-missed)));
+    }
+
+    private void step() {
+        try {
+            if (completion.isDone()) {
+                abort(null);
+                return;
+            }
+            int written = 0;
+            for (ByteBuffer buffer; null != (buffer = queue.poll()); written++) {
+                write(buffer);
+                if (recycle) {
+                    arena.release(buffer);
+                }
+            }
+            final Object terminal = this.terminal;
+            if (Boolean.TRUE.equals(terminal) && queue.isEmpty()) {
+                done = true;
+                output().close();
+                completion.complete(null);
+            } else if (terminal instanceof Throwable) {
+                abort((Throwable) terminal);
+            } else if (0 < written) {
+                subscription.request(written);
+            }
+        } catch (Throwable e) {
+            subscription.cancel();
+            abort(e);
+        }
+    }
+
+    private void write(final ByteBuffer buffer) throws Exception {
+        final OutputStream out = output();
+        if (buffer.hasArray()) {
+            out.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        } else {
+            final ByteBuffer b = buffer.duplicate();
+            final byte[] chunk = new byte[Math.min(b.remaining(), Store.BUFSIZE)];
+            for (int n; 0 < (n = Math.min(b.remaining(), chunk.length)); ) {
+                b.get(chunk, 0, n);
+                out.write(chunk, 0, n);
+            }
+        }
+    }
+
+    /** Returns the output stream, which stays open across multiple runs of the task. */
+    @SuppressWarnings("deprecation")
+    private OutputStream output() throws Exception {
+        if (null == out) {
+            out = sink.output().get();
+        }
+        return out;
+    }
+
+    private void abort(final Throwable e) {
+        done = true;
+        queue.clear();
+        final OutputStream out = this.out;
+        if (null != out) {
+            try {
+                out.close();
+            } catch (IOException e2) {
+                if (null != e) {
+                    e.addSuppressed(e2);
+                }
+            }
+        }
+        if (null != e) {
+            completion.completeExceptionally(e);
+        }
+    }
+}
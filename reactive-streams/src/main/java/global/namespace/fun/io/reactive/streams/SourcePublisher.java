@@ -0,0 +1,208 @@
+/*
+ * Copyright © 2017 - 2020 Schlichtherle IT Services
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package global.namespace.fun.io.reactive.streams;
+
+import global.namespace.fun.io.api.Source;
+import global.namespace.fun.io.spi.BufferArena;
+import global.namespace.fun.io.spi.CopyOptions;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A publisher of the content of a source.
+ *
+ * @author Christian Schlichtherle
+ */
+final class SourcePublisher implements Publisher<ByteBuffer> {
+
+    private final Source source;
+    private final CopyOptions options;
+
+    SourcePublisher(final Source source, final CopyOptions options) {
+        this.source = source;
+        this.options = options;
+    }
+
+    @Override
+    public void subscribe(final Subscriber<? super ByteBuffer> subscriber) {
+        new SourceSubscription(requireNonNull(subscriber)).start();
+    }
+
+    /**
+     * A subscription which reads the input stream by a task run by the executor while there is any demand.
+     * The task is the only one to access the input stream and to signal the subscriber after {@code onSubscribe}, so
+     * that the signals are serialized.
+     */
+    final class SourceSubscription implements Subscription {
+
+        private final BufferArena arena = BufferArena.heap();
+
+        private final Executor executor = options.executor();
+
+        private final Subscriber<? super ByteBuffer> subscriber;
+
+        private final AtomicLong demand = new AtomicLong();
+
+        /** The number of times the task has been scheduled but has not yet run, see {@link #schedule()}. */
+        private final AtomicInteger pending = new AtomicInteger();
+
+        private volatile boolean cancelled;
+
+        private volatile Throwable illegalRequest;
+
+        // The following fields are confined to the task:
+
+        private InputStream in;
+
+        private boolean done;
+
+        SourceSubscription(final Subscriber<? super ByteBuffer> subscriber) { this.subscriber = subscriber; }
+
+        void start() {
+            try {
+                subscriber.onSubscribe(this);
+            } catch (Throwable e) {
+                cancelled = true;
+                throw e;
+            }
+        }
+
+        @Override
+        public void request(final long n) {
+            if (0 >= n) {
+                illegalRequest = new IllegalArgumentException(n + " is not a positive number of elements.");
+            } else {
+                demand.getAndUpdate(d -> Long.MAX_VALUE - d > n ? d + n : Long.MAX_VALUE);
+            }
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            schedule();
+        }
+
+        private void schedule() {
+            if (0 == pending.getAndIncrement()) {
+                try {
+                    executor.execute(this::drain);
+                } catch (RuntimeException e) {
+                    // The task never runs, so there is no concurrent signal:
+                    cancelled = true;
+                    subscriber.onError(e);
+                }
+            }
+        }
+
+        private void drain() {
+            int missed = 1;
+            do {
+                if (!done) {
+                    step();
+                }
+            } while (0 != (missed = pending.addAndGet(-missed)));
+        }
+
+        /** Reads and publishes buffers while there is any demand, keeping the input stream open across runs. */
+        @SuppressWarnings("deprecation")
+        private void step() {
+            while (true) {
+                if (cancelled) {
+                    closeQuietly();
+                    return;
+                }
+                final Throwable illegalRequest = this.illegalRequest;
+                if (null != illegalRequest) {
+                    fail(illegalRequest);
+                    return;
+                }
+                if (0 == demand.get()) {
+                    return;
+                }
+                final ByteBuffer buffer = arena.acquire(options.bufferSize());
+                final int read;
+                try {
+                    if (null == in) {
+                        in = source.input().get();
+                    }
+                    read = in.read(buffer.array(), buffer.arrayOffset(), options.bufferSize());
+                } catch (Throwable e) {
+                    arena.release(buffer);
+                    fail(e);
+                    return;
+                }
+                if (0 > read) {
+                    arena.release(buffer);
+                    try {
+                        close();
+                    } catch (Throwable e) {
+                        subscriber.onError(e);
+                        return;
+                    }
+                    subscriber.onComplete();
+                    return;
+                } else if (0 < read) {
+                    buffer.limit(read);
+                    demand.decrementAndGet();
+                    try {
+                        subscriber.onNext(buffer);
+                    } catch (Throwable e) {
+                        cancelled = true; // see rule 2.13 of the specification
+                    }
+                } else {
+                    arena.release(buffer);
+                }
+            }
+        }
+
+        private void fail(final Throwable e) {
+            try {
+                close();
+            } catch (Throwable e2) {
+                e.addSuppressed(e2);
+            }
+            subscriber.onError(e);
+        }
+
+        private void closeQuietly() {
+            try {
+                close();
+            } catch (Exception ignored) {
+                // The subscriber has cancelled, so there is nobody to tell about this.
+            }
+        }
+
+        private void close() throws IOException {
+            done = true;
+            final InputStream in = this.in;
+            if (null != in) {
+                this.in = null;
+                in.close();
+            }
+        }
+    }
+}
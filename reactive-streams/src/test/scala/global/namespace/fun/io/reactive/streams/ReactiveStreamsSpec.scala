@@ -0,0 +1,134 @@
+/*
+ * Copyright © 2017 - 2020 Schlichtherle IT Services
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package global.namespace.fun.io.reactive.streams
+
+import java.io.{ByteArrayInputStream, ByteArrayOutputStream, IOException, InputStream, OutputStream}
+import java.nio.ByteBuffer
+import java.util.Random
+import java.util.concurrent.{CountDownLatch, ExecutionException, LinkedBlockingQueue, TimeUnit}
+
+import global.namespace.fun.io.api.{Sink, Socket, Source}
+import global.namespace.fun.io.reactive.streams.ReactiveStreams._
+import global.namespace.fun.io.spi.CopyOptions
+import org.reactivestreams.{Subscriber, Subscription}
+import org.scalatest.matchers.should.Matchers._
+import org.scalatest.wordspec.AnyWordSpec
+
+class ReactiveStreamsSpec extends AnyWordSpec {
+
+  private val data = {
+    val b = new Array[Byte](1024 * 1024 + 1)
+    new Random(0).nextBytes(b)
+    b
+  }
+
+  private val options = CopyOptions.builder.bufferSize(16 * 1024).build
+
+  private val source: Source = () => (() => new ByteArrayInputStream(data)): Socket[InputStream]
+
+  "A source publisher and a sink subscriber" should {
+    "copy the data" in {
+      val out = new ByteArrayOutputStream
+      val subscriber = ReactiveStreams.subscriber(() => (() => out): Socket[OutputStream], options)
+      publisher(source, options) subscribe subscriber
+      subscriber.completion.get(10, TimeUnit.SECONDS)
+      out.toByteArray shouldBe data
+    }
+
+    "complete exceptionally when reading the source fails" in {
+      val failing: Source = () => (() => new ByteArrayInputStream(data) {
+        override def read(b: Array[Byte], off: Int, len: Int): Int = throw new IOException("cannot read")
+      }): Socket[InputStream]
+      val subscriber = ReactiveStreams.subscriber(() => (() => new ByteArrayOutputStream): Socket[OutputStream])
+      publisher(failing) subscribe subscriber
+      val e = intercept[ExecutionException](subscriber.completion.get(10, TimeUnit.SECONDS))
+      e.getCause.getMessage shouldBe "cannot read"
+    }
+
+    "cancel the subscription when writing the sink fails" in {
+      val closed = new CountDownLatch(1)
+      val tracking: Source = () => (() => new ByteArrayInputStream(data) {
+        override def close(): Unit = closed.countDown()
+      }): Socket[InputStream]
+      val failing: Sink = () => (() => new OutputStream {
+        override def write(b: Int): Unit = throw new IOException("cannot write")
+
+        override def write(b: Array[Byte], off: Int, len: Int): Unit = throw new IOException("cannot write")
+      }): Socket[OutputStream]
+      val subscriber = ReactiveStreams.subscriber(failing, options)
+      publisher(tracking, options) subscribe subscriber
+      val e = intercept[ExecutionException](subscriber.completion.get(10, TimeUnit.SECONDS))
+      e.getCause.getMessage shouldBe "cannot write"
+      closed.await(10, TimeUnit.SECONDS) shouldBe true
+    }
+  }
+
+  "A source publisher" should {
+    "honor the demand of its subscriber" in {
+      val subscriber = new TestSubscriber
+      publisher(source, options) subscribe subscriber
+      val subscription = subscriber.signals.take.asInstanceOf[Subscription]
+      subscriber.signals.poll(100, TimeUnit.MILLISECONDS) shouldBe null
+      subscription request 2
+      subscriber.signals.take shouldBe a[ByteBuffer]
+      subscriber.signals.take shouldBe a[ByteBuffer]
+      subscriber.signals.poll(100, TimeUnit.MILLISECONDS) shouldBe null
+      subscription request Long.MaxValue
+      val out = new ByteArrayOutputStream
+      var signal = subscriber.signals.take
+      while (signal.isInstanceOf[ByteBuffer]) {
+        out write new Array[Byte](signal.asInstanceOf[ByteBuffer].remaining)
+        signal = subscriber.signals.take
+      }
+      signal shouldBe "complete"
+      out.size shouldBe data.length - 2 * 16 * 1024
+    }
+
+    "signal an error upon a non-positive request" in {
+      val subscriber = new TestSubscriber
+      publisher(source) subscribe subscriber
+      subscriber.signals.take.asInstanceOf[Subscription] request 0
+      subscriber.signals.take shouldBe an[IllegalArgumentException]
+    }
+
+    "close the input stream when its subscriber cancels the subscription" in {
+      val closed = new CountDownLatch(1)
+      val tracking: Source = () => (() => new ByteArrayInputStream(data) {
+        override def close(): Unit = closed.countDown()
+      }): Socket[InputStream]
+      val subscriber = new TestSubscriber
+      publisher(tracking) subscribe subscriber
+      val subscription = subscriber.signals.take.asInstanceOf[Subscription]
+      subscription request 1
+      subscriber.signals.take shouldBe a[ByteBuffer]
+      subscription.cancel()
+      closed.await(10, TimeUnit.SECONDS) shouldBe true
+    }
+  }
+
+  private class TestSubscriber extends Subscriber[ByteBuffer] {
+
+    val signals = new LinkedBlockingQueue[AnyRef]
+
+    override def onSubscribe(s: Subscription): Unit = signals put s
+
+    override def onNext(b: ByteBuffer): Unit = signals put b
+
+    override def onError(e: Throwable): Unit = signals put e
+
+    override def onComplete(): Unit = signals put "complete"
+  }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright © 2017 - 2020 Schlichtherle IT Services
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package global.namespace.fun.io.spi;
+
+import global.namespace.fun.io.api.function.XSupplier;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Runs blocking operations asynchronously by an executor and completes a {@link CompletableFuture} with their result.
+ *
+ * @author Christian Schlichtherle
+ */
+final class Async {
+
+    private Async() { }
+
+    /**
+     * Runs the given operation by the given executor.
+     * If the returned future gets cancelled, then the given cancellation token gets cancelled, too, if not
+     * {@code null}, so that any copy operation which uses it gets aborted.
+     * If the returned future gets cancelled before the executor starts the operation, then it never gets run.
+     */
+    static <V> CompletableFuture<V> supply(final Executor executor,
+                                           final CancellationToken token,
+                                           final XSupplier<? extends V> operation) {
+        final CompletableFuture<V> future = new CompletableFuture<V>() {
+
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                if (null != token) {
+                    token.cancel();
+                }
+                return super.cancel(mayInterruptIfRunning);
+            }
+        };
+        try {
+            executor.execute(() -> {
+                if (!future.isDone()) {
+                    try {
+                        future.complete(operation.get());
+                    } catch (Throwable e) {
+                        future.completeExceptionally(e);
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright © 2017 - 2020 Schlichtherle IT Services
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package global.namespace.fun.io.spi;
+
+import global.namespace.fun.io.api.Sink;
+import global.namespace.fun.io.api.function.XConsumer;
+import global.namespace.fun.io.api.function.XFunction;
+
+import java.io.OutputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * An asynchronous facade for a {@link Sink}.
+ * Each operation gets run by an executor and returns a {@link CompletableFuture} for its result, so that many
+ * operations can get pipelined without blocking the calling thread.
+ *
+ * @see AsyncSource
+ * @author Christian Schlichtherle
+ */
+public final class AsyncSink {
+
+    private final Sink sink;
+
+    private final Executor executor;
+
+    private AsyncSink(final Sink sink, final Executor executor) {
+        this.sink = requireNonNull(sink);
+        this.executor = requireNonNull(executor);
+    }
+
+    /** Returns an asynchronous facade for the given sink which uses the default executor of {@link CopyOptions}. */
+    public static AsyncSink of(Sink sink) { return of(sink, CopyOptions.defaults().executor()); }
+
+    /** Returns an asynchronous facade for the given sink which uses the given executor. */
+    public static AsyncSink of(Sink sink, Executor executor) { return new AsyncSink(sink, executor); }
+
+    /** Returns the underlying sink. */
+    public Sink sink() { return sink; }
+
+    /**
+     * Asynchronously loans an output stream from the underlying sink to the given consumer.
+     *
+     * @see Sink#acceptWriter(XConsumer)
+     */
+    public CompletableFuture<Void> acceptWriter(final XConsumer<? super OutputStream> writer) {
+        return Async.supply(executor, null, () -> {
+            sink.acceptWriter(writer);
+            return null;
+        });
+    }
+
+    /**
+     * Asynchronously loans an output stream from the underlying sink to the given function and completes the returned
+     * future with its value.
+     *
+     * @see Sink#applyWriter(XFunction)
+     */
+    public <U> CompletableFuture<U> applyWriter(XFunction<? super OutputStream, ? extends U> writer) {
+        return Async.supply(executor, null, () -> sink.applyWriter(writer));
+    }
+
+    /** Asynchronously writes the given content to the underlying sink. */
+    public CompletableFuture<Void> content(final byte[] b) {
+        return acceptWriter(out -> out.write(b));
+    }
+}
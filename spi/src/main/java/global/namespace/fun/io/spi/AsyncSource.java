@@ -0,0 +1,103 @@
+/*
+ * Copyright © 2017 - 2020 Schlichtherle IT Services
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package global.namespace.fun.io.spi;
+
+import global.namespace.fun.io.api.Source;
+import global.namespace.fun.io.api.Store;
+import global.namespace.fun.io.api.function.XConsumer;
+import global.namespace.fun.io.api.function.XFunction;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * An asynchronous facade for a {@link Source}.
+ * Each operation gets run by an executor and returns a {@link CompletableFuture} for its result, so that many
+ * operations can get pipelined without blocking the calling thread.
+ * The default executor runs each operation in a new virtual thread on JDK 21+, so that even thousands of concurrent
+ * operations do not need a platform thread each.
+ *
+ * @see AsyncSink
+ * @see Copy#copyAsync(Source, global.namespace.fun.io.api.Sink, CopyOptions)
+ * @author Christian Schlichtherle
+ */
+public final class AsyncSource {
+
+    private final Source source;
+
+    private final Executor executor;
+
+    private AsyncSource(final Source source, final Executor executor) {
+        this.source = requireNonNull(source);
+        this.executor = requireNonNull(executor);
+    }
+
+    /** Returns an asynchronous facade for the given source which uses the default executor of {@link CopyOptions}. */
+    public static AsyncSource of(Source source) { return of(source, CopyOptions.defaults().executor()); }
+
+    /** Returns an asynchronous facade for the given source which uses the given executor. */
+    public static AsyncSource of(Source source, Executor executor) { return new AsyncSource(source, executor); }
+
+    /** Returns the underlying source. */
+    public Source source() { return source; }
+
+    /**
+     * Asynchronously loans an input stream from the underlying source to the given consumer.
+     *
+     * @see Source#acceptReader(XConsumer)
+     */
+    public CompletableFuture<Void> acceptReader(final XConsumer<? super InputStream> reader) {
+        return Async.supply(executor, null, () -> {
+            source.acceptReader(reader);
+            return null;
+        });
+    }
+
+    /**
+     * Asynchronously loans an input stream from the underlying source to the given function and completes the returned
+     * future with its value.
+     *
+     * @see Source#applyReader(XFunction)
+     */
+    public <U> CompletableFuture<U> applyReader(XFunction<? super InputStream, ? extends U> reader) {
+        return Async.supply(executor, null, () -> source.applyReader(reader));
+    }
+
+    /**
+     * Asynchronously reads the content of the underlying source.
+     * Unless the source is a {@link Store}, the content gets read by the task which runs on the executor of this facade.
+     */
+    public CompletableFuture<byte[]> content() {
+        return Async.supply(executor, null, () -> {
+            if (source instanceof Store) {
+                return ((Store) source).content();
+            } else {
+                return source.applyReader(in -> {
+                    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+                    final byte[] buffer = new byte[Store.BUFSIZE];
+                    for (int read; -1 != (read = in.read(buffer)); ) {
+                        out.write(buffer, 0, read);
+                    }
+                    return out.toByteArray();
+                });
+            }
+        });
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright © 2017 - 2020 Schlichtherle IT Services
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package global.namespace.fun.io.spi;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A bounded arena of byte buffers with power-of-two size classes from 1 KiB to 1 MiB.
+ * Each size class has a global pool which is shared by all threads and retains up to 4 MiB of buffers.
+ * Additionally, each platform thread caches one buffer per size class of up to 64 KiB, so that a thread which
+ * repeatedly acquires and releases buffers of the same size does not even need to access the global pool.
+ * Virtual threads do not cache any buffers because they are typically short-lived.
+ * <p>
+ * Other than pooling buffers via soft references, the pooled buffers survive garbage collection, so they are available
+ * when they are needed most, and the amount of pooled memory is bounded regardless of the heap size.
+ * Requests for buffers larger than 1 MiB are served by allocating unpooled buffers.
+ * <p>
+ * Use {@link #heap()} for buffers which are backed by an array or {@link #direct()} for direct buffers.
+ * Every buffer obtained from {@link #acquire(int)} should be passed to {@link #release(ByteBuffer)} exactly once when
+ * it's not used anymore.
+ * Releasing a buffer more than once or using it after releasing it results in undefined behavior.
+ *
+ * @author Christian Schlichtherle
+ */
+public final class BufferArena {
+
+    private static final int MIN_SHIFT = 10; // 1 KiB
+    private static final int MAX_SHIFT = 20; // 1 MiB
+    private static final int MAX_LOCAL_SHIFT = 16; // 64 KiB
+    private static final int MAX_POOLED_BYTES_PER_CLASS = 4 << 20; // 4 MiB
+
+    /** A method handle for {@code Thread.isVirtual()} or {@code null} if the JVM does not support virtual threads. */
+    private static final MethodHandle isVirtual = isVirtual();
+
+    private static final BufferArena heap = new BufferArena(false);
+    private static final BufferArena direct = new BufferArena(true);
+
+    private static MethodHandle isVirtual() {
+        try {
+            return MethodHandles.publicLookup().findVirtual(Thread.class, "isVirtual", MethodType.methodType(boolean.class));
+        } catch (ReflectiveOperationException unsupported) {
+            return null;
+        }
+    }
+
+    private final boolean directBuffers;
+
+    private final Pool[] pools = new Pool[MAX_SHIFT - MIN_SHIFT + 1];
+
+    private final ThreadLocal<ByteBuffer[]> caches =
+            ThreadLocal.withInitial(() -> new ByteBuffer[MAX_LOCAL_SHIFT - MIN_SHIFT + 1]);
+
+    private final LongAdder hits = new LongAdder(), misses = new LongAdder(), discards = new LongAdder();
+
+    private BufferArena(final boolean directBuffers) {
+        this.directBuffers = directBuffers;
+        for (int i = 0; i < pools.length; i++) {
+            pools[i] = new Pool(Math.max(1, MAX_POOLED_BYTES_PER_CLASS >>> (MIN_SHIFT + i)));
+        }
+    }
+
+    /** Returns the shared arena of buffers which are backed by an array. */
+    public static BufferArena heap() { return heap; }
+
+    /** Returns the shared arena of direct buffers. */
+    public static BufferArena direct() { return direct; }
+
+    /** Returns {@code true} if and only if this arena provides direct buffers. */
+    public boolean directBuffers() { return directBuffers; }
+
+    /**
+     * Returns a cleared buffer with at least the given capacity.
+     * If this is a {@linkplain #heap() heap arena}, then the array offset of the returned buffer is zero.
+     *
+     * @throws IllegalArgumentException if the given capacity is negative.
+     */
+    public ByteBuffer acquire(final int capacity) {
+        if (0 > capacity) {
+            throw new IllegalArgumentException(capacity + " is a negative capacity.");
+        }
+        final int shift = shift(capacity);
+        if (MAX_SHIFT < shift) {
+            misses.increment();
+            return allocate(capacity);
+        }
+        final int index = shift - MIN_SHIFT;
+        if (MAX_LOCAL_SHIFT >= shift && cacheable()) {
+            final ByteBuffer[] cache = caches.get();
+            final ByteBuffer buffer = cache[index];
+            if (null != buffer) {
+                cache[index] = null;
+                hits.increment();
+                return buffer;
+            }
+        }
+        final ByteBuffer buffer = pools[index].poll();
+        if (null != buffer) {
+            hits.increment();
+            return buffer;
+        }
+        misses.increment();
+        return allocate(1 << shift);
+    }
+
+    /**
+     * Releases the given buffer, which must have been obtained from this arena, for reuse.
+     * Buffers which do not fit into any size class or which are not required anymore get discarded.
+     *
+     * @return {@code true} if the buffer has been retained for reuse or {@code false} if it has been discarded, in
+     *         which case the caller remains its only owner and may dispose of it, e.g. free the native memory of a
+     *         direct buffer.
+     */
+    public boolean release(final ByteBuffer buffer) {
+        final int capacity = buffer.capacity();
+        final int shift = shift(capacity);
+        if (buffer.isDirect() != directBuffers || capacity != 1 << shift || MAX_SHIFT < shift) {
+            discards.increment();
+            return false;
+        }
+        buffer.clear();
+        buffer.order(ByteOrder.BIG_ENDIAN);
+        final int index = shift - MIN_SHIFT;
+        if (MAX_LOCAL_SHIFT >= shift && cacheable()) {
+            final ByteBuffer[] cache = caches.get();
+            if (null == cache[index]) {
+                cache[index] = buffer;
+                return true;
+            }
+        }
+        if (!pools[index].offer(buffer)) {
+            discards.increment();
+            return false;
+        }
+        return true;
+    }
+
+    /** Returns the number of requests which have been served with a pooled buffer. */
+    public long hits() { return hits.sum(); }
+
+    /** Returns the number of requests which have been served by allocating a new buffer. */
+    public long misses() { return misses.sum(); }
+
+    /** Returns the number of released buffers which have been discarded because the pool was full. */
+    public long discards() { return discards.sum(); }
+
+    @Override
+    public String toString() {
+        return String.format("%s(directBuffers=%b, hits=%d, misses=%d, discards=%d)",
+                getClass().getName(), directBuffers, hits(), misses(), discards());
+    }
+
+    private ByteBuffer allocate(int capacity) {
+        return directBuffers ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+    }
+
+    /** Returns the binary logarithm of the size class for the given capacity. */
+    private static int shift(final int capacity) {
+        return Math.max(MIN_SHIFT, 32 - Integer.numberOfLeadingZeros(Math.max(1, capacity) - 1));
+    }
+
+    private static boolean cacheable() {
+        if (null == isVirtual) {
+            return true;
+        }
+        try {
+            return !(boolean) isVirtual.invokeExact(Thread.currentThread());
+        } catch (Throwable cannotHappen) {
+            throw new AssertionError(cannotHappen);
+        }
+    }
+
+    /** A bounded, lock-free pool of buffers of the same size. */
+    private static final class Pool {
+
+        final Queue<ByteBuffer> queue = new ConcurrentLinkedQueue<>();
+        final AtomicInteger size = new AtomicInteger();
+        final int capacity;
+
+        Pool(final int capacity) { this.capacity = capacity; }
+
+        ByteBuffer poll() {
+            final ByteBuffer buffer = queue.poll();
+            if (null != buffer) {
+                size.decrementAndGet();
+            }
+            return buffer;
+        }
+
+        boolean offer(final ByteBuffer buffer) {
+            if (size.incrementAndGet() > capacity) {
+                size.decrementAndGet();
+                return false;
+            }
+            return queue.offer(requireNonNull(buffer));
+        }
+    }
+}
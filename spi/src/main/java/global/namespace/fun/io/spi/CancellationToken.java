@@ -0,0 +1,51 @@
+/*
+ * Copyright © 2017 - 2020 Schlichtherle IT Services
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package global.namespace.fun.io.spi;
+
+import java.util.Optional;
+
+/**
+ * A token for cancelling copy operations from any thread.
+ * A single token may be shared by any number of copy operations, e.g. all copy operations of an archive copy.
+ * Once cancelled, a token cannot be reset.
+ *
+ * @see CopyOptions#cancellationToken()
+ * @author Christian Schlichtherle
+ */
+public final class CancellationToken {
+
+    private volatile boolean cancelled;
+
+    @SuppressWarnings("OptionalUsedAsFieldOrParameterType")
+    private final Optional<CancellationToken> parent;
+
+    /** Creates a new token which is not cancelled. */
+    public CancellationToken() { this(Optional.empty()); }
+
+    /** Creates a token which is also cancelled if the given parent token, if any, is cancelled. */
+    @SuppressWarnings("OptionalUsedAsFieldOrParameterType")
+    CancellationToken(final Optional<CancellationToken> parent) { this.parent = parent; }
+
+    /**
+     * Cancels all copy operations which use this token.
+     * Any copy operation which is in progress throws an {@link java.io.InterruptedIOException} as soon as possible.
+     * Any subsequent copy operation fails immediately.
+     */
+    public void cancel() { cancelled = true; }
+
+    /** Returns {@code true} if and only if this token has been cancelled. */
+    public boolean isCancelled() { return cancelled || parent.isPresent() && parent.get().isCancelled(); }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright © 2017 - 2020 Schlichtherle IT Services
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package global.namespace.fun.io.spi;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * An input stream which reads from a blocking {@linkplain ReadableByteChannel readable byte channel}.
+ * Other than the input streams returned by {@link Channels#newInputStream(ReadableByteChannel)}, this class provides
+ * access to the underlying channel so that {@link Copy} can bypass the stream if possible, e.g. in order to transfer
+ * data between two file channels without copying it to user space.
+ *
+ * @author Christian Schlichtherle
+ */
+public final class ChannelInputStream extends InputStream {
+
+    private final ReadableByteChannel channel;
+
+    private ByteBuffer single;
+
+    public ChannelInputStream(final ReadableByteChannel channel) { this.channel = requireNonNull(channel); }
+
+    /** Returns the underlying channel. */
+    public ReadableByteChannel channel() { return channel; }
+
+    @Override
+    public int read() throws IOException {
+        ByteBuffer single = this.single;
+        if (null == single) {
+            this.single = single = ByteBuffer.allocate(1);
+        } else {
+            single.clear();
+        }
+        return 0 < read(single) ? single.get(0) & 0xff : -1;
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException {
+        if (off < 0 || len < 0 || b.length - off < len) {
+            throw new IndexOutOfBoundsException();
+        }
+        return 0 == len ? 0 : read(ByteBuffer.wrap(b, off, len));
+    }
+
+    private int read(final ByteBuffer bb) throws IOException {
+        int read;
+        while (0 == (read = channel.read(bb))) {
+            Thread.yield(); // should not happen with a blocking channel
+        }
+        return read;
+    }
+
+    @Override
+    public long skip(final long n) throws IOException {
+        if (n <= 0) {
+            return 0;
+        } else if (channel instanceof SeekableByteChannel) {
+            final SeekableByteChannel sbc = (SeekableByteChannel) channel;
+            final long position = sbc.position();
+            final long skip = Math.min(n, Math.max(0, sbc.size() - position));
+            sbc.position(position + skip);
+            return skip;
+        } else {
+            return super.skip(n);
+        }
+    }
+
+    @Override
+    public int available() throws IOException {
+        if (channel instanceof SeekableByteChannel) {
+            final SeekableByteChannel sbc = (SeekableByteChannel) channel;
+            return (int) Math.min(Integer.MAX_VALUE, Math.max(0, sbc.size() - sbc.position()));
+        } else {
+            return 0;
+        }
+    }
+
+    @Override
+    public void close() throws IOException { channel.close(); }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright © 2017 - 2020 Schlichtherle IT Services
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package global.namespace.fun.io.spi;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * An output stream which writes to a blocking {@linkplain WritableByteChannel writable byte channel}.
+ * Other than the output streams returned by {@link Channels#newOutputStream(WritableByteChannel)}, this class provides
+ * access to the underlying channel so that {@link Copy} can bypass the stream if possible, e.g. in order to transfer
+ * data between two file channels without copying it to user space.
+ *
+ * @author Christian Schlichtherle
+ */
+public final class ChannelOutputStream extends OutputStream {
+
+    private final WritableByteChannel channel;
+
+    private ByteBuffer single;
+
+    public ChannelOutputStream(final WritableByteChannel channel) { this.channel = requireNonNull(channel); }
+
+    /** Returns the underlying channel. */
+    public WritableByteChannel channel() { return channel; }
+
+    @Override
+    public void write(final int b) throws IOException {
+        ByteBuffer single = this.single;
+        if (null == single) {
+            this.single = single = ByteBuffer.allocate(1);
+        } else {
+            single.clear();
+        }
+        single.put((byte) b).flip();
+        write(single);
+    }
+
+    @Override
+    public void write(final byte[] b, final int off, final int len) throws IOException {
+        if (off < 0 || len < 0 || b.length - off < len) {
+            throw new IndexOutOfBoundsException();
+        }
+        write(ByteBuffer.wrap(b, off, len));
+    }
+
+    private void write(final ByteBuffer bb) throws IOException {
+        while (bb.hasRemaining()) {
+            channel.write(bb);
+        }
+    }
+
+    @Override
+    public void close() throws IOException { channel.close(); }
+}
@@ -16,17 +16,19 @@
 package global.namespace.fun.io.spi;
 
 import global.namespace.fun.io.api.*;
+import global.namespace.fun.io.api.function.XConsumer;
 
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
-import java.lang.ref.Reference;
-import java.lang.ref.SoftReference;
-import java.util.Queue;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
 import java.util.concurrent.*;
-import java.util.concurrent.locks.Condition;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.LockSupport;
 
 import static java.util.Objects.requireNonNull;
 
@@ -39,48 +41,284 @@ public final class Copy {
 
     private Copy() { }
 
+    private static final ExecutorService executor = newExecutor();
+
+    /** The maximum time to wait for the reader task to terminate when aborting a copy operation. */
+    private static final long ABORT_TIMEOUT_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    /** The maximum number of bytes to transfer between file channels before checking the watchdog again. */
+    private static final long MAX_WATCHED_TRANSFER_SIZE = 16 * 1024 * 1024;
+
+    /** The copy options for copying archive entries by the current thread, if any. */
+    private static final ThreadLocal<CopyOptions> entryOptions = new ThreadLocal<>();
+
+    /** Returns the default executor for running the tasks which read the input. */
+    static Executor defaultExecutor() { return executor; }
+
     /**
-     * The size of the FIFO used for exchanging I/O buffers between a reader thread and a writer thread.
-     * A minimum of two elements is required.
-     * The actual number is optimized to compensate for oscillating I/O bandwidths like e.g. with network shares.
+     * Returns a new executor which runs each task in a new virtual thread if the JVM supports it (JDK 21+), or else a
+     * cached thread pool of daemon threads in the server thread group.
+     * Virtual threads are much cheaper than platform threads, which matters when copying thousands of streams
+     * concurrently.
+     * <p>
+     * The virtual thread executor gets looked up reflectively because this code must still run on JDK 8.
      */
-    private static final int FIFO_SIZE = 4;
-
-    private static final ExecutorService executor = Executors.newCachedThreadPool(new ReaderThreadFactory());
+    private static ExecutorService newExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException unsupported) {
+            return Executors.newCachedThreadPool(new ReaderThreadFactory());
+        }
+    }
 
     /**
      * Copies the entries from the given archive source to the given archive sink.
      * <p>
-     * This is a high performance implementation which uses a pooled background thread to fill a FIFO of pooled buffers
+     * This is a high performance implementation which uses a background thread to fill a FIFO of pooled buffers
      * which is concurrently flushed by the current thread.
      * It performs best when used with <em>unbuffered</em> streams.
      *
      * @param source the archive source to read the entries from.
      * @param sink the archive sink to write the entries to.
      */
-    public static void copy(final ArchiveSource source, final ArchiveSink sink) throws Exception {
+    public static void copy(ArchiveSource source, ArchiveSink sink) throws Exception {
+        copy(source, sink, CopyOptions.defaults());
+    }
+
+    /**
+     * Copies the entries from the given archive source to the given archive sink using the given copy options.
+     * The copy options also apply to any implementation of {@link ArchiveEntrySink#copyFrom(ArchiveEntrySource)} which
+     * calls {@link #copy(Source, Sink)} in the current thread.
+     * <p>
+     * This is a high performance implementation which uses a background thread to fill a FIFO of pooled buffers
+     * which is concurrently flushed by the current thread.
+     * It performs best when used with <em>unbuffered</em> streams.
+     * If the {@linkplain CopyOptions#parallelism() parallelism} is greater than one, then multiple archive entries
+     * may get copied concurrently.
+     *
+     * @param source the archive source to read the entries from.
+     * @param sink the archive sink to write the entries to.
+     * @param options the options for copying the entries.
+     */
+    public static void copy(final ArchiveSource source, final ArchiveSink sink, final CopyOptions options) throws Exception {
+        requireNonNull(options);
         source.acceptReader(input -> sink.acceptWriter(output -> {
-            for (ArchiveEntrySource entry : input) {
-                entry.copyTo(output.sink(entry.name()));
+            if (1 < options.parallelism() && input.isConcurrent()) {
+                ParallelCopy.copy(input, output, options);
+            } else {
+                for (ArchiveEntrySource entry : input) {
+                    Watchdog.checkCancelled(options);
+                    copyEntry(entry, output.sink(entry.name()), options);
+                }
             }
         }));
     }
 
+    /**
+     * Copies the given archive entry source to the given archive entry sink using the given copy options.
+     * The copy options apply to any call to {@link #copy(Source, Sink)} in the current thread while the archive entry
+     * sink is copying the archive entry.
+     */
+    static void copyEntry(final ArchiveEntrySource source,
+                          final ArchiveEntrySink sink,
+                          final CopyOptions options) throws Exception {
+        final CopyOptions previous = entryOptions.get();
+        entryOptions.set(options);
+        try {
+            source.copyTo(sink);
+        } finally {
+            if (null != previous) {
+                entryOptions.set(previous);
+            } else {
+                entryOptions.remove();
+            }
+        }
+    }
+
     /**
      * Copies the data from the given source to the given sink.
      * <p>
-     * This is a high performance implementation which uses a pooled background thread to fill a FIFO of pooled buffers
+     * This is a high performance implementation which uses a background thread to fill a FIFO of pooled buffers
      * which is concurrently flushed by the current thread.
+     * If both the source and the sink are files, e.g. {@code RealPathStore}s, then the data gets transferred directly
+     * between their file channels instead, so that the operating system can copy it without involving user space.
+     *
+     * @param source the source for reading the data from.
+     * @param sink the sink for writing the data to.
+     */
+    public static void copy(Source source, Sink sink) throws Exception {
+        final CopyOptions options = entryOptions.get();
+        copy(source, sink, null != options ? options : CopyOptions.defaults());
+    }
+
+    /**
+     * Copies the data from the given source to the given sink using the given copy options.
+     * <p>
+     * This is a high performance implementation which uses a background thread to fill a FIFO of pooled buffers
+     * which is concurrently flushed by the current thread.
+     * If both the source and the sink are files, e.g. {@code RealPathStore}s, then the data gets transferred directly
+     * between their file channels instead, so that the operating system can copy it without involving user space.
+     * Otherwise, if the input and output streams are backed by channels which support vectored I/O, e.g. a
+     * {@link ChannelInputStream} for a socket channel, then the data gets copied with scattering reads and gathering
+     * writes of direct buffers.
+     *
+     * @param source the source for reading the data from.
+     * @param sink the sink for writing the data to.
+     * @param options the options for copying the data.
+     */
+    public static void copy(Source source, Sink sink, CopyOptions options) throws Exception {
+        copy(source, sink, options, null);
+    }
+
+    /**
+     * Copies the data from the given source to the given sink using the given copy options and computes the message
+     * digests or checksums of the data with the given algorithms on the fly.
+     * This saves reading the data once more in order to verify it, e.g. after uploading it to some remote storage.
+     * <p>
+     * Other than {@link #copy(Source, Sink, CopyOptions)}, this method never transfers the data directly between file
+     * channels because the data needs to pass through the buffers in order to compute the digests.
+     *
+     * @param source the source for reading the data from.
+     * @param sink the sink for writing the data to.
+     * @param options the options for copying the data.
+     * @param algorithms the names of the algorithms, which are either {@code "CRC32"}, {@code "CRC32C"} (JDK 9+) or
+     *                   {@code "Adler32"} for a checksum or any standard name of a {@link MessageDigest} algorithm,
+     *                   e.g. {@code "SHA-256"}.
+     * @return the number of bytes copied and the digests of the data.
+     * @throws NoSuchAlgorithmException if any of the given algorithms is not available.
+     * @throws IllegalArgumentException if no algorithm is given.
+     */
+    public static CopyResult copyAndDigest(Source source, Sink sink, CopyOptions options, String... algorithms)
+            throws Exception {
+        final Digester digester = new Digester(algorithms);
+        copy(source, sink, options, digester);
+        return digester.result();
+    }
+
+    /**
+     * Copies the data from the given source to all of the given sinks using the given copy options, reading it only
+     * once.
+     * Equivalent to {@link #fanOut(Source, List, CopyOptions, FanOutPolicy) fanOut(source, sinks, options,
+     * FanOutPolicy.FAIL_FAST)}.
+     *
+     * @param source the source for reading the data from.
+     * @param sinks the sinks for writing the data to.
+     * @param options the options for copying the data.
+     */
+    public static void fanOut(Source source, List<? extends Sink> sinks, CopyOptions options) throws Exception {
+        fanOut(source, sinks, options, FanOutPolicy.FAIL_FAST);
+    }
+
+    /**
+     * Copies the data from the given source to all of the given sinks using the given copy options, reading it only
+     * once.
+     * <p>
+     * The current thread reads each buffer from the source only once, while a separate task per sink concurrently
+     * writes it to the sink.
+     * The tasks get run by the {@linkplain CopyOptions#executor() executor} of the copy options, so it must be able to
+     * run all of them at the same time.
+     * The slowest sink determines the pace of the copy operation, because a buffer can only get reused after it has
+     * been written to all sinks.
+     * The {@linkplain CopyOptions#cancellationToken() cancellation token} and the timeouts get checked between reading
+     * two buffers.
+     * The {@linkplain CopyOptions#rateLimiter() rate limiter} throttles reading the data, so each sink receives it at
+     * the permitted rate.
+     * The {@linkplain CopyOptions#listener() listener} gets notified about the progress whenever a buffer has been read
+     * and about the statistics when all sinks have been closed.
+     * The {@linkplain CopyOptions#directBuffers() direct buffers} option does not apply because the data always gets
+     * copied between streams.
+     *
+     * @param source the source for reading the data from.
+     * @param sinks the sinks for writing the data to.
+     * @param options the options for copying the data.
+     * @param policy the policy for handling a failure to write to a sink.
+     * @return the exceptions which occurred when writing to some sinks, if any.
+     *         This is always empty if the policy is {@link FanOutPolicy#FAIL_FAST}.
+     * @throws IllegalArgumentException if no sinks are given.
+     */
+    public static Map<Sink, Exception> fanOut(Source source,
+                                              List<? extends Sink> sinks,
+                                              CopyOptions options,
+                                              FanOutPolicy policy) throws Exception {
+        return FanOut.copy(source, sinks, options, requireNonNull(policy));
+    }
+
+    /**
+     * Asynchronously copies the entries from the given archive source to the given archive sink using the given copy
+     * options.
+     * Equivalent to {@link #copy(ArchiveSource, ArchiveSink, CopyOptions)}, except that the copy operation gets run by
+     * the {@linkplain CopyOptions#executor() executor} of the copy options and the returned future gets completed when
+     * it's done.
+     * Cancelling the returned future aborts the copy operation like cancelling the
+     * {@linkplain CopyOptions#cancellationToken() cancellation token} of the copy options.
+     *
+     * @param source the archive source to read the entries from.
+     * @param sink the archive sink to write the entries to.
+     * @param options the options for copying the entries.
+     */
+    public static CompletableFuture<Void> copyAsync(ArchiveSource source, ArchiveSink sink, CopyOptions options) {
+        return async(options, o -> copy(source, sink, o));
+    }
+
+    /**
+     * Asynchronously copies the data from the given source to the given sink using the given copy options.
+     * Equivalent to {@link #copy(Source, Sink, CopyOptions)}, except that the copy operation gets run by the
+     * {@linkplain CopyOptions#executor() executor} of the copy options and the returned future gets completed when
+     * it's done.
+     * Cancelling the returned future aborts the copy operation like cancelling the
+     * {@linkplain CopyOptions#cancellationToken() cancellation token} of the copy options.
+     * <p>
+     * The copy operation needs another task for reading the input, so the executor must be able to run both of them at
+     * the same time.
+     * The default executor runs each task in a new virtual thread on JDK 21+, so even thousands of concurrent copy
+     * operations are cheap.
      *
      * @param source the source for reading the data from.
      * @param sink the sink for writing the data to.
+     * @param options the options for copying the data.
      */
-    public static void copy(Source source, Sink sink) throws Exception { copy(source.input(), sink.output()); }
+    public static CompletableFuture<Void> copyAsync(Source source, Sink sink, CopyOptions options) {
+        return async(options, o -> copy(source, sink, o));
+    }
+
+    private static CompletableFuture<Void> async(final CopyOptions options,
+                                                 final XConsumer<CopyOptions> operation) {
+        final CancellationToken token = new CancellationToken(options.cancellationToken());
+        final CopyOptions withToken = options.with(token);
+        return Async.supply(options.executor(), token, () -> {
+            operation.accept(withToken);
+            return null;
+        });
+    }
+
+    private static void copy(final Source source,
+                             final Sink sink,
+                             final CopyOptions options,
+                             final Digester digester) throws Exception {
+        final OptionalLong size = 0 < options.synchronousThreshold() ? size(source) : OptionalLong.empty();
+        observe(options, source.getClass(), sink.getClass(), probe -> {
+            final Watchdog watchdog = Watchdog.of(options);
+            source.input().accept(in -> sink.output().accept(out ->
+                    cat(in, out, size, options, probe, watchdog, digester)));
+        });
+    }
+
+    /** Returns the size of the given source if it's known in advance. */
+    private static OptionalLong size(final Source source) throws IOException {
+        if (source instanceof Store) {
+            return ((Store) source).size();
+        } else if (source instanceof ArchiveEntrySource) {
+            final long size = ((ArchiveEntrySource) source).size();
+            return 0 <= size ? OptionalLong.of(size) : OptionalLong.empty();
+        } else {
+            return OptionalLong.empty();
+        }
+    }
 
     /**
      * Copies the data from the given input stream socket to the given output stream socket.
      * <p>
-     * This is a high performance implementation which uses a pooled background thread to fill a FIFO of pooled buffers
+     * This is a high performance implementation which uses a background thread to fill a FIFO of pooled buffers
      * which is concurrently flushed by the current thread.
      * It performs best when used with <em>unbuffered</em> streams.
      *
@@ -88,7 +326,59 @@ public final class Copy {
      * @param output the output stream socket for writing the data to.
      */
     public static void copy(Socket<? extends InputStream> input, Socket<? extends OutputStream> output) throws Exception {
-        input.accept(in -> output.accept(out -> cat(in, out)));
+        copy(input, output, CopyOptions.defaults());
+    }
+
+    /**
+     * Copies the data from the given input stream socket to the given output stream socket using the given copy
+     * options.
+     * <p>
+     * This is a high performance implementation which uses a background thread to fill a FIFO of pooled buffers
+     * which is concurrently flushed by the current thread.
+     * It performs best when used with <em>unbuffered</em> streams.
+     *
+     * @param input the input stream socket for reading the data from.
+     * @param output the output stream socket for writing the data to.
+     * @param options the options for copying the data.
+     */
+    public static void copy(Socket<? extends InputStream> input,
+                            Socket<? extends OutputStream> output,
+                            CopyOptions options) throws Exception {
+        requireNonNull(options);
+        observe(options, null, null, probe -> {
+            final Watchdog watchdog = Watchdog.of(options);
+            input.accept(in -> output.accept(out ->
+                    cat(in, out, OptionalLong.empty(), options, probe, watchdog, null)));
+        });
+    }
+
+    /**
+     * Runs the given copy operation and reports its statistics to the {@linkplain CopyOptions#listener() listener} of
+     * the given copy options, if any.
+     * The statistics include the time it takes to open and close the streams, because e.g. uploading a file to S3
+     * happens when closing the output stream.
+     *
+     * @param sourceType the type of the source or {@code null} if the type of the input stream should be used instead.
+     * @param sinkType the type of the sink or {@code null} if the type of the output stream should be used instead.
+     */
+    static void observe(final CopyOptions options,
+                                final Class<?> sourceType,
+                                final Class<?> sinkType,
+                                final Operation operation) throws Exception {
+        final Optional<CopyListener> listener = options.listener();
+        if (listener.isPresent()) {
+            final Probe probe = new Probe(listener.get(), sourceType, sinkType);
+            final long start = System.nanoTime();
+            boolean failed = true;
+            try {
+                operation.run(probe);
+                failed = false;
+            } finally {
+                listener.get().completed(probe.statistics(System.nanoTime() - start, failed));
+            }
+        } else {
+            operation.run(null);
+        }
     }
 
     /**
@@ -97,31 +387,203 @@ public final class Copy {
      * stream.
      * This hold true even if an {@link IOException} occurs when reading from the input stream.
      * <p>
-     * This is a high performance implementation which uses a pooled background thread to fill a FIFO of pooled buffers
+     * This is a high performance implementation which uses a background thread to fill a FIFO of pooled buffers
      * which is concurrently flushed by the current thread.
      * It performs best when used with <em>unbuffered</em> streams.
+     * If both streams are backed by a {@link FileChannel}, then the data gets transferred directly between the channels
+     * instead.
+     * This is not possible if any filter streams get in the way.
+     * If the given size of the input is not greater than the {@linkplain CopyOptions#synchronousThreshold() threshold}
+     * or if the input stream never blocks, e.g. because it reads from a byte array, then the data gets copied by the
+     * current thread.
      * <p>
      * The name of this method is inspired by the Unix command line utility {@code cat} because you could use it to
      * con<i>cat</i>enate the contents of multiple streams.
      *
      * @param in the input stream.
      * @param out the output stream.
+     * @param size the size of the input, if known in advance.
+     * @param options the copy options.
+     * @param probe the probe for collecting statistics or {@code null} if there is no copy listener.
+     * @param watchdog the watchdog for aborting the copy operation or {@code null} if it cannot get aborted.
+     * @param digester the digester for computing the digests of the data or {@code null} if there is none.
      */
-    private static void cat(final InputStream in, final OutputStream out) throws IOException {
+    private static void cat(final InputStream in,
+                            final OutputStream out,
+                            final OptionalLong size,
+                            final CopyOptions options,
+                            final Probe probe,
+                            final Watchdog watchdog,
+                            final Digester digester) throws IOException {
         requireNonNull(in);
         requireNonNull(out);
+        if (null != probe) {
+            probe.streams(in, out);
+        }
+        final Optional<ReadableByteChannel> inChannel = channel(in);
+        final Optional<WritableByteChannel> outChannel = channel(out);
+        if (inChannel.isPresent() && outChannel.isPresent()) {
+            final ReadableByteChannel ic = inChannel.get();
+            final WritableByteChannel oc = outChannel.get();
+            if (null == digester && ic instanceof FileChannel && oc instanceof FileChannel
+                    && transfer((FileChannel) ic, (FileChannel) oc, options, probe, watchdog)) {
+                out.flush();
+                return;
+            }
+        }
+        // A blocking read operation can only get aborted if it's executed by the reader thread:
+        final boolean synchronous = nonBlocking(in)
+                || null == watchdog && size.isPresent() && size.getAsLong() <= options.synchronousThreshold();
+        final Buffer[] buffers = Buffer.allocate(synchronous ? 1 : options.fifoSize(), options,
+                vectored(inChannel.orElse(null), outChannel.orElse(null)));
+        try {
+            if (synchronous) {
+                inline(in, out, buffers[0], options.rateLimiter().orElse(null), probe, watchdog, digester);
+            } else {
+                pump(in, out, buffers, options.executor(), options.rateLimiter().orElse(null), probe, watchdog,
+                        digester);
+            }
+        } finally {
+            Buffer.release(buffers);
+        }
+    }
+
+    /**
+     * Returns {@code true} if reading the given input stream never blocks, so that handing it off to a reader thread
+     * would only add latency.
+     */
+    private static boolean nonBlocking(final InputStream in) {
+        return ByteArrayInputStream.class == in.getClass(); // subclasses may have overridden read(...)
+    }
+
+    /**
+     * Returns {@code true} if and only if the given input channel supports scattering reads and the given output
+     * channel supports gathering writes, e.g. if they are file channels or socket channels.
+     */
+    private static boolean vectored(final ReadableByteChannel in, final WritableByteChannel out) {
+        return in instanceof ScatteringByteChannel && out instanceof GatheringByteChannel;
+    }
+
+    private static Optional<ReadableByteChannel> channel(final InputStream in) {
+        if (in instanceof ChannelInputStream) {
+            return Optional.of(((ChannelInputStream) in).channel());
+        } else if (FileInputStream.class == in.getClass()) { // subclasses may have overridden read(...)
+            return Optional.of(((FileInputStream) in).getChannel());
+        } else {
+            return Optional.empty();
+        }
+    }
+
+    private static Optional<WritableByteChannel> channel(final OutputStream out) {
+        if (out instanceof ChannelOutputStream) {
+            return Optional.of(((ChannelOutputStream) out).channel());
+        } else if (FileOutputStream.class == out.getClass()) { // subclasses may have overridden write(...)
+            return Optional.of(((FileOutputStream) out).getChannel());
+        } else {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Transfers the data from the current position of the given input channel up to its end to the given output
+     * channel, so that the operating system can use {@code sendfile}, {@code copy_file_range} et al.
+     * Returns {@code true} if and only if the end of the input channel has been reached.
+     * Otherwise, e.g. if the input channel is a named pipe or if it has been growing concurrently, the caller needs to
+     * copy the remaining data.
+     */
+    private static boolean transfer(final FileChannel in,
+                                    final FileChannel out,
+                                    final CopyOptions options,
+                                    final Probe probe,
+                                    final Watchdog watchdog) throws IOException {
+        final RateLimiter limiter = options.rateLimiter().orElse(null);
+        long position;
+        try {
+            position = in.position();
+        } catch (IOException notSeekable) {
+            return false;
+        }
+        final long start = position;
+        for (long size; position < (size = in.size()); ) {
+            final long count = null != limiter
+                    ? Math.min(size - position, options.bufferSize())
+                    : null != watchdog
+                    ? Math.min(size - position, MAX_WATCHED_TRANSFER_SIZE)
+                    : size - position;
+            if (null != limiter) {
+                throttle(limiter, count, position - start, checkpoint(watchdog));
+            }
+            final long transferred = in.transferTo(position, count, out);
+            if (0 >= transferred) {
+                break;
+            }
+            position += transferred;
+            if (null != probe) {
+                probe.written(transferred);
+            }
+            if (null != watchdog) {
+                watchdog.progress();
+                watchdog.check(position - start);
+            }
+        }
+        in.position(position);
+        return in.size() <= position;
+    }
+
+    /** Copies the data from the given input stream to the given output stream using the current thread only. */
+    private static void inline(final InputStream in,
+                               final OutputStream out,
+                               final Buffer buffer,
+                               final RateLimiter limiter,
+                               final Probe probe,
+                               final Watchdog watchdog,
+                               final Digester digester) throws IOException {
+        long bytes = 0;
+        for (int read; 0 <= (read = buffer.read(in)); ) {
+            if (null != limiter) {
+                throttle(limiter, read, bytes, checkpoint(watchdog));
+            }
+            buffer.write(out, read);
+            if (null != digester) {
+                digester.update(buffer.buf, read);
+            }
+            bytes += read;
+            if (null != probe) {
+                probe.written(read);
+            }
+            if (null != watchdog) {
+                watchdog.progress();
+                watchdog.check(bytes);
+            }
+        }
+        out.flush();
+    }
+
+    private static void pump(final InputStream in,
+                             final OutputStream out,
+                             final Buffer[] buffers,
+                             final Executor executor,
+                             final RateLimiter limiter,
+                             final Probe probe,
+                             final Watchdog watchdog,
+                             final Digester digester) throws IOException {
 
-        // We will use a FIFO to exchange byte buffers between a pooled reader
+        // We will use a FIFO to exchange byte buffers between a reader
         // thread and the current writer thread.
-        // The pooled reader thread will fill the buffers with data from the
+        // The reader thread will fill the buffers with data from the
         // input and the current thread will write the filled buffers to the
         // output.
-        // The FIFO is simply implemented as a cached array or byte buffers
-        // with an offset and a size which is used like a ring buffer.
+        // The FIFO is implemented as a lock-free ring buffer for a single
+        // producer and a single consumer.
+        // If the input and output streams are backed by channels which
+        // support vectored I/O, then the reader thread fills all free buffers
+        // with a single scattering read and the current thread writes all
+        // filled buffers with a single gathering write.
 
-        final Lock lock = new ReentrantLock();
-        final Condition signal = lock.newCondition();
-        final Buffer[] buffers = Buffer.allocate();
+        final Ring<Buffer> ring = new Ring<>(buffers);
+        final ReadableByteChannel inChannel = channel(in).orElse(null);
+        final WritableByteChannel outChannel = channel(out).orElse(null);
+        final boolean vectored = vectored(inChannel, outChannel);
 
         /*
          * The task that cycles through the buffers in order to fill them
@@ -129,118 +591,222 @@ public final class Copy {
          */
         final class ReaderTask implements Runnable {
 
-            /** The index of the next buffer to be written. */
-            private int off;
-
-            /** The number of buffers filled with data to be written. */
-            private int size;
-
             /** The Throwable that happened in this task, if any. */
             private volatile Throwable exception;
 
+            /** The time this task has been waiting for a free buffer. */
+            private long waitNanos;
+
+            /** Whether or not this task has been cancelled. */
+            private volatile boolean cancelled;
+
+            /** The thread running this task, if any. */
+            private Thread thread;
+
+            private final CountDownLatch done = new CountDownLatch(1);
+
             @Override
             public void run() {
-                final int buffersLength = buffers.length;
+                synchronized (this) {
+                    thread = Thread.currentThread();
+                }
+                try {
+                    if (!cancelled) {
+                        loop();
+                    }
+                } finally {
+                    synchronized (this) {
+                        thread = null;
+                        Thread.interrupted(); // clear any interrupt before returning the thread to its pool
+                    }
+                    done.countDown();
+                }
+            }
 
-                // The writer executor interrupts this executor to signal
+            private void loop() {
+                // The writer thread interrupts this thread to signal
                 // that it cannot handle more input because there has been
-                // an IOException during writing.
+                // an IOException during writing or the copy operation has
+                // been aborted.
                 // We stop processing in this case.
+                final ByteBuffer[] batch = vectored ? new ByteBuffer[buffers.length] : null;
                 int read;
                 do {
                     // Wait until a buffer is available.
                     final Buffer buffer;
-                    lock.lock();
+                    final long start = null != probe ? System.nanoTime() : 0;
                     try {
-                        while (size >= buffersLength) {
-                            try {
-                                signal.await();
-                            } catch (InterruptedException cancel) {
-                                return;
-                            }
-                        }
-                        buffer = buffers[(off + size) % buffersLength];
-                    } finally {
-                        lock.unlock();
+                        buffer = ring.claim();
+                    } catch (InterruptedException cancel) {
+                        return;
+                    }
+                    if (null != probe) {
+                        waitNanos += System.nanoTime() - start;
                     }
 
                     // Fill buffer until end of file or buffer.
                     // This should normally complete in one loop cycle, but
                     // we do not depend on this as it would be a violation
                     // of InputStream's contract.
+                    int count = 1;
                     try {
-                        final byte[] buf = buffer.buf;
-                        read = in.read(buf, 0, buf.length);
+                        if (null != batch) {
+                            count = scatter(batch);
+                        } else {
+                            buffer.read = buffer.read(in);
+                        }
                     } catch (final Throwable ex) {
                         exception = ex;
-                        read = -1;
+                        buffer.read = -1;
+                        count = 1;
                     }
-                    buffer.read = read;
+                    read = buffer.read;
 
                     // Advance head and signal writer.
-                    lock.lock();
-                    try {
-                        size++;
-                        signal.signal(); // only the writer could be waiting now!
-                    } finally {
-                        lock.unlock();
-                    }
+                    ring.publish(count);
                 } while (0 <= read);
             }
+
+            /**
+             * Fills the free buffers with a single scattering read from the input channel and returns the number of
+             * buffers to publish.
+             */
+            private int scatter(final ByteBuffer[] batch) throws IOException {
+                final int free = ring.free();
+                for (int i = 0; i < free; i++) {
+                    batch[i] = ring.claimAhead(i).clear();
+                }
+                long read;
+                while (0 == (read = ((ScatteringByteChannel) inChannel).read(batch, 0, free))) {
+                    Thread.yield(); // should not happen with a blocking channel
+                }
+                if (0 > read) {
+                    ring.claimAhead(0).read = -1;
+                    return 1;
+                }
+                int count = 0;
+                for (Buffer buffer; count < free && 0 < (buffer = ring.claimAhead(count)).buf.position(); count++) {
+                    buffer.read = buffer.buf.position();
+                }
+                return count;
+            }
+
+            /**
+             * Cancels this task and waits until it has terminated or the given timeout has elapsed.
+             * Waiting for the termination of this task is required so that a re-entry to the cat(...) method by the
+             * same thread cannot concurrently access the same pooled buffers that an unfinished reader thread of a
+             * previous call may still be using.
+             * Returns {@code true} if and only if this task has terminated.
+             */
+            boolean cancel(final long timeoutNanos) {
+                cancelled = true;
+                synchronized (this) {
+                    if (null != thread) {
+                        thread.interrupt();
+                    }
+                }
+                final long deadline = System.nanoTime() + timeoutNanos;
+                boolean interrupted = false;
+                try {
+                    while (true) {
+                        try {
+                            if (Long.MAX_VALUE == timeoutNanos) {
+                                done.await();
+                                return true;
+                            } else {
+                                return done.await(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                            }
+                        } catch (InterruptedException e) {
+                            interrupted = true;
+                        }
+                    }
+                } finally {
+                    if (interrupted)
+                        Thread.currentThread().interrupt(); // restore
+                }
+            }
         }
 
-        boolean interrupted = false;
         try {
             final ReaderTask reader = new ReaderTask();
-            final Future<?> result = executor.submit(reader);
-
-            // Cache some data for better performance.
-            final int buffersLength = buffers.length;
+            executor.execute(reader);
+            final ByteBuffer[] batch = vectored ? new ByteBuffer[buffers.length] : null;
+            final Checkpoint checkpoint = null == watchdog ? null : bytes -> {
+                watchdog.progress(); // being throttled is not being idle
+                check(watchdog, bytes, in, reader::cancel, buffers);
+            };
 
-            int write;
+            long bytes = 0;
             while (true) {
                 // Wait until a buffer is available.
-                final int off;
+                final long start = null != probe ? System.nanoTime() : 0;
                 final Buffer buffer;
-                lock.lock();
-                try {
-                    while (0 >= reader.size) {
-                        try {
-                            signal.await();
-                        } catch (InterruptedException interrupt) {
-                            interrupted = true;
-                        }
+                if (null == watchdog) {
+                    buffer = ring.peek();
+                } else {
+                    Buffer next;
+                    while (null == (next = ring.peek(Watchdog.SLICE_NANOS))) {
+                        check(watchdog, bytes, in, reader::cancel, buffers);
                     }
-                    off = reader.off;
-                    buffer = buffers[off];
-                } finally {
-                    lock.unlock();
+                    watchdog.progress();
+                    buffer = next;
+                }
+                if (null != probe) {
+                    probe.writerWaitNanos += System.nanoTime() - start;
                 }
 
                 // Stop on last buffer.
-                write = buffer.read;
-                if (0 > write)
+                if (0 > buffer.read)
                     break; // reader has terminated because of EOF or exception
 
-                // Process buffer.
+                // Gather any subsequent buffers which are ready, too.
+                int count = 1;
+                long write = buffer.read;
+                if (null != batch) {
+                    for (final int ready = ring.ready(); count < ready; count++) {
+                        final Buffer next = ring.peekAhead(count);
+                        if (0 > next.read)
+                            break;
+                        write += next.read;
+                    }
+                }
+
+                // Process buffers.
+                if (null != limiter) {
+                    throttle(limiter, write, bytes, checkpoint);
+                }
                 try {
-                    out.write(buffer.buf, 0, write);
+                    if (1 == count) {
+                        buffer.write(out, buffer.read);
+                    } else {
+                        gather(ring, count, write, batch, (GatheringByteChannel) outChannel);
+                    }
                 } catch (final IOException ex) {
-                    cancel(result);
+                    abort(reader::cancel, buffers);
                     throw ex;
                 }
+                if (null != digester) {
+                    for (int i = 0; i < count; i++) {
+                        final Buffer next = ring.peekAhead(i);
+                        digester.update(next.buf, next.read);
+                    }
+                }
+                bytes += write;
+                if (null != probe) {
+                    probe.written(write);
+                }
 
                 // Advance tail and signal reader.
-                lock.lock();
-                try {
-                    reader.off = (off + 1) % buffersLength;
-                    reader.size--;
-                    signal.signal(); // only the reader could be waiting now!
-                } finally {
-                    lock.unlock();
+                ring.release(count);
+
+                if (null != watchdog) {
+                    check(watchdog, bytes, in, reader::cancel, buffers);
                 }
             }
             out.flush();
+            if (null != probe) {
+                probe.readerWaitNanos += reader.waitNanos; // visible because the reader has published the last buffer
+            }
 
             final Throwable t = reader.exception;
             if (null != t) {
@@ -251,79 +817,257 @@ public final class Copy {
                 throw (Error) t;
             }
         } finally {
-            if (interrupted)
+            if (ring.consumerInterrupted())
                 Thread.currentThread().interrupt(); // restore
-            Buffer.release(buffers);
         }
     }
 
     /**
-     * Cancels the reader thread synchronously.
-     * Synchronous cancellation of the reader thread is required so that a re-entry to the cat(...) method by the same
-     * thread cannot concurrently access the same shared buffers that an unfinished reader thread of a previous call may
-     * still be using.
+     * Writes the given number of buffers which are ready in the given ring with a single gathering write to the given
+     * output channel.
+     *
+     * @param length the total number of bytes in the buffers.
      */
-    private static void cancel(final Future<?> result) {
-        result.cancel(true);
-        boolean interrupted = false;
+    private static void gather(final Ring<Buffer> ring,
+                               final int count,
+                               final long length,
+                               final ByteBuffer[] batch,
+                               final GatheringByteChannel channel) throws IOException {
+        for (int i = 0; i < count; i++) {
+            final Buffer buffer = ring.peekAhead(i);
+            final ByteBuffer buf = buffer.buf;
+            buf.limit(buffer.read);
+            buf.position(0);
+            batch[i] = buf;
+        }
+        for (long remaining = length; 0 < remaining; ) {
+            remaining -= channel.write(batch, 0, count);
+        }
+    }
+
+    /**
+     * Checks the given watchdog and aborts the copy operation if it has been cancelled or has timed out.
+     * Aborting cancels the reader task and closes the input stream once the reader task has terminated.
+     * The input stream never gets closed while the reader task may still be reading it because the input stream may
+     * own pooled resources, e.g. an inflater or buffers, which would otherwise get reused by another stream while the
+     * reader task is still using them.
+     *
+     * @see #abort(Cancellable, Buffer[])
+     */
+    private static void check(final Watchdog watchdog,
+                              final long bytes,
+                              final InputStream in,
+                              final Cancellable reader,
+                              final Buffer[] buffers) throws InterruptedIOException {
         try {
-            while (true) {
+            watchdog.check(bytes);
+        } catch (final InterruptedIOException e) {
+            if (abort(reader, buffers)) {
                 try {
-                    result.get();
-                    break;
-                } catch (CancellationException cancelled) {
-                    break;
-                } catch (ExecutionException cannotHappen) {
-                    throw new AssertionError(cannotHappen);
-                } catch (InterruptedException interrupt) {
-                    interrupted = true;
+                    in.close();
+                } catch (IOException | RuntimeException ex) {
+                    e.addSuppressed(ex);
                 }
             }
+            throw e;
+        }
+    }
+
+    /**
+     * Cancels the given reader task and waits up to {@link #ABORT_TIMEOUT_NANOS} for its termination.
+     * If the reader task does not terminate in time, e.g. because it's stuck in a read operation which does not
+     * respond to interruption, then the buffers get abandoned instead of being returned to the pool because the reader
+     * thread may still be using them.
+     * Returns {@code true} if and only if the reader task has terminated.
+     */
+    private static boolean abort(final Cancellable reader, final Buffer[] buffers) {
+        if (reader.cancel(ABORT_TIMEOUT_NANOS)) {
+            return true;
+        }
+        for (final Buffer buffer : buffers) {
+            buffer.abandoned = true;
+        }
+        return false;
+    }
+
+    /** Returns a checkpoint for the given watchdog or {@code null} if the given watchdog is {@code null}. */
+    static Checkpoint checkpoint(final Watchdog watchdog) {
+        return null == watchdog ? null : bytes -> {
+            watchdog.progress(); // being throttled is not being idle
+            watchdog.check(bytes);
+        };
+    }
+
+    /**
+     * Waits until the given rate limiter permits writing the given number of bytes.
+     * While waiting, the given checkpoint gets called periodically, unless it's {@code null}.
+     *
+     * @param count the number of bytes to write next.
+     * @param bytes the number of bytes written so far.
+     */
+    static void throttle(final RateLimiter limiter,
+                                 final long count,
+                                 final long bytes,
+                                 final Checkpoint checkpoint) throws InterruptedIOException {
+        long remaining = limiter.reserve(count);
+        if (0 >= remaining) {
+            return;
+        }
+        final long deadline = System.nanoTime() + remaining;
+        boolean interrupted = false;
+        try {
+            do {
+                LockSupport.parkNanos(null == checkpoint ? remaining : Math.min(remaining, Watchdog.SLICE_NANOS));
+                if (Thread.interrupted()) {
+                    interrupted = true;
+                }
+                if (null != checkpoint) {
+                    checkpoint.check(bytes);
+                }
+            } while (0 < (remaining = deadline - System.nanoTime()));
         } finally {
             if (interrupted)
                 Thread.currentThread().interrupt(); // restore
         }
     }
 
-    /** A buffer for I/O. */
-    private static final class Buffer {
+    /** A check which is periodically run while waiting. */
+    @FunctionalInterface
+    interface Checkpoint {
 
-        /**
-         * Each entry in this queue holds a soft reference to an array
-         * initialized with instances of this class.
-         */
-        static final Queue<Reference<Buffer[]>> queue
-                = new ConcurrentLinkedQueue<>();
-
-        static Buffer[] allocate() {
-            {
-                Reference<Buffer[]> reference;
-                while (null != (reference = queue.poll())) {
-                    final Buffer[] buffers = reference.get();
-                    if (null != buffers)
-                        return buffers;
-                }
+        void check(long bytes) throws InterruptedIOException;
+    }
+
+    /** A task which can get cancelled. */
+    @FunctionalInterface
+    private interface Cancellable {
+
+        boolean cancel(long timeoutNanos);
+    }
+
+    /** A copy operation. */
+    @FunctionalInterface
+    interface Operation {
+
+        void run(Probe probe) throws Exception;
+    }
+
+    /** Collects the statistics of a copy operation. */
+    static final class Probe {
+
+        final CopyListener listener;
+        Class<?> sourceType, sinkType;
+        long bytes, chunks, readerWaitNanos, writerWaitNanos;
+
+        Probe(final CopyListener listener, final Class<?> sourceType, final Class<?> sinkType) {
+            this.listener = listener;
+            this.sourceType = sourceType;
+            this.sinkType = sinkType;
+        }
+
+        void streams(final InputStream in, final OutputStream out) {
+            if (null == sourceType) {
+                sourceType = in.getClass();
+            }
+            if (null == sinkType) {
+                sinkType = out.getClass();
             }
+        }
 
-            final Buffer[] buffers = new Buffer[FIFO_SIZE];
-            for (int i = buffers.length; 0 <= --i; )
-                buffers[i] = new Buffer();
+        void written(final long bytes) {
+            this.bytes += bytes;
+            chunks++;
+            listener.progress(bytes);
+        }
+
+        CopyStatistics statistics(final long wallNanos, final boolean failed) {
+            return new CopyStatistics(
+                    null != sourceType ? sourceType : Socket.class, // failed to open the input stream
+                    null != sinkType ? sinkType : Socket.class, // failed to open the output stream
+                    bytes, chunks, readerWaitNanos, writerWaitNanos, wallNanos, failed);
+        }
+    }
+
+    /** A buffer for I/O. */
+    private static final class Buffer {
+
+        static Buffer[] allocate(final int count, final CopyOptions options, final boolean channels) {
+            final BufferArena arena = channels && options.directBuffers() ? BufferArena.direct() : BufferArena.heap();
+            final Buffer[] buffers = new Buffer[count];
+            for (int i = count; 0 <= --i; )
+                buffers[i] = new Buffer(arena, options.bufferSize());
             return buffers;
         }
 
-        static void release(Buffer[] buffers) {
-            //queue.push(new SoftReference<>(buffers));
-            queue.add(new SoftReference<>(buffers));
+        static void release(final Buffer[] buffers) {
+            for (final Buffer buffer : buffers)
+                if (!buffer.abandoned)
+                    buffer.arena.release(buffer.buf);
         }
 
-        /** The byte buffer used for reading and writing. */
-        final byte[] buf = new byte[Store.BUFSIZE];
+        /** The arena this buffer has been acquired from. */
+        final BufferArena arena;
+
+        /**
+         * The byte buffer used for reading and writing.
+         * Its capacity may exceed the requested {@link #size}, but the extra capacity never gets used.
+         */
+        final ByteBuffer buf;
+
+        /** The requested size of this buffer. */
+        final int size;
 
         /**
          * The actual number of bytes read into the buffer.
          * -1 represents end-of-file or {@link IOException}.
          */
         int read;
+
+        /** Whether or not this buffer may still be in use by a reader thread which could not get cancelled. */
+        boolean abandoned;
+
+        Buffer(final BufferArena arena, final int size) {
+            this.arena = arena;
+            this.buf = arena.acquire(size);
+            this.size = size;
+        }
+
+        /** Clears the byte buffer and limits it to the requested size. */
+        ByteBuffer clear() {
+            final ByteBuffer buf = this.buf;
+            buf.clear();
+            buf.limit(size);
+            return buf;
+        }
+
+        /** Fills this buffer with data from the given input stream. */
+        int read(final InputStream in) throws IOException {
+            final ByteBuffer buf = clear();
+            if (buf.hasArray()) {
+                return in.read(buf.array(), buf.arrayOffset(), size);
+            } else {
+                final ReadableByteChannel channel = channel(in).orElseThrow(AssertionError::new);
+                int read;
+                while (0 == (read = channel.read(buf))) {
+                    Thread.yield(); // should not happen with a blocking channel
+                }
+                return read;
+            }
+        }
+
+        /** Writes the given number of bytes from this buffer to the given output stream. */
+        void write(final OutputStream out, final int length) throws IOException {
+            final ByteBuffer buf = this.buf;
+            if (buf.hasArray()) {
+                out.write(buf.array(), buf.arrayOffset(), length);
+            } else {
+                final WritableByteChannel channel = channel(out).orElseThrow(AssertionError::new);
+                buf.limit(length).position(0);
+                while (buf.hasRemaining()) {
+                    channel.write(buf);
+                }
+            }
+        }
     }
 
     /** A factory for reader threads. */
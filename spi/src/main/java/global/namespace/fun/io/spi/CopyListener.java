@@ -0,0 +1,37 @@
+/*
+ * Copyright © 2017 - 2020 Schlichtherle IT Services
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package global.namespace.fun.io.spi;
+
+/**
+ * Listens to the progress and the statistics of copy operations.
+ * A copy listener may get called by multiple threads concurrently, so it needs to be thread-safe.
+ * It should also return quickly and must not throw any exceptions.
+ *
+ * @see CopyOptions#listener()
+ * @author Christian Schlichtherle
+ */
+public interface CopyListener {
+
+    /**
+     * Called by the writing thread whenever the given number of bytes has been written to the output stream.
+     * The default implementation does nothing.
+     */
+    default void progress(long bytes) {
+    }
+
+    /** Called when a copy operation has completed, whether successfully or not. */
+    void completed(CopyStatistics statistics);
+}
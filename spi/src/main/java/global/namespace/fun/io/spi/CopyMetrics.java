@@ -0,0 +1,144 @@
+/*
+ * Copyright © 2017 - 2020 Schlichtherle IT Services
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package global.namespace.fun.io.spi;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A copy listener which aggregates the statistics of copy operations per pair of source type and sink type.
+ * For example, this tells if uploading to S3 or compressing the data is the bottleneck without attaching a profiler:
+ * <pre>{@code
+ * CopyMetrics metrics = new CopyMetrics();
+ * CopyOptions options = CopyOptions.builder().listener(metrics).build();
+ * ...
+ * metrics.summaries().forEach(System.out::println);
+ * }</pre>
+ *
+ * @author Christian Schlichtherle
+ */
+public final class CopyMetrics implements CopyListener {
+
+    private final ConcurrentMap<List<Class<?>>, Accumulator> accumulators = new ConcurrentHashMap<>();
+
+    @Override
+    public void completed(final CopyStatistics statistics) {
+        accumulators
+                .computeIfAbsent(Arrays.asList(statistics.sourceType(), statistics.sinkType()), key -> new Accumulator())
+                .add(statistics);
+    }
+
+    /** Returns a snapshot of the summaries of all copy operations so far. */
+    public Collection<Summary> summaries() {
+        final List<Summary> summaries = new ArrayList<>(accumulators.size());
+        accumulators.forEach((key, accumulator) -> summaries.add(accumulator.summary(key.get(0), key.get(1))));
+        return summaries;
+    }
+
+    /** Clears all summaries. */
+    public void reset() { accumulators.clear(); }
+
+    private static final class Accumulator {
+
+        final LongAdder operations = new LongAdder(), failures = new LongAdder(), bytes = new LongAdder(),
+                chunks = new LongAdder(), readerWaitNanos = new LongAdder(), writerWaitNanos = new LongAdder(),
+                wallNanos = new LongAdder();
+
+        void add(final CopyStatistics s) {
+            operations.increment();
+            if (s.failed()) {
+                failures.increment();
+            }
+            bytes.add(s.bytes());
+            chunks.add(s.chunks());
+            readerWaitNanos.add(s.readerWaitNanos());
+            writerWaitNanos.add(s.writerWaitNanos());
+            wallNanos.add(s.wallNanos());
+        }
+
+        Summary summary(final Class<?> sourceType, final Class<?> sinkType) {
+            return new Summary(sourceType, sinkType, operations.sum(), failures.sum(), bytes.sum(), chunks.sum(),
+                    readerWaitNanos.sum(), writerWaitNanos.sum(), wallNanos.sum());
+        }
+    }
+
+    /** A Value Object with the aggregated statistics of the copy operations for a pair of source and sink types. */
+    public static final class Summary {
+
+        private final Class<?> sourceType, sinkType;
+        private final long operations, failures, bytes, chunks, readerWaitNanos, writerWaitNanos, wallNanos;
+
+        Summary(final Class<?> sourceType,
+                final Class<?> sinkType,
+                final long operations,
+                final long failures,
+                final long bytes,
+                final long chunks,
+                final long readerWaitNanos,
+                final long writerWaitNanos,
+                final long wallNanos) {
+            this.sourceType = sourceType;
+            this.sinkType = sinkType;
+            this.operations = operations;
+            this.failures = failures;
+            this.bytes = bytes;
+            this.chunks = chunks;
+            this.readerWaitNanos = readerWaitNanos;
+            this.writerWaitNanos = writerWaitNanos;
+            this.wallNanos = wallNanos;
+        }
+
+        /** Returns the type of the sources. */
+        public Class<?> sourceType() { return sourceType; }
+
+        /** Returns the type of the sinks. */
+        public Class<?> sinkType() { return sinkType; }
+
+        /** Returns the number of copy operations. */
+        public long operations() { return operations; }
+
+        /** Returns the number of failed copy operations. */
+        public long failures() { return failures; }
+
+        /** Returns the total number of bytes written. */
+        public long bytes() { return bytes; }
+
+        /** Returns the total number of chunks written. */
+        public long chunks() { return chunks; }
+
+        /** Returns the total time the readers have been waiting for the writers, in nanoseconds. */
+        public long readerWaitNanos() { return readerWaitNanos; }
+
+        /** Returns the total time the writers have been waiting for the readers, in nanoseconds. */
+        public long writerWaitNanos() { return writerWaitNanos; }
+
+        /** Returns the total time of the copy operations, in nanoseconds. */
+        public long wallNanos() { return wallNanos; }
+
+        /** Returns the average throughput of the copy operations in bytes per second. */
+        public double bytesPerSecond() { return 0 == wallNanos ? 0 : bytes * 1e9 / wallNanos; }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ENGLISH,
+                    "%s -> %s: operations=%d, failures=%d, bytes=%d, chunks=%d, readerWait=%.3fs, writerWait=%.3fs, wall=%.3fs, throughput=%.0fB/s",
+                    sourceType.getName(), sinkType.getName(), operations, failures, bytes, chunks,
+                    readerWaitNanos / 1e9, writerWaitNanos / 1e9, wallNanos / 1e9, bytesPerSecond());
+        }
+    }
+}
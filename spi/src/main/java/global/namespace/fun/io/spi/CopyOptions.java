@@ -0,0 +1,332 @@
+/*
+ * Copyright © 2017 - 2020 Schlichtherle IT Services
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package global.namespace.fun.io.spi;
+
+import global.namespace.fun.io.api.ArchiveInputStream;
+import global.namespace.fun.io.api.ArchiveOutputStream;
+import global.namespace.fun.io.api.Store;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+
+import static java.util.Objects.requireNonNull;
+import static java.util.Optional.empty;
+
+/**
+ * A Value Object which configures the engine of the {@link Copy} functions.
+ * Use the {@link #builder()} to create a custom configuration or {@link #defaults()} for the default configuration.
+ *
+ * @author Christian Schlichtherle
+ */
+public final class CopyOptions {
+
+    private static final long SYNCHRONOUS_THRESHOLD = 64 * 1024;
+
+    private static final CopyOptions DEFAULTS = builder().build();
+
+    private final int bufferSize, fifoSize, parallelism;
+
+    private final Executor executor;
+
+    private final boolean directBuffers;
+
+    private final long synchronousThreshold;
+
+    @SuppressWarnings("OptionalUsedAsFieldOrParameterType")
+    private final Optional<CopyListener> listener;
+
+    @SuppressWarnings("OptionalUsedAsFieldOrParameterType")
+    private final Optional<CancellationToken> cancellationToken;
+
+    @SuppressWarnings("OptionalUsedAsFieldOrParameterType")
+    private final Optional<Duration> timeout, idleTimeout;
+
+    @SuppressWarnings("OptionalUsedAsFieldOrParameterType")
+    private final Optional<RateLimiter> rateLimiter;
+
+    private CopyOptions(final Builder b) {
+        this.bufferSize = b.bufferSize;
+        this.fifoSize = b.fifoSize;
+        this.executor = b.executor.orElseGet(Copy::defaultExecutor);
+        this.directBuffers = b.directBuffers;
+        this.synchronousThreshold = b.synchronousThreshold;
+        this.parallelism = b.parallelism;
+        this.listener = b.listener;
+        this.cancellationToken = b.cancellationToken;
+        this.timeout = b.timeout;
+        this.idleTimeout = b.idleTimeout;
+        this.rateLimiter = b.rateLimiter;
+    }
+
+    /** Returns a copy of these copy options with the given cancellation token. */
+    CopyOptions with(final CancellationToken cancellationToken) {
+        final Builder b = builder()
+                .bufferSize(bufferSize)
+                .fifoSize(fifoSize)
+                .executor(executor)
+                .directBuffers(directBuffers)
+                .synchronousThreshold(synchronousThreshold)
+                .parallelism(parallelism)
+                .cancellationToken(cancellationToken);
+        b.listener = listener;
+        b.timeout = timeout;
+        b.idleTimeout = idleTimeout;
+        b.rateLimiter = rateLimiter;
+        return b.build();
+    }
+
+    /**
+     * Returns the default copy options.
+     * These use a FIFO of four buffers with {@value Store#BUFSIZE} bytes each and a shared executor for reading the
+     * input, which runs each task in a new virtual thread on JDK 21+ or in a cached daemon thread on older JVMs.
+     * The buffers get allocated outside of the heap if both the input and the output stream are backed by channels
+     * which support vectored I/O, and on the heap otherwise.
+     * However, inputs of up to 64 KiB get copied synchronously by the current thread.
+     */
+    public static CopyOptions defaults() { return DEFAULTS; }
+
+    /** Returns a new builder for copy options, initialized with the {@linkplain #defaults() default values}. */
+    public static Builder builder() { return new Builder(); }
+
+    /** Returns the size of each buffer in the FIFO in bytes. */
+    public int bufferSize() { return bufferSize; }
+
+    /** Returns the number of buffers in the FIFO. */
+    public int fifoSize() { return fifoSize; }
+
+    /** Returns the executor for running the tasks which read the input. */
+    public Executor executor() { return executor; }
+
+    /**
+     * Returns {@code true} if and only if the buffers should get allocated outside of the heap.
+     * This is only effective if both the input and the output stream are backed by channels which support vectored
+     * I/O, e.g. file channels or socket channels, because otherwise the data would need to get copied between the heap
+     * and the native memory once more.
+     */
+    public boolean directBuffers() { return directBuffers; }
+
+    /**
+     * Returns the maximum size of the input in bytes which gets copied synchronously by the current thread, that is
+     * without handing it off to a reader thread.
+     * This is only effective if the size of the input is known in advance, e.g. when copying from a {@link Store}.
+     * Regardless of this threshold, inputs which never block, e.g. {@link java.io.ByteArrayInputStream}s, always get
+     * copied synchronously.
+     */
+    public long synchronousThreshold() { return synchronousThreshold; }
+
+    /**
+     * Returns the maximum number of archive entries which get copied concurrently when copying an archive.
+     * This is only effective if the archive input supports {@linkplain ArchiveInputStream#isConcurrent() concurrent
+     * reads}.
+     * If the archive output supports {@linkplain ArchiveOutputStream#isConcurrent() concurrent writes} too, then the
+     * archive entries get copied concurrently.
+     * Otherwise, the archive entries get read ahead concurrently into temporary buffers and written in their original
+     * order by the current thread.
+     */
+    public int parallelism() { return parallelism; }
+
+    /** Returns the listener which gets notified about the progress and the statistics of each copy operation, if any. */
+    public Optional<CopyListener> listener() { return listener; }
+
+    /** Returns the token for cancelling the copy operations, if any. */
+    public Optional<CancellationToken> cancellationToken() { return cancellationToken; }
+
+    /** Returns the maximum duration of each copy operation, if any. */
+    public Optional<Duration> timeout() { return timeout; }
+
+    /**
+     * Returns the maximum duration of each copy operation without making any progress, that is without reading any data
+     * from the input, if any.
+     */
+    public Optional<Duration> idleTimeout() { return idleTimeout; }
+
+    /** Returns the rate limiter for throttling the copy operations, if any. */
+    public Optional<RateLimiter> rateLimiter() { return rateLimiter; }
+
+    /** A builder for copy options. */
+    @SuppressWarnings("OptionalUsedAsFieldOrParameterType")
+    public static final class Builder {
+
+        private int bufferSize = Store.BUFSIZE, fifoSize = 4;
+
+        private Optional<Executor> executor = empty();
+
+        private boolean directBuffers = true;
+
+        private long synchronousThreshold = SYNCHRONOUS_THRESHOLD;
+
+        private int parallelism = 1;
+
+        private Optional<CopyListener> listener = empty();
+
+        private Optional<CancellationToken> cancellationToken = empty();
+
+        private Optional<Duration> timeout = empty(), idleTimeout = empty();
+
+        private Optional<RateLimiter> rateLimiter = empty();
+
+        private Builder() { }
+
+        /** Sets the size of each buffer in the FIFO in bytes. The default value is {@value Store#BUFSIZE}. */
+        public Builder bufferSize(final int bufferSize) {
+            if (0 >= bufferSize) {
+                throw new IllegalArgumentException(bufferSize + " is not a positive buffer size.");
+            }
+            this.bufferSize = bufferSize;
+            return this;
+        }
+
+        /**
+         * Sets the number of buffers in the FIFO.
+         * A minimum of two buffers is required.
+         * The default value is four, which compensates for oscillating I/O bandwidths like e.g. with network shares.
+         */
+        public Builder fifoSize(final int fifoSize) {
+            if (2 > fifoSize) {
+                throw new IllegalArgumentException(fifoSize + " is less than the minimum FIFO size of two buffers.");
+            }
+            this.fifoSize = fifoSize;
+            return this;
+        }
+
+        /**
+         * Sets the executor for running the tasks which read the input.
+         * The executor must run each task asynchronously, that is in another thread than the calling thread, or
+         * otherwise the copy operation would deadlock.
+         * It must also never run out of threads for the same reason.
+         * The default value is a shared executor which runs each task in a new virtual thread on JDK 21+ or in a
+         * cached daemon thread on older JVMs.
+         * Set this to {@code Executors.newCachedThreadPool()} or similar to opt out of virtual threads.
+         */
+        public Builder executor(final Executor executor) {
+            this.executor = Optional.of(executor);
+            return this;
+        }
+
+        /**
+         * Sets whether the buffers should get allocated outside of the heap.
+         * The default value is {@code true}.
+         *
+         * @see #directBuffers()
+         */
+        public Builder directBuffers(final boolean directBuffers) {
+            this.directBuffers = directBuffers;
+            return this;
+        }
+
+        /**
+         * Sets the maximum size of the input in bytes which gets copied synchronously by the current thread.
+         * The default value is 64 KiB.
+         * Zero disables this feature, which saves the effort to determine the size of the input in advance.
+         *
+         * @see #synchronousThreshold()
+         */
+        public Builder synchronousThreshold(final long synchronousThreshold) {
+            if (0 > synchronousThreshold) {
+                throw new IllegalArgumentException(synchronousThreshold + " is a negative threshold.");
+            }
+            this.synchronousThreshold = synchronousThreshold;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of archive entries which get copied concurrently when copying an archive.
+         * The tasks for copying the archive entries get run by the {@linkplain #executor(Executor) executor}, too.
+         * The default value is one, which means that the archive entries get copied one after another.
+         *
+         * @see #parallelism()
+         */
+        public Builder parallelism(final int parallelism) {
+            if (0 >= parallelism) {
+                throw new IllegalArgumentException(parallelism + " is not a positive parallelism.");
+            }
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        /**
+         * Sets the listener which gets notified about the progress and the statistics of each copy operation.
+         * By default, there is no listener.
+         *
+         * @see CopyMetrics
+         */
+        public Builder listener(final CopyListener listener) {
+            this.listener = Optional.of(listener);
+            return this;
+        }
+
+        /**
+         * Sets the token for cancelling the copy operations.
+         * If the token gets cancelled, then any copy operation which is in progress gets aborted as soon as possible
+         * and throws an {@link java.io.InterruptedIOException}.
+         * Aborting a copy operation interrupts the reader thread in order to unblock any read operation which is stuck.
+         * A read operation which does not respond to interruption, e.g. when reading from a socket, gets unblocked
+         * when the input stream gets closed after the copy operation has been aborted.
+         * By default, there is no cancellation token.
+         */
+        public Builder cancellationToken(final CancellationToken cancellationToken) {
+            this.cancellationToken = Optional.of(cancellationToken);
+            return this;
+        }
+
+        /**
+         * Sets the maximum duration of each copy operation, starting before opening the streams.
+         * If a copy operation takes longer than this, then it gets aborted like when cancelling it.
+         * Note that the timeout is only enforced while the data is getting copied, not while opening or closing the
+         * streams.
+         * By default, there is no timeout.
+         *
+         * @see #cancellationToken(CancellationToken)
+         */
+        public Builder timeout(final Duration timeout) {
+            this.timeout = Optional.of(requirePositive(timeout));
+            return this;
+        }
+
+        /**
+         * Sets the maximum duration of each copy operation without reading any data from the input.
+         * If a copy operation is idle for longer than this, then it gets aborted like when cancelling it.
+         * By default, there is no idle timeout.
+         *
+         * @see #cancellationToken(CancellationToken)
+         */
+        public Builder idleTimeout(final Duration idleTimeout) {
+            this.idleTimeout = Optional.of(requirePositive(idleTimeout));
+            return this;
+        }
+
+        /**
+         * Sets the rate limiter for throttling the copy operations.
+         * Share the same rate limiter between the copy options for multiple copy operations in order to limit their
+         * combined throughput.
+         * By default, there is no rate limiter.
+         */
+        public Builder rateLimiter(final RateLimiter rateLimiter) {
+            this.rateLimiter = Optional.of(rateLimiter);
+            return this;
+        }
+
+        private static Duration requirePositive(final Duration duration) {
+            if (duration.isNegative() || duration.isZero()) {
+                throw new IllegalArgumentException(duration + " is not a positive duration.");
+            }
+            return duration;
+        }
+
+        public CopyOptions build() { return new CopyOptions(this); }
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright © 2017 - 2020 Schlichtherle IT Services
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package global.namespace.fun.io.spi;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A Value Object which holds the result of {@link Copy#copyAndDigest}, that is the number of bytes copied and the
+ * message digests or checksums of the data.
+ *
+ * @author Christian Schlichtherle
+ */
+public final class CopyResult {
+
+    private final long size;
+    private final Map<String, byte[]> digests;
+
+    CopyResult(final long size, final Map<String, byte[]> digests) {
+        this.size = size;
+        this.digests = Collections.unmodifiableMap(digests);
+    }
+
+    /** Returns the number of bytes copied. */
+    public long size() { return size; }
+
+    /** Returns the names of the algorithms in the order they were given to {@link Copy#copyAndDigest}. */
+    public Set<String> algorithms() { return digests.keySet(); }
+
+    /**
+     * Returns the message digest or checksum of the data which has been computed with the given algorithm.
+     * A checksum is represented by its 32 bit value in big-endian order.
+     *
+     * @throws IllegalArgumentException if no digest has been computed with the given algorithm.
+     */
+    public byte[] digest(final String algorithm) { return lookup(algorithm).clone(); }
+
+    /**
+     * Returns the message digest or checksum of the data which has been computed with the given algorithm as a string
+     * of lower case hexadecimal digits with two digits per byte.
+     *
+     * @throws IllegalArgumentException if no digest has been computed with the given algorithm.
+     */
+    public String hex(final String algorithm) {
+        final byte[] digest = lookup(algorithm);
+        final StringBuilder sb = new StringBuilder(2 * digest.length);
+        for (final byte b : digest) {
+            sb.append(Character.forDigit((b >>> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return sb.toString();
+    }
+
+    private byte[] lookup(final String algorithm) {
+        final byte[] digest = digests.get(algorithm);
+        if (null == digest) {
+            throw new IllegalArgumentException("No digest has been computed with the algorithm " + algorithm + ".");
+        }
+        return digest;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder(getClass().getName()).append("(size=").append(size);
+        for (final String algorithm : digests.keySet()) {
+            sb.append(", ").append(algorithm).append('=').append(hex(algorithm));
+        }
+        return sb.append(')').toString();
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright © 2017 - 2020 Schlichtherle IT Services
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package global.namespace.fun.io.spi;
+
+import java.util.Locale;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A Value Object with the statistics of a copy operation.
+ * <p>
+ * The {@linkplain #readerWaitNanos() reader wait time} and the {@linkplain #writerWaitNanos() writer wait time} tell
+ * which side of the copy operation is the bottleneck: If the writer is mostly waiting for the reader to fill a buffer,
+ * then reading the input is the bottleneck.
+ * Otherwise, if the reader is mostly waiting for the writer to free a buffer, then writing the output is the
+ * bottleneck.
+ * If the data gets copied synchronously by the current thread or transferred directly between file channels, then
+ * both wait times are zero.
+ *
+ * @author Christian Schlichtherle
+ */
+public final class CopyStatistics {
+
+    private final Class<?> sourceType, sinkType;
+    private final long bytes, chunks, readerWaitNanos, writerWaitNanos, wallNanos;
+    private final boolean failed;
+
+    CopyStatistics(final Class<?> sourceType,
+                   final Class<?> sinkType,
+                   final long bytes,
+                   final long chunks,
+                   final long readerWaitNanos,
+                   final long writerWaitNanos,
+                   final long wallNanos,
+                   final boolean failed) {
+        this.sourceType = requireNonNull(sourceType);
+        this.sinkType = requireNonNull(sinkType);
+        this.bytes = bytes;
+        this.chunks = chunks;
+        this.readerWaitNanos = readerWaitNanos;
+        this.writerWaitNanos = writerWaitNanos;
+        this.wallNanos = wallNanos;
+        this.failed = failed;
+    }
+
+    /**
+     * Returns the type of the source.
+     * If the data has been copied between sockets, then this is the type of the input stream.
+     */
+    public Class<?> sourceType() { return sourceType; }
+
+    /**
+     * Returns the type of the sink.
+     * If the data has been copied between sockets, then this is the type of the output stream.
+     */
+    public Class<?> sinkType() { return sinkType; }
+
+    /** Returns the number of bytes written to the output stream. */
+    public long bytes() { return bytes; }
+
+    /** Returns the number of chunks written to the output stream. */
+    public long chunks() { return chunks; }
+
+    /** Returns the time the reader has been waiting for the writer to free a buffer, in nanoseconds. */
+    public long readerWaitNanos() { return readerWaitNanos; }
+
+    /** Returns the time the writer has been waiting for the reader to fill a buffer, in nanoseconds. */
+    public long writerWaitNanos() { return writerWaitNanos; }
+
+    /**
+     * Returns the total time of the copy operation, in nanoseconds.
+     * This includes the time for opening and closing the streams.
+     */
+    public long wallNanos() { return wallNanos; }
+
+    /** Returns {@code true} if and only if the copy operation has failed with an exception. */
+    public boolean failed() { return failed; }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ENGLISH,
+                "%s(sourceType=%s, sinkType=%s, bytes=%d, chunks=%d, readerWaitNanos=%d, writerWaitNanos=%d, wallNanos=%d, failed=%b)",
+                getClass().getName(), sourceType.getName(), sinkType.getName(), bytes, chunks, readerWaitNanos,
+                writerWaitNanos, wallNanos, failed);
+    }
+}
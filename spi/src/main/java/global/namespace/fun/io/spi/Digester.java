@@ -0,0 +1,155 @@
+/*
+ * Copyright © 2017 - 2020 Schlichtherle IT Services
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package global.namespace.fun.io.spi;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Checksum;
+
+/**
+ * Computes the message digests or checksums of the data which flows through the buffers of the {@link Copy} engine.
+ * This class is not thread-safe: It must only be used by the thread which writes the data to the output.
+ *
+ * @author Christian Schlichtherle
+ */
+final class Digester {
+
+    private final String[] algorithms;
+    private final Digest[] digests;
+    private long size;
+
+    Digester(final String... algorithms) throws NoSuchAlgorithmException {
+        if (0 == algorithms.length) {
+            throw new IllegalArgumentException("At least one algorithm is required.");
+        }
+        this.algorithms = algorithms.clone();
+        this.digests = new Digest[algorithms.length];
+        for (int i = 0; i < algorithms.length; i++) {
+            digests[i] = digest(algorithms[i]);
+        }
+    }
+
+    private static Digest digest(final String algorithm) throws NoSuchAlgorithmException {
+        switch (algorithm.toUpperCase(Locale.ROOT)) {
+            case "CRC32":
+                return new ChecksumDigest(new CRC32());
+            case "CRC32C":
+                return new ChecksumDigest(crc32c(algorithm));
+            case "ADLER32":
+                return new ChecksumDigest(new Adler32());
+            default:
+                return new MessageDigestDigest(MessageDigest.getInstance(algorithm));
+        }
+    }
+
+    /** Returns a new {@code java.util.zip.CRC32C} checksum, which is only available on JDK 9+. */
+    private static Checksum crc32c(final String algorithm) throws NoSuchAlgorithmException {
+        try {
+            return (Checksum) Class.forName("java.util.zip.CRC32C").getConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            final NoSuchAlgorithmException ex = new NoSuchAlgorithmException(algorithm + " requires JDK 9+.");
+            ex.initCause(e);
+            throw ex;
+        }
+    }
+
+    /** Updates the digests with the first given number of bytes in the given buffer. */
+    void update(final ByteBuffer buffer, final int length) {
+        final ByteBuffer b = buffer.duplicate();
+        b.limit(length);
+        for (final Digest digest : digests) {
+            b.position(0);
+            digest.update(b);
+        }
+        size += length;
+    }
+
+    /** Returns the result of the copy operation. */
+    CopyResult result() {
+        final Map<String, byte[]> map = new LinkedHashMap<>();
+        for (int i = 0; i < algorithms.length; i++) {
+            map.put(algorithms[i], digests[i].value());
+        }
+        return new CopyResult(size, map);
+    }
+
+    private interface Digest {
+
+        void update(ByteBuffer buffer);
+
+        byte[] value();
+    }
+
+    private static final class MessageDigestDigest implements Digest {
+
+        final MessageDigest digest;
+
+        MessageDigestDigest(final MessageDigest digest) { this.digest = digest; }
+
+        @Override
+        public void update(ByteBuffer buffer) { digest.update(buffer); }
+
+        @Override
+        public byte[] value() { return digest.digest(); }
+    }
+
+    private static final class ChecksumDigest implements Digest {
+
+        final Checksum checksum;
+
+        /** A method handle for {@code update(ByteBuffer)}, which is not declared by {@link Checksum} on JDK 8. */
+        final MethodHandle update;
+
+        ChecksumDigest(final Checksum checksum) {
+            this.checksum = checksum;
+            try {
+                this.update = MethodHandles
+                        .publicLookup()
+                        .findVirtual(checksum.getClass(), "update", MethodType.methodType(void.class, ByteBuffer.class))
+                        .bindTo(checksum);
+            } catch (ReflectiveOperationException e) {
+                throw new AssertionError(e);
+            }
+        }
+
+        @Override
+        public void update(final ByteBuffer buffer) {
+            try {
+                update.invokeExact(buffer);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable cannotHappen) {
+                throw new AssertionError(cannotHappen);
+            }
+        }
+
+        /** Returns the 32 bit value of the checksum in big-endian order. */
+        @Override
+        public byte[] value() {
+            final long value = checksum.getValue();
+            return new byte[]{(byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value};
+        }
+    }
+}
@@ -0,0 +1,301 @@
+/*
+ * Copyright © 2017 - 2020 Schlichtherle IT Services
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package global.namespace.fun.io.spi;
+
+import global.namespace.fun.io.api.Sink;
+import global.namespace.fun.io.api.Source;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+
+/**
+ * Copies the data from a source to multiple sinks.
+ * The current thread reads each buffer from the source only once and hands it off to a separate task per sink, which
+ * writes it concurrently with the other tasks.
+ * The buffers get exchanged via a {@link FanOutRing}, so the slowest sink provides back-pressure to the reader.
+ *
+ * @author Christian Schlichtherle
+ */
+final class FanOut {
+
+    private final List<? extends Sink> sinks;
+    private final CopyOptions options;
+    private final FanOutPolicy policy;
+
+    private final Chunk[] chunks;
+    private final FanOutRing<Chunk> ring;
+
+    /** The failure of the writer task for each sink, if any. */
+    private final Throwable[] failures;
+
+    /** The first failure of any writer task, if any. */
+    private volatile Throwable failure;
+
+    private final CountDownLatch done;
+
+    /** The failures of the writer tasks by sink, if any. */
+    private Map<Sink, Exception> outcome;
+
+    private FanOut(final List<? extends Sink> sinks, final CopyOptions options, final FanOutPolicy policy) {
+        this.sinks = sinks;
+        this.options = options;
+        this.policy = policy;
+        final BufferArena arena = BufferArena.heap();
+        this.chunks = new Chunk[options.fifoSize()];
+        for (int i = 0; i < chunks.length; i++) {
+            chunks[i] = new Chunk(arena.acquire(options.bufferSize()));
+        }
+        this.ring = new FanOutRing<>(chunks, sinks.size());
+        this.failures = new Throwable[sinks.size()];
+        this.done = new CountDownLatch(sinks.size());
+    }
+
+    static Map<Sink, Exception> copy(final Source source,
+                                     final List<? extends Sink> sinks,
+                                     final CopyOptions options,
+                                     final FanOutPolicy policy) throws Exception {
+        if (sinks.isEmpty()) {
+            throw new IllegalArgumentException("At least one sink is required.");
+        }
+        Watchdog.checkCancelled(options);
+        final FanOut fanOut = new FanOut(sinks, options, policy);
+        Copy.observe(options, source.getClass(), sinkType(sinks), probe -> fanOut.copy(source, probe));
+        return fanOut.outcome;
+    }
+
+    /** Returns the common type of the given sinks or {@link Sink} if they have different types. */
+    private static Class<?> sinkType(final List<? extends Sink> sinks) {
+        final Class<?> type = sinks.get(0).getClass();
+        for (final Sink sink : sinks) {
+            if (sink.getClass() != type) {
+                return Sink.class;
+            }
+        }
+        return type;
+    }
+
+    /**
+     * Copies the data from the given source to the sinks.
+     *
+     * @param probe the probe for collecting statistics or {@code null} if there is no copy listener.
+     */
+    private void copy(final Source source, final Copy.Probe probe) throws Exception {
+        try {
+            source.input().accept(in -> read(in, probe));
+        } finally {
+            await();
+            final BufferArena arena = BufferArena.heap();
+            for (final Chunk chunk : chunks) {
+                arena.release(chunk.buf);
+            }
+        }
+        outcome = result();
+    }
+
+    /**
+     * Starts the writer tasks and reads the data from the given input stream into the ring.
+     * If there is a rate limiter, then the current thread waits before publishing each chunk, so the writer tasks
+     * receive the data at the permitted rate.
+     */
+    private void read(final InputStream in, final Copy.Probe probe) throws IOException {
+        final Executor executor = options.executor();
+        for (int i = 0; i < failures.length; i++) {
+            final int consumer = i;
+            try {
+                executor.execute(() -> write(consumer));
+            } catch (RuntimeException e) {
+                ring.abort();
+                done.countDown();
+                for (int j = i + 1; j < failures.length; j++) {
+                    done.countDown();
+                }
+                throw e;
+            }
+        }
+        try {
+            final Watchdog watchdog = Watchdog.of(options);
+            final RateLimiter limiter = options.rateLimiter().orElse(null);
+            final long sliceNanos = null == watchdog ? Long.MAX_VALUE : Watchdog.SLICE_NANOS;
+            final int size = options.bufferSize();
+            long bytes = 0;
+            while (true) {
+                Chunk chunk;
+                final long start = null != probe ? System.nanoTime() : 0;
+                try {
+                    while (null == (chunk = ring.claim(sliceNanos))) {
+                        if (null != failure && FanOutPolicy.FAIL_FAST == policy || allFailed()) {
+                            return; // the writer tasks have failed
+                        }
+                        if (null != watchdog) {
+                            watchdog.check(bytes);
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    throw new InterruptedIOException();
+                }
+                if (null != probe) {
+                    probe.readerWaitNanos += System.nanoTime() - start;
+                }
+                final ByteBuffer buf = chunk.buf;
+                final int read = in.read(buf.array(), buf.arrayOffset(), size);
+                if (0 < read && null != limiter) {
+                    Copy.throttle(limiter, read, bytes, Copy.checkpoint(watchdog));
+                }
+                chunk.read = read;
+                ring.publish();
+                if (0 > read) {
+                    return;
+                }
+                bytes += read;
+                if (null != probe) {
+                    probe.written(read);
+                }
+                if (null != watchdog) {
+                    watchdog.progress();
+                    watchdog.check(bytes);
+                }
+            }
+        } catch (IOException | RuntimeException | Error e) {
+            ring.abort();
+            throw e;
+        }
+    }
+
+    private synchronized boolean allFailed() {
+        for (final Throwable t : failures) {
+            if (null == t) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Writes the data from the ring to the sink with the given index. */
+    private void write(final int consumer) {
+        try {
+            sinks.get(consumer).output().accept(out -> write(consumer, out));
+        } catch (Throwable t) {
+            synchronized (this) {
+                failures[consumer] = t;
+                if (null == failure) {
+                    failure = t;
+                }
+            }
+            if (FanOutPolicy.FAIL_FAST == policy) {
+                ring.abort();
+            } else {
+                ring.detach(consumer);
+            }
+        } finally {
+            done.countDown();
+        }
+    }
+
+    private void write(final int consumer, final OutputStream out) throws IOException {
+        while (true) {
+            final Chunk chunk = ring.peek(consumer);
+            if (null == chunk) {
+                throw new Aborted();
+            }
+            final int read = chunk.read;
+            if (0 > read) {
+                break;
+            }
+            out.write(chunk.buf.array(), chunk.buf.arrayOffset(), read);
+            ring.release(consumer);
+        }
+        out.flush();
+    }
+
+    /**
+     * Waits until all writer tasks have terminated, so that the buffers can get released to the arena.
+     * If the current thread gets interrupted while waiting, then the ring gets aborted.
+     */
+    private void await() {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    done.await();
+                    return;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                    ring.abort();
+                }
+            }
+        } finally {
+            if (interrupted)
+                Thread.currentThread().interrupt(); // restore
+        }
+    }
+
+    /** Returns the failures of the writer tasks or throws an exception according to the policy. */
+    private synchronized Map<Sink, Exception> result() throws Exception {
+        final Map<Sink, Exception> result = new LinkedHashMap<>();
+        final Throwable first = failure;
+        if (null == first) {
+            return Collections.emptyMap();
+        }
+        for (final Throwable t : failures) {
+            if (t instanceof Error) {
+                throw (Error) t;
+            }
+        }
+        if (FanOutPolicy.FAIL_FAST == policy || allFailed()) {
+            for (final Throwable t : failures) {
+                if (null != t && t != first && !(FanOutPolicy.FAIL_FAST == policy && t instanceof Aborted)) {
+                    first.addSuppressed(t);
+                }
+            }
+            throw (Exception) first;
+        }
+        for (int i = 0; i < failures.length; i++) {
+            final Throwable t = failures[i];
+            if (null != t) {
+                result.put(sinks.get(i), (Exception) t);
+            }
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    /** Indicates that a writer task has been aborted because of a failure elsewhere. */
+    private static final class Aborted extends InterruptedIOException {
+
+        private static final long serialVersionUID = 0L;
+
+        Aborted() { super("aborted"); }
+    }
+
+    /** A buffer and the number of bytes read into it. */
+    private static final class Chunk {
+
+        final ByteBuffer buf;
+
+        /** The number of bytes read into the buffer or -1 on end-of-file. */
+        int read;
+
+        Chunk(final ByteBuffer buf) { this.buf = buf; }
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright © 2017 - 2020 Schlichtherle IT Services
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package global.namespace.fun.io.spi;
+
+/**
+ * Defines how {@link Copy#fanOut} handles a failure to write to a sink.
+ *
+ * @author Christian Schlichtherle
+ */
+public enum FanOutPolicy {
+
+    /**
+     * Aborts writing to all sinks as soon as writing to any sink fails and throws the exception.
+     * This is the default policy.
+     */
+    FAIL_FAST,
+
+    /**
+     * Detaches a sink from the copy operation as soon as writing to it fails and keeps writing to the other sinks.
+     * The failures get reported in the return value of {@link Copy#fanOut} unless writing to all sinks fails, in which
+     * case an exception is thrown.
+     */
+    BEST_EFFORT
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright © 2017 - 2020 Schlichtherle IT Services
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package global.namespace.fun.io.spi;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A lock-free ring buffer for handing off a fixed set of elements from a single producer thread to multiple consumer
+ * threads, where each consumer thread needs to see each element.
+ * The producer cycles through the elements by calling {@link #claim(long)} and {@link #publish()}, while each consumer
+ * follows it by calling {@link #peek(int)} and {@link #release(int)} with its index.
+ * An element can only get claimed again after all attached consumers have released it, so the slowest consumer
+ * determines the pace of the producer.
+ * A consumer which is not interested in any more elements can {@linkplain #detach(int) detach} from the ring.
+ * <p>
+ * Like {@link Ring}, a waiting thread first spins, then yields and only then parks until another thread unparks it.
+ *
+ * @author Christian Schlichtherle
+ */
+final class FanOutRing<E> {
+
+    private static final int SPINS = 1 << 6;
+    private static final int YIELDS = 1 << 3;
+
+    /** The tail of a consumer which has detached from the ring. */
+    private static final long DETACHED = Long.MAX_VALUE;
+
+    private final E[] elements;
+
+    /** The number of elements published by the producer. */
+    private volatile long head;
+
+    /** The number of elements released by each consumer. */
+    private final AtomicLongArray tails;
+
+    /** Whether or not the ring has been aborted. */
+    private volatile boolean aborted;
+
+    /** The producer thread if it's parked or about to park. */
+    private volatile Thread parkedProducer;
+
+    /** The consumer threads if they are parked or about to park. */
+    private final AtomicReferenceArray<Thread> parkedConsumers;
+
+    FanOutRing(final E[] elements, final int consumers) {
+        if (0 == elements.length) {
+            throw new IllegalArgumentException("The ring must have at least one element.");
+        }
+        if (0 >= consumers) {
+            throw new IllegalArgumentException("The ring must have at least one consumer.");
+        }
+        this.elements = elements;
+        this.tails = new AtomicLongArray(consumers);
+        this.parkedConsumers = new AtomicReferenceArray<>(consumers);
+    }
+
+    /**
+     * Waits until the next element is available to the producer or the given timeout has elapsed and returns it.
+     * Returns {@code null} if the timeout has elapsed, if the ring has been {@linkplain #abort() aborted} or if all
+     * consumers have {@linkplain #detach(int) detached}.
+     *
+     * @throws InterruptedException if the producer thread has been interrupted while waiting.
+     */
+    E claim(final long timeoutNanos) throws InterruptedException {
+        final long head = this.head;
+        final int length = elements.length;
+        final long deadline = System.nanoTime() + timeoutNanos;
+        long tail;
+        for (int i = 0; !aborted && DETACHED != (tail = tail()) && head - tail >= length; ) {
+            final long remaining = deadline - System.nanoTime();
+            if (0 >= remaining) {
+                return null;
+            }
+            if (i < SPINS) {
+                i++;
+            } else if (i < SPINS + YIELDS) {
+                i++;
+                Thread.yield();
+            } else {
+                parkedProducer = Thread.currentThread();
+                if (!aborted && head - tail() >= length) {
+                    LockSupport.parkNanos(this, remaining);
+                }
+                parkedProducer = null;
+            }
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+        return aborted || DETACHED == tail() ? null : elements[(int) (head % length)];
+    }
+
+    /** Returns the minimum tail of all attached consumers or {@link #DETACHED} if there are none. */
+    private long tail() {
+        long min = DETACHED;
+        for (int i = tails.length(); 0 <= --i; ) {
+            min = Math.min(min, tails.get(i));
+        }
+        return min;
+    }
+
+    /** Publishes the element returned by the last call to {@link #claim(long)} to the consumers. */
+    void publish() {
+        head++; // only the producer thread writes this field
+        for (int i = parkedConsumers.length(); 0 <= --i; ) {
+            final Thread consumer = parkedConsumers.get(i);
+            if (null != consumer) {
+                LockSupport.unpark(consumer);
+            }
+        }
+    }
+
+    /**
+     * Waits until the next element has been published to the consumer with the given index and returns it.
+     * Returns {@code null} if the ring has been {@linkplain #abort() aborted}.
+     * If the consumer thread gets interrupted while waiting, then the interrupt is ignored, but restored before
+     * returning.
+     */
+    E peek(final int consumer) {
+        final long tail = tails.get(consumer);
+        boolean interrupted = false;
+        try {
+            for (int i = 0; !aborted && tail == head; ) {
+                if (i < SPINS) {
+                    i++;
+                } else if (i < SPINS + YIELDS) {
+                    i++;
+                    Thread.yield();
+                } else {
+                    parkedConsumers.set(consumer, Thread.currentThread());
+                    if (!aborted && tail == head) {
+                        LockSupport.park(this);
+                    }
+                    parkedConsumers.set(consumer, null);
+                }
+                if (Thread.interrupted()) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            if (interrupted)
+                Thread.currentThread().interrupt(); // restore
+        }
+        return aborted ? null : elements[(int) (tail % elements.length)];
+    }
+
+    /** Releases the element returned by the last call to {@link #peek(int)} to the producer. */
+    void release(final int consumer) {
+        tails.incrementAndGet(consumer);
+        unparkProducer();
+    }
+
+    /** Detaches the consumer with the given index, so that the producer does not need to wait for it anymore. */
+    void detach(final int consumer) {
+        tails.set(consumer, DETACHED);
+        unparkProducer();
+    }
+
+    /** Aborts this ring, so that all waiting threads return {@code null}. */
+    void abort() {
+        aborted = true;
+        unparkProducer();
+        for (int i = parkedConsumers.length(); 0 <= --i; ) {
+            final Thread consumer = parkedConsumers.get(i);
+            if (null != consumer) {
+                LockSupport.unpark(consumer);
+            }
+        }
+    }
+
+    private void unparkProducer() {
+        final Thread producer = parkedProducer;
+        if (null != producer) {
+            LockSupport.unpark(producer);
+        }
+    }
+}
@@ -0,0 +1,287 @@
+/*
+ * Copyright © 2017 - 2020 Schlichtherle IT Services
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package global.namespace.fun.io.spi;
+
+import global.namespace.fun.io.api.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.*;
+
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Copies the entries of an archive input which supports concurrent reads to an archive output in parallel.
+ * If the archive output supports concurrent writes too, then each archive entry gets copied by a separate task.
+ * Otherwise, each archive entry gets read ahead by a separate task into a spool buffer and then written by the current
+ * thread in the original order of the archive entries.
+ * In either case, at most {@link CopyOptions#parallelism()} tasks are running at the same time.
+ *
+ * @author Christian Schlichtherle
+ */
+final class ParallelCopy {
+
+    /** The maximum size of an archive entry which gets spooled to memory instead of a temporary file. */
+    private static final int MAX_MEMORY_SPOOL_SIZE = 1024 * 1024;
+
+    private final ArchiveInputStream input;
+    private final ArchiveOutputStream output;
+    private final CopyOptions options;
+
+    /** Whether or not a task has failed, so that any pending tasks should not bother to copy their archive entry. */
+    private volatile boolean aborted;
+
+    private ParallelCopy(final ArchiveInputStream input,
+                         final ArchiveOutputStream output,
+                         final CopyOptions options) {
+        this.input = input;
+        this.output = output;
+        this.options = options;
+    }
+
+    static void copy(ArchiveInputStream input, ArchiveOutputStream output, CopyOptions options) throws Exception {
+        final ParallelCopy copy = new ParallelCopy(input, output, options);
+        if (output.isConcurrent()) {
+            copy.unordered();
+        } else {
+            copy.ordered();
+        }
+    }
+
+    /** Copies each archive entry by a separate task. */
+    private void unordered() throws Exception {
+        final CompletionService<Void> service = new ExecutorCompletionService<>(options.executor());
+        final int parallelism = options.parallelism();
+        int pending = 0;
+        Exception failure = null;
+        try {
+            for (final ArchiveEntrySource entry : input) {
+                Watchdog.checkCancelled(options);
+                if (parallelism == pending) {
+                    pending--;
+                    await(service.take());
+                }
+                final ArchiveEntrySink sink = output.sink(entry.name());
+                service.submit(() -> {
+                    if (!aborted) {
+                        Copy.copyEntry(entry, sink, options);
+                    }
+                    return null;
+                });
+                pending++;
+            }
+        } catch (Exception e) {
+            failure = abort(e);
+        }
+        for (; 0 < pending; pending--) {
+            try {
+                await(takeUninterruptibly(service));
+            } catch (Exception e) {
+                failure = null == failure ? abort(e) : suppress(failure, e);
+            }
+        }
+        if (null != failure) {
+            throw failure;
+        }
+    }
+
+    /** Reads ahead each archive entry by a separate task and writes the archive entries in order. */
+    private void ordered() throws Exception {
+        final Executor executor = options.executor();
+        final int parallelism = options.parallelism();
+        final Deque<Future<Spool>> window = new ArrayDeque<>(parallelism);
+        Exception failure = null;
+        try {
+            for (final ArchiveEntrySource entry : input) {
+                Watchdog.checkCancelled(options);
+                if (parallelism == window.size()) {
+                    commit(window.removeFirst());
+                }
+                final FutureTask<Spool> task = new FutureTask<>(() -> aborted ? null : Spool.of(entry, options));
+                window.addLast(task);
+                executor.execute(task);
+            }
+            while (!window.isEmpty()) {
+                commit(window.removeFirst());
+            }
+        } catch (Exception e) {
+            failure = abort(e);
+        }
+        for (Future<Spool> result; null != (result = window.pollFirst()); ) {
+            try {
+                final Spool spool = await(getUninterruptibly(result));
+                if (null != spool) {
+                    spool.delete();
+                }
+            } catch (Exception e) {
+                failure = null == failure ? e : suppress(failure, e);
+            }
+        }
+        if (null != failure) {
+            throw failure;
+        }
+    }
+
+    private void commit(final Future<Spool> result) throws Exception {
+        final Spool spool = await(result);
+        try {
+            Copy.copyEntry(spool, output.sink(spool.name()), options);
+        } finally {
+            spool.delete();
+        }
+    }
+
+    private Exception abort(final Exception e) {
+        aborted = true;
+        return e;
+    }
+
+    private static Exception suppress(final Exception failure, final Exception e) {
+        if (failure != e) {
+            failure.addSuppressed(e);
+        }
+        return failure;
+    }
+
+    private static <V> V await(final Future<V> result) throws Exception {
+        try {
+            return result.get();
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            } else {
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Waits until the next task has completed, even if the current thread gets interrupted.
+     * This ensures that no task is still accessing the archive input or output when returning to the caller.
+     */
+    private static <V> Future<V> takeUninterruptibly(final CompletionService<V> service) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return service.take();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt(); // restore
+            }
+        }
+    }
+
+    /**
+     * Waits until the given task has completed, even if the current thread gets interrupted.
+     * This ensures that no task is still accessing the archive input or output when returning to the caller.
+     */
+    private static <V> Future<V> getUninterruptibly(final Future<V> result) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    result.get();
+                    return result;
+                } catch (ExecutionException e) {
+                    return result;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt(); // restore
+            }
+        }
+    }
+
+    /**
+     * An archive entry source which has been read ahead into memory or a temporary file.
+     * The metadata gets delegated to the original archive entry source, so the archive entry sink sees the same
+     * metadata as when copying the entry directly, even if some of it is only known after reading the content, e.g.
+     * the size of an entry in a streamed archive.
+     */
+    private static final class Spool extends ArchiveEntrySource {
+
+        final ArchiveEntrySource entry;
+        final byte[] content;
+        final Path file;
+
+        private Spool(final ArchiveEntrySource entry, final byte[] content, final Path file) {
+            this.entry = entry;
+            this.content = content;
+            this.file = file;
+        }
+
+        static Spool of(final ArchiveEntrySource entry, final CopyOptions options) throws Exception {
+            final long size = entry.size();
+            if (entry.directory()) {
+                return new Spool(entry, new byte[0], null);
+            } else if (0 <= size && size <= MAX_MEMORY_SPOOL_SIZE) {
+                final ByteArrayOutputStream out = new ByteArrayOutputStream((int) size);
+                Copy.copy(entry, () -> () -> out, options);
+                return new Spool(entry, out.toByteArray(), null);
+            } else {
+                final Path file = Files.createTempFile("spool", null);
+                try {
+                    Copy.copy(entry, () -> () -> new ChannelOutputStream(FileChannel.open(file, WRITE)), options);
+                } catch (Exception e) {
+                    Files.deleteIfExists(file);
+                    throw e;
+                }
+                return new Spool(entry, null, file);
+            }
+        }
+
+        @Override
+        public Socket<InputStream> input() {
+            return () -> null != file
+                    ? new ChannelInputStream(FileChannel.open(file, READ))
+                    : new ByteArrayInputStream(content);
+        }
+
+        @Override
+        public String name() { return entry.name(); }
+
+        @Override
+        public boolean directory() { return entry.directory(); }
+
+        @Override
+        public long size() { return entry.size(); }
+
+        void delete() throws IOException {
+            if (null != file) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+}
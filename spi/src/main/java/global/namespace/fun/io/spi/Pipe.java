@@ -0,0 +1,171 @@
+/*
+ * Copyright © 2017 - 2020 Schlichtherle IT Services
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package global.namespace.fun.io.spi;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A bounded FIFO of pooled buffers which connects a producer thread with a consumer thread, like the FIFO of the
+ * {@link Copy} engine.
+ * The producer fills each chunk and publishes it, and finally publishes an end chunk.
+ * The consumer peeks each chunk and releases it, up to and including the end chunk.
+ * If the consumer fails, then it keeps releasing the chunks without processing them until the end chunk, so that the
+ * producer never gets stuck.
+ * The buffers get released to their arena once both sides are done.
+ *
+ * @author Christian Schlichtherle
+ */
+final class Pipe {
+
+    private final BufferArena arena = BufferArena.heap();
+
+    private final Chunk[] chunks;
+
+    private final Ring<Chunk> ring;
+
+    /** The number of sides which are not done yet. */
+    private final AtomicInteger sides = new AtomicInteger(2);
+
+    Pipe(final CopyOptions options) {
+        final Chunk[] chunks = new Chunk[options.fifoSize()];
+        for (int i = chunks.length; 0 <= --i; ) {
+            chunks[i] = new Chunk(arena.acquire(options.bufferSize()), options.bufferSize());
+        }
+        this.chunks = chunks;
+        this.ring = new Ring<>(chunks);
+    }
+
+    /** Waits until the next chunk is available to the producer and returns it with its length reset to zero. */
+    Chunk claim() throws InterruptedIOException {
+        final Chunk chunk;
+        try {
+            chunk = ring.claim();
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException();
+        }
+        chunk.length = 0;
+        chunk.flush = false;
+        return chunk;
+    }
+
+    /** Publishes the chunk returned by the last call to {@link #claim()} to the consumer. */
+    void publish() { ring.publish(); }
+
+    /**
+     * Publishes the end chunk with the given failure of the producer, if any, and marks the producer as done.
+     * If the current thread gets interrupted while waiting for the end chunk, then the interrupt is ignored, but
+     * restored before returning, because otherwise the consumer would wait forever and never release its resources.
+     */
+    void end(final Throwable failure) {
+        boolean interrupted = false;
+        Chunk chunk;
+        while (true) {
+            try {
+                chunk = ring.claim();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt(); // restore
+        }
+        chunk.length = -1;
+        chunk.flush = false;
+        chunk.failure = failure;
+        publish();
+        done();
+    }
+
+    /** Waits until the next chunk has been published to the consumer and returns it. */
+    Chunk peek() { return ring.peek(); }
+
+    /**
+     * Releases the chunk returned by the last call to {@link #peek()} to the producer.
+     * If this is the end chunk, then the consumer is marked as done.
+     */
+    void release(final Chunk chunk) {
+        final boolean end = chunk.end();
+        ring.release();
+        if (end) {
+            if (ring.consumerInterrupted()) {
+                Thread.currentThread().interrupt(); // restore
+            }
+            done();
+        }
+    }
+
+    /** Releases all chunks up to and including the end chunk. */
+    void drain() {
+        for (Chunk chunk; !(chunk = peek()).end(); ) {
+            release(chunk);
+        }
+        release(peek());
+    }
+
+    private void done() {
+        if (0 == sides.decrementAndGet()) {
+            for (final Chunk chunk : chunks) {
+                arena.release(chunk.buffer);
+            }
+        }
+    }
+
+    /** Returns the given failure as an I/O exception. */
+    static IOException ioException(final Throwable failure) {
+        if (failure instanceof IOException) {
+            return (IOException) failure;
+        } else if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        } else if (failure instanceof Error) {
+            throw (Error) failure;
+        } else {
+            return new IOException(failure);
+        }
+    }
+
+    static final class Chunk {
+
+        final ByteBuffer buffer;
+
+        /**
+         * The requested size of the buffer.
+         * The buffer may have a larger capacity because the arena rounds it up, but the extra space is never used.
+         */
+        final int size;
+
+        /** The number of bytes in the buffer or -1 for the end chunk. */
+        int length;
+
+        /** Whether or not the consumer should flush after processing this chunk. */
+        boolean flush;
+
+        /** The failure of the producer, if any. Only set in the end chunk. */
+        Throwable failure;
+
+        Chunk(final ByteBuffer buffer, final int size) {
+            this.buffer = buffer;
+            this.size = size;
+        }
+
+        byte[] array() { return buffer.array(); }
+
+        boolean end() { return 0 > length; }
+    }
+}
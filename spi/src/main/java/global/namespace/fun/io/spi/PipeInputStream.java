@@ -0,0 +1,141 @@
+/*
+ * Copyright © 2017 - 2020 Schlichtherle IT Services
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package global.namespace.fun.io.spi;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * An input stream which reads the data from a task which reads it ahead from another input stream.
+ * Closing this stream stops the task after its current read and waits until it has closed the other input stream.
+ *
+ * @author Christian Schlichtherle
+ */
+final class PipeInputStream extends InputStream {
+
+    private final Pipe pipe;
+
+    private volatile boolean closed;
+
+    private Pipe.Chunk chunk;
+
+    private int position;
+
+    PipeInputStream(final InputStream in, final CopyOptions options) {
+        this.pipe = new Pipe(options);
+        try {
+            options.executor().execute(() -> read(in));
+        } catch (RuntimeException e) {
+            closed = true;
+            try {
+                in.close();
+            } catch (Throwable t) {
+                e.addSuppressed(t);
+            }
+            pipe.end(e);
+            pipe.drain();
+            throw e;
+        }
+    }
+
+    /** Reads chunks from the given input stream until the end of the data or closing this stream, then closes it. */
+    private void read(final InputStream in) {
+        Throwable failure = null;
+        try {
+            while (!closed) {
+                final Pipe.Chunk chunk = pipe.claim();
+                final int read = in.read(chunk.array(), 0, chunk.size);
+                if (0 > read) {
+                    break;
+                }
+                chunk.length = read;
+                pipe.publish();
+            }
+        } catch (Throwable e) {
+            failure = e;
+        }
+        try {
+            in.close();
+        } catch (Throwable e) {
+            if (null == failure) {
+                failure = e;
+            }
+        }
+        pipe.end(failure);
+    }
+
+    @Override
+    public int read() throws IOException {
+        final byte[] b = new byte[1];
+        return 1 == read(b, 0, 1) ? b[0] & 0xff : -1;
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed.");
+        }
+        if (0 == len) {
+            return 0;
+        }
+        while (true) {
+            if (null == chunk) {
+                chunk = pipe.peek();
+                position = 0;
+            }
+            if (chunk.end()) {
+                final Throwable failure = chunk.failure;
+                if (null != failure) {
+                    throw Pipe.ioException(failure);
+                }
+                return -1;
+            }
+            final int n = Math.min(len, chunk.length - position);
+            if (0 < n) {
+                System.arraycopy(chunk.array(), position, b, off, n);
+                position += n;
+                return n;
+            }
+            pipe.release(chunk);
+            chunk = null;
+        }
+    }
+
+    @Override
+    public int available() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed.");
+        }
+        return null != chunk && !chunk.end() ? chunk.length - position : 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            if (null != chunk) {
+                if (chunk.end()) {
+                    pipe.release(chunk);
+                    chunk = null;
+                    return;
+                }
+                pipe.release(chunk);
+                chunk = null;
+            }
+            pipe.drain();
+        }
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright © 2017 - 2020 Schlichtherle IT Services
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package global.namespace.fun.io.spi;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * An output stream which hands off the data to a task which writes it to another output stream.
+ * Closing this stream waits until the task has written all data and closed the other output stream.
+ *
+ * @author Christian Schlichtherle
+ */
+final class PipeOutputStream extends OutputStream {
+
+    private final CountDownLatch terminated = new CountDownLatch(1);
+
+    private final Pipe pipe;
+
+    private volatile Throwable failure;
+
+    private Pipe.Chunk chunk;
+
+    private boolean closed;
+
+    PipeOutputStream(final OutputStream out, final CopyOptions options) {
+        this.pipe = new Pipe(options);
+        try {
+            options.executor().execute(() -> write(out));
+        } catch (RuntimeException e) {
+            failure = e;
+            closed = true;
+            try {
+                out.close();
+            } catch (Throwable t) {
+                e.addSuppressed(t);
+            }
+            pipe.end(e);
+            pipe.drain();
+            terminated.countDown();
+            throw e;
+        }
+    }
+
+    /** Writes the chunks to the given output stream until the end chunk, then closes it. */
+    private void write(final OutputStream out) {
+        try {
+            for (Pipe.Chunk chunk; !(chunk = pipe.peek()).end(); pipe.release(chunk)) {
+                if (null == failure) {
+                    try {
+                        out.write(chunk.array(), 0, chunk.length);
+                        if (chunk.flush) {
+                            out.flush();
+                        }
+                    } catch (Throwable e) {
+                        failure = e;
+                    }
+                }
+            }
+            try {
+                out.close();
+            } catch (Throwable e) {
+                if (null == failure) {
+                    failure = e;
+                }
+            }
+            pipe.release(pipe.peek());
+        } finally {
+            terminated.countDown();
+        }
+    }
+
+    @Override
+    public void write(int b) throws IOException { write(new byte[]{(byte) b}, 0, 1); }
+
+    @Override
+    public void write(final byte[] b, int off, int len) throws IOException {
+        check();
+        while (0 < len) {
+            if (null == chunk) {
+                chunk = pipe.claim();
+            }
+            final int n = Math.min(len, chunk.size - chunk.length);
+            System.arraycopy(b, off, chunk.array(), chunk.length, n);
+            chunk.length += n;
+            off += n;
+            len -= n;
+            if (chunk.length == chunk.size) {
+                publish(false);
+            }
+        }
+    }
+
+    /** Publishes the current chunk, if any, and asks the task to flush the other output stream afterwards. */
+    @Override
+    public void flush() throws IOException {
+        check();
+        if (null == chunk) {
+            chunk = pipe.claim();
+        }
+        publish(true);
+    }
+
+    private void publish(final boolean flush) {
+        chunk.flush = flush;
+        pipe.publish();
+        chunk = null;
+    }
+
+    private void check() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed.");
+        }
+        final Throwable failure = this.failure;
+        if (null != failure) {
+            throw Pipe.ioException(failure);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            if (null != chunk) {
+                publish(false);
+            }
+            pipe.end(null);
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    terminated.await();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt(); // restore
+                throw new InterruptedIOException();
+            }
+            final Throwable failure = this.failure;
+            if (null != failure) {
+                throw Pipe.ioException(failure);
+            }
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright © 2017 - 2020 Schlichtherle IT Services
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package global.namespace.fun.io.spi;
+
+import global.namespace.fun.io.api.Filter;
+import global.namespace.fun.io.api.Socket;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Provides filters which run the stages of a composed filter on separate threads.
+ * <p>
+ * A composed filter like {@code compression.compose(encryption)} runs all of its stages in the thread which reads or
+ * writes the data, so its throughput is bounded by the sum of the costs of its stages.
+ * A pipeline inserts a {@linkplain #boundary() boundary} between each pair of adjacent stages, so that each stage runs
+ * on its own thread and its throughput is bounded by the cost of its slowest stage instead:
+ * <pre>{@code
+ * Filter compression = ...;
+ * Filter encryption = ...;
+ * Filter pipeline = Pipeline.of(CopyOptions.defaults(), compression, encryption);
+ * // ... which is the same as:
+ * // Filter pipeline = compression.compose(Pipeline.boundary()).compose(encryption);
+ * }</pre>
+ * Each boundary connects its stages with a FIFO of {@linkplain CopyOptions#fifoSize() fifoSize} buffers with
+ * {@linkplain CopyOptions#bufferSize() bufferSize} bytes each and runs the downstream stage on output or the upstream
+ * stage on input in a task on the {@linkplain CopyOptions#executor() executor}.
+ * Any exception thrown by this task gets rethrown to the thread which reads or writes the data.
+ * <p>
+ * A boundary is not a {@link global.namespace.fun.io.api.BlockFilter}, so adjacent block filters which are separated
+ * by a boundary do not get fused.
+ *
+ * @author Christian Schlichtherle
+ */
+public final class Pipeline {
+
+    private Pipeline() {
+    }
+
+    /** Returns a pipeline boundary which uses the {@linkplain CopyOptions#defaults() default copy options}. */
+    public static Filter boundary() { return boundary(CopyOptions.defaults()); }
+
+    /**
+     * Returns a pipeline boundary which uses the given copy options.
+     * Only the {@linkplain CopyOptions#bufferSize() buffer size}, the {@linkplain CopyOptions#fifoSize() FIFO size}
+     * and the {@linkplain CopyOptions#executor() executor} are effective.
+     */
+    public static Filter boundary(final CopyOptions options) { return new Boundary(requireNonNull(options)); }
+
+    /**
+     * Returns a filter which composes the given stages with a pipeline boundary between each pair of adjacent stages.
+     *
+     * @throws IllegalArgumentException if no stages are given.
+     */
+    public static Filter of(final CopyOptions options, final Filter... stages) {
+        if (0 == stages.length) {
+            throw new IllegalArgumentException("No stages.");
+        }
+        final Filter boundary = boundary(options);
+        Filter filter = requireNonNull(stages[0]);
+        for (int i = 1; i < stages.length; i++) {
+            filter = filter.compose(boundary).compose(requireNonNull(stages[i]));
+        }
+        return filter;
+    }
+
+    private static final class Boundary implements Filter {
+
+        final CopyOptions options;
+
+        Boundary(final CopyOptions options) { this.options = options; }
+
+        @Override
+        public Socket<OutputStream> output(Socket<OutputStream> output) {
+            return output.map(out -> new PipeOutputStream(out, options));
+        }
+
+        @Override
+        public Socket<InputStream> input(Socket<InputStream> input) {
+            return input.map(in -> new PipeInputStream(in, options));
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright © 2017 - 2020 Schlichtherle IT Services
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package global.namespace.fun.io.spi;
+
+import java.time.Duration;
+
+/**
+ * A token bucket which limits the throughput and the rate of write operations of copy operations.
+ * A rate limiter is thread-safe, so it may be shared by any number of concurrent copy operations in order to limit
+ * their combined throughput, e.g. to leave enough bandwidth of a network interface or disk for latency-sensitive
+ * traffic.
+ * <p>
+ * The {@link Copy} engine charges each chunk it writes to the output stream against the rate limiter before writing
+ * it, so the rate limiter sees the real chunk boundaries.
+ * Up to the {@linkplain Builder#burst(Duration) burst} worth of chunks may be written without waiting after an idle
+ * period, after which the writer waits so that the average rates do not exceed the configured limits.
+ * While the writer is waiting, the reader thread may still fill the remaining buffers, but then it waits, too.
+ *
+ * @see CopyOptions#rateLimiter()
+ * @author Christian Schlichtherle
+ */
+public final class RateLimiter {
+
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    private final long bytesPerSecond, operationsPerSecond, burstNanos;
+
+    /** The theoretical arrival times of the next byte and the next operation. */
+    private long bytesArrival, operationsArrival;
+
+    private RateLimiter(final Builder b) {
+        this.bytesPerSecond = b.bytesPerSecond;
+        this.operationsPerSecond = b.operationsPerSecond;
+        this.burstNanos = b.burst.toNanos();
+        this.bytesArrival = this.operationsArrival = System.nanoTime();
+    }
+
+    /** Returns a new builder for a rate limiter. */
+    public static Builder builder() { return new Builder(); }
+
+    /** Returns the maximum number of bytes per second or zero if the throughput is unlimited. */
+    public long bytesPerSecond() { return bytesPerSecond; }
+
+    /** Returns the maximum number of write operations per second or zero if the rate is unlimited. */
+    public long operationsPerSecond() { return operationsPerSecond; }
+
+    /**
+     * Reserves the capacity for writing the given number of bytes in a single operation and returns the time the
+     * caller needs to wait before doing so, in nanoseconds.
+     */
+    synchronized long reserve(final long bytes) {
+        final long now = System.nanoTime();
+        long wait = 0;
+        if (0 < bytesPerSecond) {
+            bytesArrival = Math.max(bytesArrival, now) + nanos(bytes, bytesPerSecond);
+            wait = bytesArrival - burstNanos - now;
+        }
+        if (0 < operationsPerSecond) {
+            operationsArrival = Math.max(operationsArrival, now) + nanos(1, operationsPerSecond);
+            wait = Math.max(wait, operationsArrival - burstNanos - now);
+        }
+        return Math.max(0, wait);
+    }
+
+    private static long nanos(final long amount, final long perSecond) {
+        return amount <= Long.MAX_VALUE / NANOS_PER_SECOND
+                ? amount * NANOS_PER_SECOND / perSecond
+                : (long) ((double) amount * NANOS_PER_SECOND / perSecond);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s(bytesPerSecond=%d, operationsPerSecond=%d, burstNanos=%d)",
+                getClass().getName(), bytesPerSecond, operationsPerSecond, burstNanos);
+    }
+
+    /** A builder for a rate limiter. */
+    public static final class Builder {
+
+        private long bytesPerSecond, operationsPerSecond;
+
+        private Duration burst = Duration.ofMillis(100);
+
+        private Builder() { }
+
+        /**
+         * Sets the maximum number of bytes per second.
+         * The default value is zero, which means that the throughput is unlimited.
+         */
+        public Builder bytesPerSecond(final long bytesPerSecond) {
+            if (0 > bytesPerSecond) {
+                throw new IllegalArgumentException(bytesPerSecond + " is a negative number of bytes per second.");
+            }
+            this.bytesPerSecond = bytesPerSecond;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of write operations per second, where each chunk written to an output stream is an
+         * operation.
+         * The default value is zero, which means that the rate is unlimited.
+         */
+        public Builder operationsPerSecond(final long operationsPerSecond) {
+            if (0 > operationsPerSecond) {
+                throw new IllegalArgumentException(operationsPerSecond + " is a negative number of operations per second.");
+            }
+            this.operationsPerSecond = operationsPerSecond;
+            return this;
+        }
+
+        /**
+         * Sets the duration of a burst, that is the maximum duration worth of bytes and operations which may be written
+         * without waiting after an idle period.
+         * Smaller values result in a smoother throughput.
+         * The default value is 100 milliseconds.
+         */
+        public Builder burst(final Duration burst) {
+            if (burst.isNegative()) {
+                throw new IllegalArgumentException(burst + " is a negative duration.");
+            }
+            this.burst = burst;
+            return this;
+        }
+
+        public RateLimiter build() { return new RateLimiter(this); }
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright © 2017 - 2020 Schlichtherle IT Services
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package global.namespace.fun.io.spi;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A lock-free ring buffer for handing off a fixed set of elements between a single producer thread and a single
+ * consumer thread.
+ * The producer cycles through the elements by calling {@link #claim()} and {@link #publish()}, while the consumer
+ * follows it by calling {@link #peek()} and {@link #release()}.
+ * <p>
+ * The head and tail counters are volatile fields, so the ring does not require any locks.
+ * A thread which needs to wait for the other thread first spins, then yields and only then parks until the other
+ * thread unparks it.
+ * This way, the threads only park if the ring is truly empty or full for a while.
+ * <p>
+ * For vectored I/O, the producer may claim and publish all {@linkplain #free() free} elements at once and the consumer
+ * may peek and release all {@linkplain #ready() ready} elements at once.
+ *
+ * @author Christian Schlichtherle
+ */
+final class Ring<E> {
+
+    /** The number of times a waiting thread checks the ring in a busy loop before yielding. */
+    private static final int SPINS = 1 << 6;
+
+    /** The number of times a waiting thread checks the ring after yielding before parking. */
+    private static final int YIELDS = 1 << 3;
+
+    private final E[] elements;
+
+    /** The number of elements published by the producer. */
+    private volatile long head;
+
+    /** The number of elements released by the consumer. */
+    private volatile long tail;
+
+    /** The producer or consumer thread if it's parked or about to park. */
+    private volatile Thread parkedProducer, parkedConsumer;
+
+    /** Whether or not the consumer thread has been interrupted while waiting. */
+    private boolean consumerInterrupted;
+
+    Ring(final E[] elements) {
+        if (0 == elements.length) {
+            throw new IllegalArgumentException("The ring must have at least one element.");
+        }
+        this.elements = elements;
+    }
+
+    /**
+     * Waits until the next element is available to the producer and returns it.
+     *
+     * @throws InterruptedException if the producer thread has been interrupted while waiting.
+     */
+    E claim() throws InterruptedException {
+        final long head = this.head;
+        final int length = elements.length;
+        for (int i = 0; head - tail >= length; ) {
+            if (i < SPINS) {
+                i++;
+            } else if (i < SPINS + YIELDS) {
+                i++;
+                Thread.yield();
+            } else {
+                parkedProducer = Thread.currentThread();
+                if (head - tail >= length) {
+                    LockSupport.park(this);
+                }
+                parkedProducer = null;
+            }
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+        return elements[(int) (head % length)];
+    }
+
+    /** Returns the number of elements which the producer may claim without waiting. */
+    int free() { return (int) (elements.length - (head - tail)); }
+
+    /**
+     * Returns the element at the given offset from the element returned by the last call to {@link #claim()}.
+     * The offset must be less than the number of {@linkplain #free() free} elements.
+     */
+    E claimAhead(final int offset) { return elements[(int) ((head + offset) % elements.length)]; }
+
+    /** Publishes the element returned by the last call to {@link #claim()} to the consumer. */
+    void publish() { publish(1); }
+
+    /**
+     * Publishes the given number of elements, starting with the element returned by the last call to {@link #claim()},
+     * to the consumer.
+     */
+    void publish(final int count) {
+        head += count; // only the producer thread writes this field
+        final Thread consumer = parkedConsumer;
+        if (null != consumer) {
+            LockSupport.unpark(consumer);
+        }
+    }
+
+    /**
+     * Waits until the next element has been published to the consumer and returns it.
+     * If the consumer thread gets interrupted while waiting, then the interrupt is ignored, but recorded - see
+     * {@link #consumerInterrupted()}.
+     */
+    E peek() {
+        final long tail = this.tail;
+        for (int i = 0; tail == head; ) {
+            if (i < SPINS) {
+                i++;
+            } else if (i < SPINS + YIELDS) {
+                i++;
+                Thread.yield();
+            } else {
+                parkedConsumer = Thread.currentThread();
+                if (tail == head) {
+                    LockSupport.park(this);
+                }
+                parkedConsumer = null;
+            }
+            if (Thread.interrupted()) {
+                consumerInterrupted = true;
+            }
+        }
+        return elements[(int) (tail % elements.length)];
+    }
+
+    /**
+     * Waits until the next element has been published to the consumer or the given timeout has elapsed.
+     * Returns the next element or {@code null} if the timeout has elapsed.
+     * If the consumer thread gets interrupted while waiting, then the interrupt is ignored, but recorded - see
+     * {@link #consumerInterrupted()}.
+     */
+    E peek(final long timeoutNanos) {
+        final long tail = this.tail;
+        final long deadline = System.nanoTime() + timeoutNanos;
+        for (int i = 0; tail == head; ) {
+            final long remaining = deadline - System.nanoTime();
+            if (0 >= remaining) {
+                return null;
+            }
+            if (i < SPINS) {
+                i++;
+            } else if (i < SPINS + YIELDS) {
+                i++;
+                Thread.yield();
+            } else {
+                parkedConsumer = Thread.currentThread();
+                if (tail == head) {
+                    LockSupport.parkNanos(this, remaining);
+                }
+                parkedConsumer = null;
+            }
+            if (Thread.interrupted()) {
+                consumerInterrupted = true;
+            }
+        }
+        return elements[(int) (tail % elements.length)];
+    }
+
+    /** Returns the number of elements which the consumer may peek without waiting. */
+    int ready() { return (int) (head - tail); }
+
+    /**
+     * Returns the element at the given offset from the element returned by the last call to {@link #peek()}.
+     * The offset must be less than the number of {@linkplain #ready() ready} elements.
+     */
+    E peekAhead(final int offset) { return elements[(int) ((tail + offset) % elements.length)]; }
+
+    /** Releases the element returned by the last call to {@link #peek()} to the producer. */
+    void release() { release(1); }
+
+    /**
+     * Releases the given number of elements, starting with the element returned by the last call to {@link #peek()},
+     * to the producer.
+     */
+    void release(final int count) {
+        tail += count; // only the consumer thread writes this field
+        final Thread producer = parkedProducer;
+        if (null != producer) {
+            LockSupport.unpark(producer);
+        }
+    }
+
+    /** Returns {@code true} if and only if the consumer thread has been interrupted while waiting in {@link #peek()}. */
+    boolean consumerInterrupted() { return consumerInterrupted; }
+}
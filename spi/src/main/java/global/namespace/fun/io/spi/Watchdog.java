@@ -0,0 +1,95 @@
+/*
+ * Copyright © 2017 - 2020 Schlichtherle IT Services
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package global.namespace.fun.io.spi;
+
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.Optional;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Enforces the cancellation token, the timeout and the idle timeout of the copy options for a single copy operation.
+ *
+ * @author Christian Schlichtherle
+ */
+final class Watchdog {
+
+    /** The maximum time to wait before checking the copy operation again. */
+    static final long SLICE_NANOS = MILLISECONDS.toNanos(10);
+
+    @SuppressWarnings("OptionalUsedAsFieldOrParameterType")
+    private final Optional<CancellationToken> token;
+
+    private final long start, timeoutNanos, idleTimeoutNanos;
+
+    private long lastProgress;
+
+    private Watchdog(final CopyOptions options) {
+        this.token = options.cancellationToken();
+        this.start = this.lastProgress = System.nanoTime();
+        this.timeoutNanos = options.timeout().map(Duration::toNanos).orElse(0L);
+        this.idleTimeoutNanos = options.idleTimeout().map(Duration::toNanos).orElse(0L);
+    }
+
+    /**
+     * Returns a new watchdog for a copy operation which starts now or {@code null} if the given copy options neither
+     * have a cancellation token nor a timeout nor an idle timeout.
+     */
+    static Watchdog of(final CopyOptions options) throws InterruptedIOException {
+        if (options.cancellationToken().isPresent() || options.timeout().isPresent()
+                || options.idleTimeout().isPresent()) {
+            final Watchdog watchdog = new Watchdog(options);
+            watchdog.check(0);
+            return watchdog;
+        } else {
+            return null;
+        }
+    }
+
+    /** Throws an {@link InterruptedIOException} if the cancellation token of the given copy options is cancelled. */
+    static void checkCancelled(final CopyOptions options) throws InterruptedIOException {
+        final Optional<CancellationToken> token = options.cancellationToken();
+        if (token.isPresent() && token.get().isCancelled()) {
+            throw new InterruptedIOException("The copy operation has been cancelled.");
+        }
+    }
+
+    /** Records that the copy operation has made some progress. */
+    void progress() { lastProgress = System.nanoTime(); }
+
+    /**
+     * Throws an {@link InterruptedIOException} if the copy operation has been cancelled or has timed out.
+     *
+     * @param bytes the number of bytes transferred so far.
+     */
+    void check(final long bytes) throws InterruptedIOException {
+        final String message;
+        final long now = System.nanoTime();
+        if (token.isPresent() && token.get().isCancelled()) {
+            message = "The copy operation has been cancelled.";
+        } else if (0 < timeoutNanos && timeoutNanos <= now - start) {
+            message = "The copy operation has timed out.";
+        } else if (0 < idleTimeoutNanos && idleTimeoutNanos <= now - lastProgress) {
+            message = "The copy operation has been idle for too long.";
+        } else {
+            return;
+        }
+        final InterruptedIOException e = new InterruptedIOException(message);
+        e.bytesTransferred = (int) Math.min(Integer.MAX_VALUE, bytes);
+        throw e;
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright © 2017 - 2020 Schlichtherle IT Services
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package global.namespace.fun.io.spi
+
+import java.io.{ByteArrayInputStream, ByteArrayOutputStream, InputStream, InterruptedIOException, OutputStream}
+import java.util.Random
+import java.util.concurrent.{Callable, CancellationException, ConcurrentLinkedQueue, CountDownLatch, ExecutionException, Executors, TimeUnit}
+
+import global.namespace.fun.io.api.{Sink, Socket, Source}
+import global.namespace.fun.io.spi.Copy.copyAsync
+import org.scalatest.matchers.should.Matchers._
+import org.scalatest.wordspec.AnyWordSpec
+
+import scala.jdk.CollectionConverters._
+
+class AsyncSpec extends AnyWordSpec {
+
+  private val data = {
+    val b = new Array[Byte](1024 * 1024 + 1)
+    new Random(0).nextBytes(b)
+    b
+  }
+
+  private val source: Source = () => (() => new ByteArrayInputStream(data)): Socket[InputStream]
+
+  "Copy.copyAsync" should {
+    "copy the data without blocking the current thread" in {
+      val outs = Seq.fill(10)(new ByteArrayOutputStream)
+      val futures = outs map { out => copyAsync(source, () => (() => out): Socket[OutputStream], CopyOptions.defaults) }
+      futures foreach { _.get }
+      outs foreach { _.toByteArray shouldBe data }
+    }
+
+    "complete the future exceptionally when the copy operation fails" in {
+      val failing: Sink = () => (() => throw new InterruptedIOException("failed")): Socket[OutputStream]
+      val e = intercept[ExecutionException](copyAsync(source, failing, CopyOptions.defaults).get)
+      e.getCause shouldBe an[InterruptedIOException]
+    }
+
+    "abort the copy operation when cancelling the future" in {
+      val started = new CountDownLatch(1)
+      val endless: Source = () => (() => new InputStream {
+        override def read: Int = 0
+
+        override def read(b: Array[Byte], off: Int, len: Int): Int = {
+          started.countDown()
+          Thread.sleep(1)
+          len
+        }
+      }): Socket[InputStream]
+      val aborted = new CountDownLatch(1)
+      val sink: Sink = () => (() => new OutputStream {
+        override def write(b: Int): Unit = ()
+
+        override def close(): Unit = aborted.countDown()
+      }): Socket[OutputStream]
+      val future = copyAsync(endless, sink, CopyOptions.builder.synchronousThreshold(0).build)
+      started.await()
+      future.cancel(false) shouldBe true
+      intercept[CancellationException](future.get)
+      aborted.await(10, TimeUnit.SECONDS) shouldBe true
+    }
+  }
+
+  "An async source and sink" should {
+    "read and write the content asynchronously" in {
+      val out = new ByteArrayOutputStream
+      AsyncSink.of(() => (() => out): Socket[OutputStream]).content(data).get
+      out.toByteArray shouldBe data
+      AsyncSource.of(source).content.get shouldBe data
+      AsyncSource.of(source).applyReader[Int]((in: InputStream) => in.read).get shouldBe (data(0) & 0xff)
+    }
+
+    "read the content of a source which is not a store only on the given executor" in {
+      val executor = Executors.newSingleThreadExecutor
+      try {
+        val thread = executor.submit((() => Thread.currentThread): Callable[Thread]).get
+        val readers = new ConcurrentLinkedQueue[Thread]
+        val source: Source = () => (() => new ByteArrayInputStream(data) {
+          override def read(b: Array[Byte], off: Int, len: Int): Int = {
+            readers add Thread.currentThread
+            super.read(b, off, len)
+          }
+        }): Socket[InputStream]
+        AsyncSource.of(source, executor).content.get shouldBe data
+        readers should not be empty
+        readers.asScala.toSet shouldBe Set(thread)
+      } finally {
+        executor.shutdown()
+      }
+    }
+  }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright © 2017 - 2020 Schlichtherle IT Services
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package global.namespace.fun.io.spi
+
+import java.nio.ByteBuffer
+
+import org.scalatest.matchers.should.Matchers._
+import org.scalatest.prop.TableDrivenPropertyChecks._
+import org.scalatest.wordspec.AnyWordSpec
+
+class BufferArenaSpec extends AnyWordSpec {
+
+  "A buffer arena" should {
+    "round up the requested capacity to the next size class" in {
+      val capacities = Table(
+        ("requested", "expected"),
+        (0, 1024),
+        (1, 1024),
+        (1024, 1024),
+        (1025, 2048),
+        (8192, 8192),
+        (1000 * 1000, 1024 * 1024),
+        (1024 * 1024 + 1, 1024 * 1024 + 1),
+      )
+      forAll(capacities) { (requested, expected) =>
+        val buffer = BufferArena.heap acquire requested
+        buffer.capacity shouldBe expected
+        buffer.position() shouldBe 0
+        buffer.limit() shouldBe expected
+        buffer.arrayOffset shouldBe 0
+        BufferArena.heap release buffer
+      }
+    }
+
+    "reuse a released buffer" in {
+      for (arena <- Seq(BufferArena.heap, BufferArena.direct)) {
+        val buffer = arena acquire 4096
+        buffer.isDirect shouldBe arena.directBuffers
+        buffer.putInt(1).limit(2)
+        arena release buffer shouldBe true
+        val hits = arena.hits
+        val reused = arena acquire 4000
+        reused should be theSameInstanceAs buffer
+        reused.position() shouldBe 0
+        reused.limit() shouldBe 4096
+        arena.hits shouldBe hits + 1
+        arena release reused
+      }
+    }
+
+    "discard buffers which do not fit into any size class" in {
+      for (buffer <- Seq(ByteBuffer allocate 1000, ByteBuffer allocateDirect 1024, BufferArena.heap acquire 2 * 1024 * 1024)) {
+        val discards = BufferArena.heap.discards
+        BufferArena.heap release buffer shouldBe false
+        BufferArena.heap.discards shouldBe discards + 1
+      }
+    }
+
+    "bound the number of pooled buffers" in {
+      val buffers = Seq.fill(10)(BufferArena.heap acquire 1024 * 1024)
+      val discards = BufferArena.heap.discards
+      buffers foreach BufferArena.heap.release
+      BufferArena.heap.discards should be >= discards + 6
+    }
+
+    "reject a negative capacity" in {
+      intercept[IllegalArgumentException](BufferArena.heap acquire -1)
+    }
+  }
+}
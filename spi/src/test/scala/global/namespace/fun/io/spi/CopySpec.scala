@@ -0,0 +1,641 @@
+/*
+ * Copyright © 2017 - 2020 Schlichtherle IT Services
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package global.namespace.fun.io.spi
+
+import java.io._
+import java.nio.ByteBuffer
+import java.nio.channels.{Channels, FileChannel, GatheringByteChannel, ScatteringByteChannel}
+import java.nio.file.Files.{createTempFile, deleteIfExists, readAllBytes, write}
+import java.nio.file.Path
+import java.nio.file.StandardOpenOption.{CREATE, READ, TRUNCATE_EXISTING, WRITE}
+import java.security.{MessageDigest, NoSuchAlgorithmException}
+import java.time.Duration
+import java.util.concurrent.TimeUnit.{MILLISECONDS, SECONDS}
+import java.util.concurrent.{CountDownLatch, Executors}
+import java.util.zip.CRC32
+import java.util.{OptionalLong, Random}
+
+import global.namespace.fun.io.api.{Sink, Socket, Source, Store}
+import global.namespace.fun.io.spi.Copy.{copy, copyAndDigest}
+import org.mockito.Mockito._
+import org.scalatest.matchers.should.Matchers._
+import org.scalatest.prop.TableDrivenPropertyChecks._
+import org.scalatest.wordspec.AnyWordSpec
+import org.scalatestplus.mockito.MockitoSugar.mock
+
+import scala.jdk.CollectionConverters._
+
+class CopySpec extends AnyWordSpec {
+
+  private val data = {
+    val b = new Array[Byte](1024 * 1024 + 1)
+    new Random(0).nextBytes(b)
+    b
+  }
+
+  "Copy.copy" should {
+    "copy the data" when {
+      "both streams are backed by file channels" in withFiles { (from, to) =>
+        copy(channelInput(from), channelOutput(to))
+        readAllBytes(to) shouldBe data
+      }
+
+      "both streams are plain file streams" in withFiles { (from, to) =>
+        copy(input(new FileInputStream(from.toFile)), output(new FileOutputStream(to.toFile)))
+        readAllBytes(to) shouldBe data
+      }
+
+      "the input stream has already been partially read" in withFiles { (from, to) =>
+        copy(channelInput(from).map { in => in skip 1000; in }, channelOutput(to))
+        readAllBytes(to) shouldBe data.drop(1000)
+      }
+
+      "a filter stream gets in the way" in withFiles { (from, to) =>
+        copy(channelInput(from).map(new BufferedInputStream(_)), channelOutput(to))
+        readAllBytes(to) shouldBe data
+      }
+
+      "only the input stream is backed by a file channel" in withFiles { (from, _) =>
+        val out = new ByteArrayOutputStream
+        copy(channelInput(from), output(out))
+        out.toByteArray shouldBe data
+      }
+
+      "no stream is backed by a file channel" in {
+        val out = new ByteArrayOutputStream
+        copy(input(new ByteArrayInputStream(data)), output(out))
+        out.toByteArray shouldBe data
+      }
+    }
+
+    "copy the data using the given options" when {
+      val options = Table(
+        "options",
+        CopyOptions.builder.bufferSize(1000).fifoSize(2).build,
+        CopyOptions.builder.bufferSize(64 * 1024).fifoSize(16).build,
+        CopyOptions.builder.directBuffers(true).build,
+        CopyOptions.builder.executor(Executors.newSingleThreadExecutor).build,
+      )
+
+      "no stream is backed by a channel" in {
+        forAll(options) { options =>
+          val out = new ByteArrayOutputStream
+          copy(input(blockingInput), output(out), options)
+          out.toByteArray shouldBe data
+        }
+      }
+
+      "both streams are backed by channels which are not file channels" in {
+        forAll(options) { options =>
+          val out = new ByteArrayOutputStream
+          copy(
+            input(new ChannelInputStream(Channels.newChannel(new ByteArrayInputStream(data)))),
+            output(new ChannelOutputStream(Channels.newChannel(out))),
+            options
+          )
+          out.toByteArray shouldBe data
+        }
+      }
+    }
+
+    "copy the data with scattering reads and gathering writes" when {
+      "both streams are backed by channels which support vectored I/O" in {
+        val in = new VectoredInput
+        val out = new VectoredOutput
+        copy(input(new ChannelInputStream(in)), output(new ChannelOutputStream(out)), CopyOptions.builder.fifoSize(8).build)
+        out.toByteArray shouldBe data
+        in.maxBuffers should be > 1
+        out.maxBuffers should be > 1
+        out.direct shouldBe true
+      }
+    }
+
+    "copy the data synchronously" when {
+      val synchronous = CopyOptions.builder.executor(_ => fail()).build
+
+      "the size of the source is known and does not exceed the threshold" in {
+        val thread = Thread.currentThread
+        val options = CopyOptions.builder.synchronousThreshold(data.length).executor(_ => fail()).build
+        val source: Source = () => input {
+          new ByteArrayInputStream(data) {
+            override def read(b: Array[Byte], off: Int, len: Int): Int = {
+              Thread.currentThread shouldBe thread
+              super.read(b, off, len)
+            }
+          }
+        }
+        val store = mock[Store]
+        when(store.size) thenReturn OptionalLong.of(data.length)
+        when(store.input) thenReturn source.input
+        val out = new ByteArrayOutputStream
+        copy(store, (() => output(out)): Sink, options)
+        out.toByteArray shouldBe data
+      }
+
+      "the size of the source is small and the default threshold applies" in {
+        val small = data take 1000
+        val store = mock[Store]
+        when(store.size) thenReturn OptionalLong.of(small.length)
+        when(store.input) thenReturn input(new ByteArrayInputStream(small) {})
+        val out = new ByteArrayOutputStream
+        copy(store, (() => output(out)): Sink, synchronous)
+        out.toByteArray shouldBe small
+      }
+
+      "the input stream never blocks" in {
+        val out = new ByteArrayOutputStream
+        copy(input(new ByteArrayInputStream(data)), output(out), synchronous)
+        out.toByteArray shouldBe data
+      }
+    }
+
+    "copy the data asynchronously" when {
+      "the size of the source is unknown and the input stream may block" in {
+        var executed = false
+        val options = CopyOptions.builder.executor { task => executed = true; Copy.defaultExecutor execute task }.build
+        val out = new ByteArrayOutputStream
+        copy(input(blockingInput), output(out), options)
+        out.toByteArray shouldBe data
+        executed shouldBe true
+      }
+    }
+  }
+
+  "Copy.copy with a copy listener" should {
+    "report the statistics of each copy operation" when {
+      "copying between file channels" in withFiles { (from, to) =>
+        val statistics = listen(copy(channelInput(from), channelOutput(to), _))
+        statistics.sourceType shouldBe classOf[ChannelInputStream]
+        statistics.sinkType shouldBe classOf[ChannelOutputStream]
+        statistics.bytes shouldBe data.length
+        statistics.failed shouldBe false
+      }
+
+      "copying synchronously" in {
+        val statistics = listen(copy(input(new ByteArrayInputStream(data)), output(new ByteArrayOutputStream), _))
+        statistics.sourceType shouldBe classOf[ByteArrayInputStream]
+        statistics.bytes shouldBe data.length
+        statistics.chunks shouldBe (data.length + Store.BUFSIZE - 1) / Store.BUFSIZE
+        statistics.readerWaitNanos shouldBe 0
+        statistics.writerWaitNanos shouldBe 0
+      }
+
+      "copying asynchronously from a slow source" in {
+        val slow = new ByteArrayInputStream(data) {
+          override def read(b: Array[Byte], off: Int, len: Int): Int = {
+            Thread.sleep(1)
+            super.read(b, off, len)
+          }
+        }
+        val statistics = listen(copy(input(slow), output(new ByteArrayOutputStream), _))
+        statistics.bytes shouldBe data.length
+        statistics.writerWaitNanos should be > statistics.readerWaitNanos
+        statistics.wallNanos should be >= statistics.writerWaitNanos
+      }
+
+      "copying from a source to a sink" in {
+        val store = mock[Store]
+        when(store.size) thenReturn OptionalLong.of(data.length)
+        when(store.input) thenReturn input(new ByteArrayInputStream(data))
+        val sink: Sink = () => output(new ByteArrayOutputStream)
+        val statistics = listen(copy(store, sink, _))
+        statistics.sourceType shouldBe store.getClass
+        statistics.sinkType shouldBe sink.getClass
+      }
+
+      "the copy operation fails" in {
+        val failing = new ByteArrayInputStream(data) {
+          override def read(b: Array[Byte], off: Int, len: Int): Int = throw new IOException
+        }
+        var statistics: CopyStatistics = null
+        val options = CopyOptions.builder.listener(statistics = _).build
+        intercept[IOException](copy(input(failing), output(new ByteArrayOutputStream), options))
+        statistics.failed shouldBe true
+        statistics.bytes shouldBe 0
+      }
+    }
+
+    "aggregate the statistics per source and sink type" in {
+      val metrics = new CopyMetrics
+      val options = CopyOptions.builder.listener(metrics).build
+      for (_ <- 1 to 3) {
+        copy(input(new ByteArrayInputStream(data)), output(new ByteArrayOutputStream), options)
+      }
+      val summaries = metrics.summaries
+      summaries should have size 1
+      val summary = summaries.iterator.next
+      summary.sourceType shouldBe classOf[ByteArrayInputStream]
+      summary.sinkType shouldBe classOf[ByteArrayOutputStream]
+      summary.operations shouldBe 3
+      summary.failures shouldBe 0
+      summary.bytes shouldBe 3L * data.length
+      summary.bytesPerSecond should be > 0.0
+      metrics.reset()
+      metrics.summaries shouldBe empty
+    }
+  }
+
+  "Copy.copy with a cancellation token or timeout" should {
+    "abort the copy operation and close the input stream" when {
+      "the idle timeout elapses while reading is stuck" in {
+        val in = new StuckInputStream
+        val options = CopyOptions.builder.idleTimeout(Duration ofMillis 100).build
+        val e = intercept[InterruptedIOException](copy(input(in), output(new ByteArrayOutputStream), options))
+        e.getMessage should include("idle")
+        in.closed shouldBe true
+      }
+
+      "the token gets cancelled while reading is stuck" in {
+        val in = new StuckInputStream
+        val token = new CancellationToken
+        val options = CopyOptions.builder.cancellationToken(token).build
+        Executors.newSingleThreadScheduledExecutor.schedule((() => token.cancel()): Runnable, 100, MILLISECONDS)
+        val e = intercept[InterruptedIOException](copy(input(in), output(new ByteArrayOutputStream), options))
+        e.getMessage should include("cancelled")
+        in.closed shouldBe true
+      }
+
+      "the timeout elapses while reading is slow" in {
+        val slow = new ByteArrayInputStream(data) {
+          override def read(b: Array[Byte], off: Int, len: Int): Int = {
+            Thread.sleep(10)
+            super.read(b, off, len)
+          }
+        }
+        val options = CopyOptions.builder.timeout(Duration ofMillis 100).build
+        val e = intercept[InterruptedIOException](copy(input(slow), output(new ByteArrayOutputStream), options))
+        e.getMessage should include("timed out")
+        e.bytesTransferred should be > 0
+      }
+    }
+
+    "return promptly" when {
+      "the reader thread ignores both closing the input stream and interruption" in {
+        val latch = new CountDownLatch(1)
+        val in = new InputStream {
+          override def read(): Int = {
+            while (latch.getCount > 0) {
+              try {
+                latch.await()
+              } catch {
+                case _: InterruptedException =>
+              }
+            }
+            -1
+          }
+        }
+        val options = CopyOptions.builder.idleTimeout(Duration ofMillis 100).build
+        try {
+          val start = System.nanoTime
+          intercept[InterruptedIOException](copy(input(in), output(new ByteArrayOutputStream), options))
+          (System.nanoTime - start) should be < SECONDS.toNanos(5)
+        } finally {
+          latch.countDown()
+        }
+      }
+
+      "writing fails while the reader thread ignores interruption" in {
+        val latch = new CountDownLatch(1)
+        val in = new InputStream {
+
+          var first = true
+
+          override def read(): Int = {
+            if (first) {
+              first = false
+              return 0
+            }
+            while (latch.getCount > 0) {
+              try {
+                latch.await()
+              } catch {
+                case _: InterruptedException =>
+              }
+            }
+            -1
+          }
+
+          override def read(b: Array[Byte], off: Int, len: Int): Int = {
+            if (0 == len) 0 else {
+              val c = read()
+              if (0 > c) c else {
+                b(off) = c.toByte
+                1
+              }
+            }
+          }
+        }
+        val out = new OutputStream {
+          override def write(b: Int): Unit = throw new IOException("boom")
+        }
+        try {
+          val start = System.nanoTime
+          intercept[IOException](copy(input(in), output(out))).getMessage shouldBe "boom"
+          (System.nanoTime - start) should be < SECONDS.toNanos(5)
+        } finally {
+          latch.countDown()
+        }
+      }
+    }
+
+    "not even start the copy operation" when {
+      "the token has been cancelled before" in {
+        val token = new CancellationToken
+        token.cancel()
+        val options = CopyOptions.builder.cancellationToken(token).build
+        intercept[InterruptedIOException](copy(input(fail()), output(fail()), options))
+      }
+    }
+
+    "copy the data" when {
+      "the copy operation does not get cancelled and does not time out" in withFiles { (from, to) =>
+        val options = CopyOptions.builder
+          .cancellationToken(new CancellationToken)
+          .timeout(Duration ofMinutes 1)
+          .idleTimeout(Duration ofMinutes 1)
+          .build
+        copy(channelInput(from), channelOutput(to), options)
+        readAllBytes(to) shouldBe data
+        val out = new ByteArrayOutputStream
+        copy(input(blockingInput), output(out), options)
+        out.toByteArray shouldBe data
+      }
+    }
+  }
+
+  "Copy.copy with a rate limiter" should {
+    "not exceed the maximum number of bytes per second" when {
+      "copying between file channels" in withFiles { (from, to) =>
+        val options = CopyOptions.builder.rateLimiter(limiter(_ bytesPerSecond 8 * 1024 * 1024)).build
+        elapsedMillis(copy(channelInput(from), channelOutput(to), options)) should be >= 120L
+        readAllBytes(to) shouldBe data
+      }
+
+      "copying asynchronously" in {
+        val options = CopyOptions.builder.rateLimiter(limiter(_ bytesPerSecond 8 * 1024 * 1024)).build
+        val out = new ByteArrayOutputStream
+        elapsedMillis(copy(input(blockingInput), output(out), options)) should be >= 120L
+        out.toByteArray shouldBe data
+      }
+
+      "sharing the rate limiter between concurrent copy operations" in {
+        val options = CopyOptions.builder.rateLimiter(limiter(_ bytesPerSecond 8 * 1024 * 1024)).build
+        val outs = Seq.fill(2)(new ByteArrayOutputStream)
+        val executor = Executors.newFixedThreadPool(outs.size)
+        try {
+          elapsedMillis {
+            outs
+              .map(out => executor.submit(new Runnable { def run(): Unit = copy(input(blockingInput), output(out), options) }))
+              .foreach(_.get)
+          } should be >= 245L
+        } finally {
+          executor.shutdown()
+        }
+        outs.foreach(_.toByteArray shouldBe data)
+      }
+    }
+
+    "not exceed the maximum number of operations per second" in {
+      val options = CopyOptions.builder
+        .bufferSize(64 * 1024)
+        .rateLimiter(limiter(_ operationsPerSecond 100))
+        .build
+      val out = new ByteArrayOutputStream
+      elapsedMillis(copy(input(blockingInput), output(out), options)) should be >= 160L
+      out.toByteArray shouldBe data
+    }
+
+    "not trigger the idle timeout while throttling" in {
+      val options = CopyOptions.builder
+        .bufferSize(256 * 1024)
+        .idleTimeout(Duration ofMillis 50)
+        .rateLimiter(limiter(_ bytesPerSecond 2 * 1024 * 1024))
+        .build
+      val out = new ByteArrayOutputStream
+      copy(input(blockingInput), output(out), options)
+      out.toByteArray shouldBe data
+    }
+
+    "abort the copy operation" when {
+      "the timeout elapses while throttling" in {
+        val options = CopyOptions.builder
+          .timeout(Duration ofMillis 100)
+          .rateLimiter(limiter(_ bytesPerSecond 1024 * 1024))
+          .build
+        val e = intercept[InterruptedIOException](copy(input(blockingInput), output(new ByteArrayOutputStream), options))
+        e.getMessage should include("timed out")
+      }
+    }
+  }
+
+  "Copy.copyAndDigest" should {
+    "copy the data and compute its digests" when {
+      "both streams are backed by file channels" in withFiles { (from, to) =>
+        check(copyAndDigest(() => channelInput(from), () => channelOutput(to), CopyOptions.defaults, "SHA-256", "CRC32"))
+        readAllBytes(to) shouldBe data
+      }
+
+      "copying synchronously" in {
+        val out = new ByteArrayOutputStream
+        check(copyAndDigest(() => input(new ByteArrayInputStream(data)), () => output(out), CopyOptions.defaults, "SHA-256", "CRC32"))
+        out.toByteArray shouldBe data
+      }
+
+      "copying asynchronously" in {
+        val out = new ByteArrayOutputStream
+        check(copyAndDigest(() => input(blockingInput), () => output(out), CopyOptions.defaults, "SHA-256", "CRC32"))
+        out.toByteArray shouldBe data
+      }
+
+      "copying with scattering reads and gathering writes" in {
+        val out = new VectoredOutput
+        check(copyAndDigest(
+          () => input(new ChannelInputStream(new VectoredInput)),
+          () => output(new ChannelOutputStream(out)),
+          CopyOptions.builder.fifoSize(8).build,
+          "SHA-256", "CRC32"))
+        out.toByteArray shouldBe data
+      }
+    }
+
+    "fail" when {
+      "no algorithm is given" in {
+        intercept[IllegalArgumentException](copyAndDigest(() => input(fail()), () => output(fail()), CopyOptions.defaults))
+      }
+
+      "an algorithm is unknown" in {
+        intercept[NoSuchAlgorithmException] {
+          copyAndDigest(() => input(fail()), () => output(fail()), CopyOptions.defaults, "CRC32", "FOO")
+        }
+      }
+    }
+  }
+
+  private def check(result: CopyResult): Unit = {
+    result.size shouldBe data.length
+    result.algorithms.asScala.toSeq shouldBe Seq("SHA-256", "CRC32")
+    result.digest("SHA-256") shouldBe MessageDigest.getInstance("SHA-256").digest(data)
+    val crc = new CRC32
+    crc update data
+    result.hex("CRC32") shouldBe f"${crc.getValue}%08x"
+    intercept[IllegalArgumentException](result digest "MD5")
+  }
+
+  "RateLimiter.builder" should {
+    "reject negative limits" in {
+      intercept[IllegalArgumentException](RateLimiter.builder.bytesPerSecond(-1))
+      intercept[IllegalArgumentException](RateLimiter.builder.operationsPerSecond(-1))
+      intercept[IllegalArgumentException](RateLimiter.builder.burst(Duration ofMillis -1))
+    }
+  }
+
+  private def limiter(configure: RateLimiter.Builder => RateLimiter.Builder): RateLimiter = {
+    configure(RateLimiter.builder.burst(Duration.ZERO)).build
+  }
+
+  private def elapsedMillis(block: => Any): Long = {
+    val start = System.nanoTime
+    block
+    (System.nanoTime - start) / 1000000
+  }
+
+  private def listen(copy: CopyOptions => Unit): CopyStatistics = {
+    var statistics: CopyStatistics = null
+    var total = 0L
+    copy(CopyOptions.builder.listener(new CopyListener {
+
+      override def progress(bytes: Long): Unit = total += bytes
+
+      override def completed(s: CopyStatistics): Unit = statistics = s
+    }).build)
+    statistics should not be null
+    total shouldBe statistics.bytes
+    statistics
+  }
+
+  /** An input stream which blocks reading until it gets closed. */
+  private class StuckInputStream extends InputStream {
+
+    private val latch = new CountDownLatch(1)
+
+    def closed: Boolean = 0 == latch.getCount
+
+    override def read(): Int = {
+      latch.await()
+      throw new IOException("Stream closed.")
+    }
+
+    override def close(): Unit = latch.countDown()
+  }
+
+  /** Returns an input stream which `Copy` cannot identify as non-blocking. */
+  /** A scattering channel which reads the data slowly. */
+  private class VectoredInput extends ScatteringByteChannel {
+
+    private val buffer = ByteBuffer wrap data
+
+    @volatile var maxBuffers = 0
+
+    override def read(dsts: Array[ByteBuffer], offset: Int, length: Int): Long = synchronized {
+      maxBuffers = maxBuffers max length
+      if (!buffer.hasRemaining) {
+        -1
+      } else {
+        MILLISECONDS sleep 1
+        var total = 0L
+        for (dst <- dsts.slice(offset, offset + length)) {
+          val n = dst.remaining min buffer.remaining
+          val slice = buffer.duplicate
+          slice.limit(slice.position() + n)
+          dst put slice
+          buffer.position(buffer.position() + n)
+          total += n
+        }
+        total
+      }
+    }
+
+    override def read(dsts: Array[ByteBuffer]): Long = read(dsts, 0, dsts.length)
+
+    override def read(dst: ByteBuffer): Int = read(Array(dst)).toInt
+
+    override def isOpen: Boolean = true
+
+    override def close(): Unit = ()
+  }
+
+  /** A gathering channel which writes the data slowly. */
+  private class VectoredOutput extends GatheringByteChannel {
+
+    private val out = new ByteArrayOutputStream
+
+    @volatile var maxBuffers = 0
+
+    @volatile var direct = false
+
+    def toByteArray: Array[Byte] = out.toByteArray
+
+    override def write(srcs: Array[ByteBuffer], offset: Int, length: Int): Long = synchronized {
+      maxBuffers = maxBuffers max length
+      MILLISECONDS sleep 1
+      var total = 0L
+      for (src <- srcs.slice(offset, offset + length)) {
+        direct = src.isDirect
+        val n = src.remaining
+        val b = new Array[Byte](n)
+        src get b
+        out write b
+        total += n
+      }
+      total
+    }
+
+    override def write(srcs: Array[ByteBuffer]): Long = write(srcs, 0, srcs.length)
+
+    override def write(src: ByteBuffer): Int = write(Array(src)).toInt
+
+    override def isOpen: Boolean = true
+
+    override def close(): Unit = ()
+  }
+
+  private def blockingInput: InputStream = new ByteArrayInputStream(data) {}
+
+  private def input(in: => InputStream): Socket[InputStream] = () => in
+
+  private def output(out: => OutputStream): Socket[OutputStream] = () => out
+
+  private def channelInput(path: Path): Socket[InputStream] = () => new ChannelInputStream(FileChannel.open(path, READ))
+
+  private def channelOutput(path: Path): Socket[OutputStream] = {
+    () => new ChannelOutputStream(FileChannel.open(path, CREATE, TRUNCATE_EXISTING, WRITE))
+  }
+
+  private def withFiles(test: (Path, Path) => Any): Unit = {
+    val from = createTempFile("from", null)
+    try {
+      write(from, data)
+      val to = createTempFile("to", null)
+      try {
+        test(from, to)
+      } finally {
+        deleteIfExists(to)
+      }
+    } finally {
+      deleteIfExists(from)
+    }
+  }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright © 2017 - 2020 Schlichtherle IT Services
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package global.namespace.fun.io.spi
+
+import java.io.{ByteArrayInputStream, ByteArrayOutputStream, IOException, InputStream, OutputStream}
+import java.time.Duration
+import java.util.Random
+import java.util.concurrent.TimeUnit.MILLISECONDS
+
+import global.namespace.fun.io.api.{Sink, Socket, Source}
+import global.namespace.fun.io.spi.Copy.fanOut
+import global.namespace.fun.io.spi.FanOutPolicy.{BEST_EFFORT, FAIL_FAST}
+import org.scalatest.matchers.should.Matchers._
+import org.scalatest.wordspec.AnyWordSpec
+
+import scala.jdk.CollectionConverters._
+
+class FanOutSpec extends AnyWordSpec {
+
+  private val data = {
+    val b = new Array[Byte](1024 * 1024 + 1)
+    new Random(0).nextBytes(b)
+    b
+  }
+
+  private val options = CopyOptions.builder.bufferSize(16 * 1024).build
+
+  private val source: Source = () => (() => new ByteArrayInputStream(data)): Socket[InputStream]
+
+  "Copy.fanOut" should {
+    "copy the data to all sinks" when {
+      "all sinks are fast" in {
+        val sinks = Seq.fill(3)(new TestSink)
+        fanOut(source, sinks.asJava, options)
+        sinks.foreach(_.content shouldBe data)
+      }
+
+      "some sink is slow" in {
+        val sinks = Seq(new TestSink, new TestSink(delayMillis = 1), new TestSink)
+        fanOut(source, sinks.asJava, options)
+        sinks.foreach(_.content shouldBe data)
+      }
+    }
+
+    "abort the copy operation and throw the exception" when {
+      "writing to some sink fails and the policy is fail-fast" in {
+        val sinks = Seq(new TestSink, new TestSink(failAfter = 100 * 1024), new TestSink)
+        val e = intercept[IOException](fanOut(source, sinks.asJava, options, FAIL_FAST))
+        e.getMessage shouldBe "failed"
+        sinks.foreach(_.content.length should be < data.length)
+      }
+
+      "writing to all sinks fails and the policy is best-effort" in {
+        val sinks = Seq.fill(2)(new TestSink(failAfter = 100 * 1024))
+        val e = intercept[IOException](fanOut(source, sinks.asJava, options, BEST_EFFORT))
+        e.getMessage shouldBe "failed"
+        e.getSuppressed should have size 1
+      }
+
+      "reading the source fails" in {
+        val failing: Source = () => (() => new ByteArrayInputStream(data) {
+          override def read(b: Array[Byte], off: Int, len: Int): Int = throw new IOException("cannot read")
+        }): Socket[InputStream]
+        val e = intercept[IOException](fanOut(failing, Seq(new TestSink).asJava, options))
+        e.getMessage shouldBe "cannot read"
+      }
+    }
+
+    "copy the data to the remaining sinks and report the failures" when {
+      "writing to some sink fails and the policy is best-effort" in {
+        val failing = new TestSink(failAfter = 100 * 1024)
+        val sinks = Seq(new TestSink, failing, new TestSink)
+        val failures = fanOut(source, sinks.asJava, options, BEST_EFFORT).asScala
+        failures.keySet shouldBe Set(failing)
+        failures(failing).getMessage shouldBe "failed"
+        sinks.filter(_ ne failing).foreach(_.content shouldBe data)
+      }
+    }
+
+    "throttle reading the data with the rate limiter" in {
+      val limiter = RateLimiter.builder.bytesPerSecond(8 * 1024 * 1024).burst(Duration.ZERO).build
+      val sinks = Seq.fill(2)(new TestSink)
+      val start = System.nanoTime
+      fanOut(source, sinks.asJava, CopyOptions.builder.bufferSize(16 * 1024).rateLimiter(limiter).build)
+      (System.nanoTime - start) / 1000000 should be >= 120L
+      sinks.foreach(_.content shouldBe data)
+    }
+
+    "report the progress and the statistics to the copy listener" in {
+      @volatile var total = 0L
+      @volatile var statistics: CopyStatistics = null
+      val listener = new CopyListener {
+
+        override def progress(bytes: Long): Unit = total += bytes
+
+        def completed(s: CopyStatistics): Unit = statistics = s
+      }
+      val sinks = Seq.fill(2)(new TestSink)
+      fanOut(source, sinks.asJava, CopyOptions.builder.bufferSize(16 * 1024).listener(listener).build)
+      total shouldBe data.length
+      statistics.sinkType shouldBe classOf[TestSink]
+      statistics.bytes shouldBe data.length
+      statistics.failed shouldBe false
+    }
+
+    "read at most the given buffer size at once" in {
+      var max = 0
+      val source: Source = () => (() => new ByteArrayInputStream(data) {
+        override def read(b: Array[Byte], off: Int, len: Int): Int = {
+          max = max max len
+          super.read(b, off, len)
+        }
+      }): Socket[InputStream]
+      fanOut(source, Seq(new TestSink).asJava, CopyOptions.builder.bufferSize(10000).build)
+      max shouldBe 10000
+    }
+
+    "reject an empty list of sinks" in {
+      intercept[IllegalArgumentException](fanOut(source, Seq.empty[Sink].asJava, options))
+    }
+  }
+
+  private class TestSink(delayMillis: Long = 0, failAfter: Int = Int.MaxValue) extends Sink {
+
+    private val out = new ByteArrayOutputStream
+
+    def content: Array[Byte] = out.synchronized(out.toByteArray)
+
+    override def output: Socket[OutputStream] = () => new OutputStream {
+
+      override def write(b: Int): Unit = write(Array(b.toByte), 0, 1)
+
+      override def write(b: Array[Byte], off: Int, len: Int): Unit = {
+        if (0 < delayMillis) {
+          MILLISECONDS sleep delayMillis
+        }
+        out.synchronized {
+          if (out.size + len > failAfter) {
+            throw new IOException("failed")
+          }
+          out.write(b, off, len)
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright © 2017 - 2020 Schlichtherle IT Services
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package global.namespace.fun.io.spi
+
+import java.io._
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.{Optional, Random}
+
+import global.namespace.fun.io.api._
+import global.namespace.fun.io.spi.Copy.copy
+import global.namespace.fun.io.spi.ParallelCopySpec._
+import org.scalatest.matchers.should.Matchers._
+import org.scalatest.wordspec.AnyWordSpec
+
+import scala.jdk.CollectionConverters._
+
+class ParallelCopySpec extends AnyWordSpec {
+
+  private val entries = {
+    val random = new Random(0)
+    (1 to 50).map { i =>
+      val b = new Array[Byte](random.nextInt(if (0 == i % 10) 2 * 1024 * 1024 else 10 * 1024))
+      random.nextBytes(b)
+      s"entry-$i" -> b
+    }
+  }
+
+  private val contents = entries.map { case (name, content) => name -> content.toSeq }.toMap
+
+  private val options = CopyOptions.builder.parallelism(4).build
+
+  "Copy.copy with a parallelism greater than one" should {
+    "copy the entries concurrently with bounded parallelism" when {
+      "both the archive input and output support concurrency" in {
+        val source = new TestArchiveSource(entries, concurrent = true)
+        val sink = new TestArchiveSink(concurrent = true)
+        copy(source, sink, options)
+        sink.contents shouldBe contents
+        sink.maxConcurrency should (be > 1 and be <= 4)
+      }
+    }
+
+    "read ahead the entries concurrently and write them in order by the current thread" when {
+      "only the archive input supports concurrency" in {
+        val source = new TestArchiveSource(entries, concurrent = true)
+        val sink = new TestArchiveSink(concurrent = false)
+        copy(source, sink, options)
+        sink.contents shouldBe contents
+        sink.order shouldBe entries.map(_._1)
+        sink.threads shouldBe Set(Thread.currentThread)
+        source.maxConcurrency should (be > 1 and be <= 4)
+      }
+    }
+
+    "pass the metadata of the original entries to the archive output" when {
+      "reading ahead the entries" in {
+        val source = new TestArchiveSource(entries, concurrent = true, streamed = true)
+        val sink = new TestArchiveSink(concurrent = false)
+        copy(source, sink, options)
+        sink.sizes shouldBe entries.map { case (name, content) => name -> content.length.toLong }.toMap
+      }
+    }
+
+    "copy the entries one after another" when {
+      "the archive input does not support concurrency" in {
+        val source = new TestArchiveSource(entries, concurrent = false)
+        val sink = new TestArchiveSink(concurrent = true)
+        copy(source, sink, options)
+        sink.order shouldBe entries.map(_._1)
+        source.maxConcurrency shouldBe 1
+      }
+    }
+
+    "propagate the first exception after waiting for all running tasks" when {
+      "reading an entry fails" in {
+        for (concurrent <- Seq(true, false)) {
+          val source = new TestArchiveSource(entries, concurrent = true, failing = Some("entry-5"))
+          val sink = new TestArchiveSink(concurrent = concurrent)
+          intercept[IOException](copy(source, sink, options)).getMessage shouldBe "entry-5"
+          source.active.get shouldBe 0
+          sink.active.get shouldBe 0
+        }
+      }
+    }
+  }
+}
+
+private object ParallelCopySpec {
+
+  class Gauge {
+
+    val active = new AtomicInteger
+    private val max = new AtomicInteger
+
+    def apply[A](block: => A): A = {
+      max.accumulateAndGet(active.incrementAndGet, math.max)
+      try {
+        block
+      } finally {
+        active.decrementAndGet
+      }
+    }
+
+    def maxConcurrency: Int = max.get
+  }
+
+  final class TestArchiveSource(entries: Seq[(String, Array[Byte])],
+                                concurrent: Boolean,
+                                failing: Option[String] = None,
+                                streamed: Boolean = false) extends Gauge with ArchiveSource {
+
+    override def input: Socket[ArchiveInputStream] = () => new ArchiveInputStream {
+
+      override def isConcurrent: Boolean = concurrent
+
+      override def iterator: java.util.Iterator[ArchiveEntrySource] = entries.iterator.map(source).asJava
+
+      override def source(name: String): Optional[ArchiveEntrySource] = throw new UnsupportedOperationException
+
+      def source(entry: (String, Array[Byte])): ArchiveEntrySource = new ArchiveEntrySource {
+
+        /** Whether the content has been read to the end, which is when a streamed entry knows its size. */
+        @volatile var eof = false
+
+        override def input: Socket[InputStream] = () => new ByteArrayInputStream(entry._2) {
+
+          override def read(b: Array[Byte], off: Int, len: Int): Int = apply {
+            if (failing contains entry._1) {
+              throw new IOException(entry._1)
+            }
+            Thread.sleep(1)
+            val read = super.read(b, off, len)
+            if (0 > read) {
+              eof = true
+            }
+            read
+          }
+        }
+
+        override def name: String = entry._1
+
+        override def directory: Boolean = false
+
+        override def size: Long = if (streamed && !eof) -1 else entry._2.length
+      }
+
+      override def close(): Unit = ()
+    }
+  }
+
+  final class TestArchiveSink(concurrent: Boolean) extends Gauge with ArchiveSink {
+
+    private val written = new ConcurrentLinkedQueue[(String, Array[Byte], Thread)]
+
+    private val copied = new ConcurrentLinkedQueue[(String, Long)]
+
+    override def output: Socket[ArchiveOutputStream] = () => new ArchiveOutputStream {
+
+      override def isConcurrent: Boolean = concurrent
+
+      override def sink(name: String): ArchiveEntrySink = new ArchiveEntrySink {
+
+        override def copyFrom(source: ArchiveEntrySource): Unit = apply {
+          copied.add((source.name, source.size))
+          copy(source, this)
+        }
+
+        override def output: Socket[OutputStream] = () => new ByteArrayOutputStream {
+
+          override def close(): Unit = written.add((name, toByteArray, Thread.currentThread))
+        }
+      }
+
+      override def close(): Unit = ()
+    }
+
+    def contents: Map[String, Seq[Byte]] = written.asScala.map { case (name, content, _) => name -> content.toSeq }.toMap
+
+    def order: Seq[String] = written.asScala.toSeq.map(_._1)
+
+    def threads: Set[Thread] = written.asScala.map(_._3).toSet
+
+    def sizes: Map[String, Long] = copied.asScala.toMap
+  }
+}
@@ -0,0 +1,246 @@
+/*
+ * Copyright © 2017 - 2020 Schlichtherle IT Services
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package global.namespace.fun.io.spi
+
+import java.io._
+import java.util.Random
+import java.util.concurrent.TimeUnit.MILLISECONDS
+import java.util.concurrent.{ConcurrentHashMap, CountDownLatch, Executors, RejectedExecutionException}
+import java.util.zip.{DeflaterOutputStream, InflaterInputStream}
+
+import global.namespace.fun.io.api.{Filter, Socket}
+import org.scalatest.matchers.should.Matchers._
+import org.scalatest.wordspec.AnyWordSpec
+
+import scala.jdk.CollectionConverters._
+
+class PipelineSpec extends AnyWordSpec {
+
+  private val data = {
+    val b = new Array[Byte](4 * 1024 * 1024 + 1)
+    val r = new Random(0)
+    for (i <- b.indices) {
+      b(i) = (r.nextInt(16) + 'a').toByte
+    }
+    b
+  }
+
+  private val options = CopyOptions.builder.bufferSize(8 * 1024).build
+
+  private val deflate: Filter = new Filter {
+
+    def output(output: Socket[OutputStream]): Socket[OutputStream] = output.map(new DeflaterOutputStream(_))
+
+    def input(input: Socket[InputStream]): Socket[InputStream] = input.map(new InflaterInputStream(_))
+  }
+
+  private def xor(threads: java.util.Set[Thread]): Filter = new Filter {
+
+    def output(output: Socket[OutputStream]): Socket[OutputStream] = output.map { out =>
+      new FilterOutputStream(out) {
+
+        override def write(b: Int): Unit = {
+          threads add Thread.currentThread
+          out write (b ^ 0x55)
+        }
+
+        override def write(b: Array[Byte], off: Int, len: Int): Unit = {
+          threads add Thread.currentThread
+          out write (b.slice(off, off + len) map (x => (x ^ 0x55).toByte))
+        }
+      }
+    }
+
+    def input(input: Socket[InputStream]): Socket[InputStream] = input.map { in =>
+      new FilterInputStream(in) {
+
+        override def read(): Int = {
+          threads add Thread.currentThread
+          val b = in.read()
+          if (0 > b) b else (b ^ 0x55) & 0xff
+        }
+
+        override def read(b: Array[Byte], off: Int, len: Int): Int = {
+          threads add Thread.currentThread
+          val n = in.read(b, off, len)
+          for (i <- off until off + n) {
+            b(i) = (b(i) ^ 0x55).toByte
+          }
+          n
+        }
+      }
+    }
+  }
+
+  private def newThreads = ConcurrentHashMap.newKeySet[Thread]
+
+  private def write(filter: Filter, sink: OutputStream): Unit = {
+    filter.output((() => sink): Socket[OutputStream]).accept(_ write data)
+  }
+
+  private def read(filter: Filter, source: InputStream): Array[Byte] = {
+    filter.input((() => source): Socket[InputStream]).apply { in =>
+      val out = new ByteArrayOutputStream
+      val b = new Array[Byte](1000)
+      var n = 0
+      while ( {
+        n = in.read(b)
+        0 <= n
+      }) {
+        out.write(b, 0, n)
+      }
+      out.toByteArray
+    }
+  }
+
+  private def failingOutput: OutputStream = new OutputStream {
+
+    def write(b: Int): Unit = throw new IOException("boom")
+  }
+
+  private def failingInput: InputStream = new InputStream {
+
+    def read(): Int = throw new IOException("boom")
+  }
+
+  "Pipeline.of" should {
+    "produce the same data as the composed filter" in {
+      val expected = new ByteArrayOutputStream
+      write(deflate compose xor(newThreads), expected)
+      val actual = new ByteArrayOutputStream
+      write(Pipeline.of(options, deflate, xor(newThreads)), actual)
+      actual.toByteArray shouldBe expected.toByteArray
+      read(Pipeline.of(options, deflate, xor(newThreads)), new ByteArrayInputStream(actual.toByteArray)) shouldBe data
+    }
+
+    "run the stages on different threads" in {
+      val first, last = newThreads
+      val out = new ByteArrayOutputStream
+      write(Pipeline.of(options, xor(first), deflate, xor(last)), out)
+      first.asScala shouldBe Set(Thread.currentThread)
+      last.asScala should not contain Thread.currentThread
+      first.clear()
+      last.clear()
+      read(Pipeline.of(options, xor(first), deflate, xor(last)), new ByteArrayInputStream(out.toByteArray)) shouldBe data
+      first.asScala shouldBe Set(Thread.currentThread)
+      last.asScala should not contain Thread.currentThread
+    }
+
+    "reject no stages" in {
+      intercept[IllegalArgumentException](Pipeline.of(options))
+    }
+  }
+
+  "A pipeline boundary" should {
+    "rethrow the exception of the downstream stage when writing" in {
+      val e = intercept[IOException](write(Pipeline.boundary(options), failingOutput))
+      e.getMessage shouldBe "boom"
+    }
+
+    "rethrow the exception of the upstream stage when reading" in {
+      val e = intercept[IOException](read(Pipeline.boundary(options), failingInput))
+      e.getMessage shouldBe "boom"
+    }
+
+    "flush the downstream stage when flushed" in {
+      @volatile var flushed = Array.empty[Byte]
+      val out = new ByteArrayOutputStream {
+
+        override def flush(): Unit = flushed = toByteArray
+      }
+      Pipeline.boundary(options).output((() => out): Socket[OutputStream]).accept { pipe =>
+        pipe write Array[Byte](1, 2, 3)
+        pipe.flush()
+        while (flushed.length < 3) {
+          Thread.sleep(1)
+        }
+        flushed shouldBe Array[Byte](1, 2, 3)
+      }
+    }
+
+    "transfer at most the given buffer size at once" in {
+      val options = CopyOptions.builder.bufferSize(10000).build
+      @volatile var max = 0
+      val out = new OutputStream {
+
+        def write(b: Int): Unit = max = max max 1
+
+        override def write(b: Array[Byte], off: Int, len: Int): Unit = max = max max len
+      }
+      write(Pipeline.boundary(options), out)
+      max shouldBe 10000
+      max = 0
+      val in = new ByteArrayInputStream(data) {
+
+        override def read(b: Array[Byte], off: Int, len: Int): Int = {
+          max = max max len
+          super.read(b, off, len)
+        }
+      }
+      read(Pipeline.boundary(options), in) shouldBe data
+      max shouldBe 10000
+    }
+
+    "close the downstream stage even if the current thread gets interrupted when closing" in {
+      val latch = new CountDownLatch(1)
+      @volatile var closed = false
+      val out = new OutputStream {
+
+        def write(b: Int): Unit = ()
+
+        override def write(b: Array[Byte], off: Int, len: Int): Unit = latch.await()
+
+        override def close(): Unit = closed = true
+      }
+      val options = CopyOptions.builder.bufferSize(1024).fifoSize(2).build
+      Pipeline.boundary(options).output((() => out): Socket[OutputStream]).accept { pipe =>
+        pipe write new Array[Byte](2 * 1024)
+        Executors.newSingleThreadScheduledExecutor.schedule((() => latch.countDown()): Runnable, 100, MILLISECONDS)
+        Thread.currentThread.interrupt()
+        intercept[InterruptedIOException](pipe.close())
+        Thread.interrupted shouldBe true
+      }
+      closed shouldBe true
+    }
+
+    "close the upstream stage when closed before the end of the data" in {
+      @volatile var closed = false
+      val in = new ByteArrayInputStream(data) {
+
+        override def close(): Unit = closed = true
+      }
+      Pipeline.boundary(options).input((() => in): Socket[InputStream]).accept(_.read() shouldBe data(0) & 0xff)
+      closed shouldBe true
+    }
+
+    "close the other stream and rethrow if the executor rejects the task" in {
+      val options = CopyOptions.builder.executor(_ => throw new RejectedExecutionException).build
+      @volatile var inClosed, outClosed = false
+      val in = new ByteArrayInputStream(data) {
+
+        override def close(): Unit = inClosed = true
+      }
+      val out = new ByteArrayOutputStream {
+
+        override def close(): Unit = outClosed = true
+      }
+      intercept[RejectedExecutionException](new PipeInputStream(in, options))
+      inClosed shouldBe true
+      intercept[RejectedExecutionException](new PipeOutputStream(out, options))
+      outClosed shouldBe true
+    }
+  }
+}